@@ -0,0 +1,359 @@
+import java.time.DayOfWeek;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+// -------------- AUTO-SCHEDULER --------------
+// Finds sessions for the courses that have none. Time is a weekly grid of equal
+// slots: the chosen days, cut into sessionMinutes pieces between dayStart and
+// dayEnd. A course gets sessionsPerCourse slots on different days and a room in
+// each. Courses that already have sessions keep them and block their rooms,
+// their instructor and their students. Two courses that share an instructor or
+// a student never share a slot, and a room holds one course per slot. Rooms are
+// plain names, so several branches are scheduled at once by naming their rooms
+// apart, e.g. "North R101".
+//
+// Placing as many courses as possible is graph colouring, so plan() runs a
+// portfolio of greedy passes, most constrained courses first, on the common
+// fork/join pool through a parallel stream. Pass 0 uses the plain order; the
+// others perturb it with their seed. Passes stop at the time limit or once one
+// places every course, and the best is kept. Works on a copySnapshot(), so
+// edits go on meanwhile; CoachingCenter.applySchedule re-checks every course.
+final class AutoScheduler {
+
+    static final int MAX_PASSES = 4096;
+
+    private static final Metrics.Timer PLAN_TIMER = Metrics.timer("schedule.plan");
+
+    private AutoScheduler() {
+    }
+
+    static final class Options {
+        final List<String> rooms;
+        final List<DayOfWeek> days;
+        final int dayStart;          // minutes since midnight
+        final int dayEnd;
+        final int sessionMinutes;
+        final int sessionsPerCourse;
+        final long timeLimitMillis;
+
+        Options(List<String> rooms, Collection<DayOfWeek> days, int dayStart, int dayEnd, int sessionMinutes,
+                int sessionsPerCourse, long timeLimitMillis) {
+            Map<String, String> distinctRooms = new LinkedHashMap<>();
+            for (String room : rooms) {
+                if (!room.trim().isEmpty()) distinctRooms.putIfAbsent(DataIndex.foldCase(room.trim()), room.trim());
+            }
+            this.rooms = new ArrayList<>(distinctRooms.values());
+            this.days = new ArrayList<>(new TreeSet<>(days));
+            this.dayStart = dayStart;
+            this.dayEnd = dayEnd;
+            this.sessionMinutes = sessionMinutes;
+            this.sessionsPerCourse = sessionsPerCourse;
+            this.timeLimitMillis = timeLimitMillis;
+            if (this.rooms.isEmpty()) throw new IllegalArgumentException("Name at least one room.");
+            if (this.days.isEmpty()) throw new IllegalArgumentException("Choose at least one day.");
+            if (sessionMinutes <= 0 || dayStart < 0 || dayEnd > Timetable.MINUTES_PER_DAY || slotsPerDay() < 1) {
+                throw new IllegalArgumentException("No session of " + sessionMinutes + " minutes fits between the hours given.");
+            }
+            if (sessionsPerCourse < 1 || sessionsPerCourse > this.days.size()) {
+                throw new IllegalArgumentException("Sessions per course must be between 1 and the number of days.");
+            }
+        }
+
+        int slotsPerDay() {
+            return sessionMinutes > 0 ? (dayEnd - dayStart) / sessionMinutes : 0;
+        }
+    }
+
+    static final class Plan {
+        final Map<String, List<Timetable.Session>> sessions; // by course name, in list order
+        final List<String> unplaced;                          // courses that found no room or time
+        final int passes;
+
+        Plan(Map<String, List<Timetable.Session>> sessions, List<String> unplaced, int passes) {
+            this.sessions = sessions;
+            this.unplaced = unplaced;
+            this.passes = passes;
+        }
+    }
+
+    static Plan plan(DataCodec.Snapshot snapshot, Options options) {
+        long start = Metrics.start();
+        Problem problem = new Problem(snapshot, options);
+        long deadline = System.nanoTime() + options.timeLimitMillis * 1_000_000;
+        AtomicBoolean complete = new AtomicBoolean(problem.size() == 0);
+        AtomicInteger passes = new AtomicInteger();
+        // Pass 0 always runs, so there is a plan however short the limit
+        Attempt best = IntStream.range(0, MAX_PASSES).parallel()
+                .mapToObj(seed -> {
+                    if (seed > 0 && (complete.get() || System.nanoTime() > deadline)) return null;
+                    Attempt attempt = problem.attempt(seed);
+                    passes.incrementAndGet();
+                    if (attempt.placed == problem.size()) complete.set(true);
+                    return attempt;
+                })
+                .filter(Objects::nonNull)
+                .max(Comparator.comparingInt((Attempt a) -> a.placed).thenComparingInt(a -> -a.seed))
+                .orElseThrow();
+        Plan plan = problem.toPlan(best, passes.get());
+        PLAN_TIMER.stop(start);
+        return plan;
+    }
+
+    private static final class Attempt {
+        final int seed;
+        final int placed;
+        final int[][] slots; // per course, ascending; null when not placed
+        final int[][] rooms;
+
+        Attempt(int seed, int placed, int[][] slots, int[][] rooms) {
+            this.seed = seed;
+            this.placed = placed;
+            this.slots = slots;
+            this.rooms = rooms;
+        }
+    }
+
+    // ----------------- PROBLEM -----------------
+    // Everything the passes share, worked out once and read-only afterwards. Slot
+    // s is day s / slotsPerDay, piece s % slotsPerDay; rooms are indexes into
+    // options.rooms.
+    private static final class Problem {
+        final Options options;
+        final int perDay;
+        final int slotCount;
+        final List<Course> courses = new ArrayList<>(); // the ones to place
+        final BitSet[] roomsTaken;                       // per slot, by courses that keep their sessions
+        final BitSet[] blocked;                          // per course, slots its instructor or a student is busy elsewhere
+        final int[][] neighbors;                         // per course, the courses it may not share a slot with
+
+        Problem(DataCodec.Snapshot snapshot, Options options) {
+            this.options = options;
+            perDay = options.slotsPerDay();
+            slotCount = options.days.size() * perDay;
+
+            int[] placeable = new int[snapshot.courses.size()]; // course row -> index in courses, or -1
+            Map<String, IntervalTree<Course>> fixedRooms = new HashMap<>();
+            Map<String, IntervalTree<Course>> fixedInstructors = new HashMap<>();
+            for (int row = 0; row < snapshot.courses.size(); row++) {
+                Course c = snapshot.courses.get(row);
+                if (c.getSessions().isEmpty()) {
+                    placeable[row] = courses.size();
+                    courses.add(c);
+                    continue;
+                }
+                placeable[row] = -1;
+                for (Timetable.Session s : c.getSessions()) {
+                    tree(fixedRooms, s.room).add(s.weekStart(), s.weekEnd(), c);
+                    if (c.getInstructorName() != null) tree(fixedInstructors, c.getInstructorName()).add(s.weekStart(), s.weekEnd(), c);
+                }
+            }
+
+            roomsTaken = new BitSet[slotCount];
+            for (int slot = 0; slot < slotCount; slot++) {
+                roomsTaken[slot] = new BitSet(options.rooms.size());
+                for (int room = 0; room < options.rooms.size(); room++) {
+                    if (busy(fixedRooms, options.rooms.get(room), slot)) roomsTaken[slot].set(room);
+                }
+            }
+
+            blocked = new BitSet[courses.size()];
+            Map<String, List<Integer>> byInstructor = new HashMap<>();
+            for (int u = 0; u < courses.size(); u++) {
+                blocked[u] = new BitSet(slotCount);
+                String instructor = courses.get(u).getInstructorName();
+                if (instructor == null) continue;
+                byInstructor.computeIfAbsent(DataIndex.foldCase(instructor), k -> new ArrayList<>()).add(u);
+                for (int slot = 0; slot < slotCount; slot++) {
+                    if (busy(fixedInstructors, instructor, slot)) blocked[u].set(slot);
+                }
+            }
+
+            // Conflicts as (low, high) course pairs packed into longs, sorted to drop repeats
+            long[] edges = new long[64];
+            int edgeCount = 0;
+            for (List<Integer> group : byInstructor.values()) {
+                for (int i = 0; i < group.size(); i++) {
+                    for (int j = i + 1; j < group.size(); j++) {
+                        if (edgeCount == edges.length) edges = Arrays.copyOf(edges, edgeCount * 2);
+                        edges[edgeCount++] = pair(group.get(i), group.get(j));
+                    }
+                }
+            }
+
+            // Enrollments grouped by student: sort (student id, course row) keys
+            DataCodec.Enrollments pairs = snapshot.enrollments;
+            long[] byStudent = new long[pairs.size()];
+            for (int i = 0; i < pairs.size(); i++) byStudent[i] = ((long) pairs.studentId(i) << 32) | pairs.courseRow(i);
+            Arrays.sort(byStudent);
+            List<Integer> free = new ArrayList<>();
+            List<Course> fixed = new ArrayList<>();
+            for (int from = 0; from < byStudent.length; ) {
+                int to = from;
+                while (to < byStudent.length && byStudent[to] >>> 32 == byStudent[from] >>> 32) to++;
+                free.clear();
+                fixed.clear();
+                for (int i = from; i < to; i++) {
+                    int row = (int) byStudent[i];
+                    if (placeable[row] >= 0) free.add(placeable[row]);
+                    else fixed.add(snapshot.courses.get(row));
+                }
+                for (int u : free) {
+                    for (Course c : fixed) {
+                        for (Timetable.Session s : c.getSessions()) blockOverlapping(blocked[u], s);
+                    }
+                }
+                for (int i = 0; i < free.size(); i++) {
+                    for (int j = i + 1; j < free.size(); j++) {
+                        if (edgeCount == edges.length) edges = Arrays.copyOf(edges, edgeCount * 2);
+                        edges[edgeCount++] = pair(free.get(i), free.get(j));
+                    }
+                }
+                from = to;
+            }
+
+            Arrays.sort(edges, 0, edgeCount);
+            int[] degree = new int[courses.size()];
+            for (int i = 0; i < edgeCount; i++) {
+                if (i > 0 && edges[i] == edges[i - 1]) continue;
+                degree[(int) (edges[i] >>> 32)]++;
+                degree[(int) edges[i]]++;
+            }
+            neighbors = new int[courses.size()][];
+            for (int u = 0; u < courses.size(); u++) neighbors[u] = new int[degree[u]];
+            int[] filled = new int[courses.size()];
+            for (int i = 0; i < edgeCount; i++) {
+                if (i > 0 && edges[i] == edges[i - 1]) continue;
+                int a = (int) (edges[i] >>> 32);
+                int b = (int) edges[i];
+                neighbors[a][filled[a]++] = b;
+                neighbors[b][filled[b]++] = a;
+            }
+        }
+
+        int size() { return courses.size(); }
+
+        private static IntervalTree<Course> tree(Map<String, IntervalTree<Course>> trees, String name) {
+            return trees.computeIfAbsent(DataIndex.foldCase(name), k -> new IntervalTree<>());
+        }
+
+        private static long pair(int a, int b) {
+            return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+        }
+
+        private boolean busy(Map<String, IntervalTree<Course>> trees, String name, int slot) {
+            IntervalTree<Course> tree = trees.get(DataIndex.foldCase(name));
+            return tree != null && tree.firstOverlap(weekStart(slot), weekStart(slot) + options.sessionMinutes, c -> true) != null;
+        }
+
+        private void blockOverlapping(BitSet slots, Timetable.Session s) {
+            int day = options.days.indexOf(s.day);
+            if (day < 0) return;
+            for (int piece = 0; piece < perDay; piece++) {
+                int start = options.dayStart + piece * options.sessionMinutes;
+                if (start < s.end && s.start < start + options.sessionMinutes) slots.set(day * perDay + piece);
+            }
+        }
+
+        private int weekStart(int slot) {
+            DayOfWeek day = options.days.get(slot / perDay);
+            return (day.getValue() - 1) * Timetable.MINUTES_PER_DAY + options.dayStart + (slot % perDay) * options.sessionMinutes;
+        }
+
+        // ----------------- ONE PASS -----------------
+        Attempt attempt(int seed) {
+            Random random = seed == 0 ? null : new Random(seed);
+            int n = courses.size();
+            // Most constrained first: many neighbours and few free slots. Later passes shake the order up.
+            double[] priority = new double[n];
+            Integer[] order = new Integer[n];
+            for (int u = 0; u < n; u++) {
+                double p = neighbors[u].length + blocked[u].cardinality();
+                priority[u] = random == null ? p : p * (0.5 + random.nextDouble());
+                order[u] = u;
+            }
+            Arrays.sort(order, (a, b) -> priority[a] != priority[b] ? Double.compare(priority[b], priority[a]) : Integer.compare(a, b));
+
+            BitSet[] used = new BitSet[slotCount];
+            for (int slot = 0; slot < slotCount; slot++) used[slot] = (BitSet) roomsTaken[slot].clone();
+            BitSet[] busy = new BitSet[n];
+            int[][] slots = new int[n][];
+            int[][] rooms = new int[n][];
+            int placed = 0;
+            for (int u : order) {
+                if (busy[u] == null) busy[u] = new BitSet(slotCount);
+                int[] chosen = choose(u, busy[u], used, random);
+                if (chosen == null) continue;
+                int[] taken = new int[chosen.length];
+                for (int i = 0; i < chosen.length; i++) {
+                    taken[i] = used[chosen[i]].nextClearBit(0);
+                    used[chosen[i]].set(taken[i]);
+                }
+                for (int v : neighbors[u]) {
+                    if (busy[v] == null) busy[v] = new BitSet(slotCount);
+                    for (int slot : chosen) busy[v].set(slot);
+                }
+                slots[u] = chosen;
+                rooms[u] = taken;
+                placed++;
+            }
+            return new Attempt(seed, placed, slots, rooms);
+        }
+
+        // sessionsPerCourse slots on different days, or null. Each day offers its emptiest
+        // usable slot and the emptiest of those win, which spreads courses over the week
+        // and keeps rooms free for the courses still to come.
+        private int[] choose(int u, BitSet busy, BitSet[] used, Random random) {
+            int dayCount = options.days.size();
+            int[] best = new int[dayCount];
+            int[] load = new int[dayCount];
+            int usable = 0;
+            for (int day = 0; day < dayCount; day++) {
+                best[day] = -1;
+                for (int piece = 0; piece < perDay; piece++) {
+                    int slot = day * perDay + piece;
+                    if (blocked[u].get(slot) || busy.get(slot) || used[slot].nextClearBit(0) >= options.rooms.size()) continue;
+                    int l = used[slot].cardinality();
+                    if (best[day] < 0 || l < load[day] || (l == load[day] && random != null && random.nextInt(3) == 0)) {
+                        best[day] = slot;
+                        load[day] = l;
+                    }
+                }
+                if (best[day] >= 0) usable++;
+            }
+            if (usable < options.sessionsPerCourse) return null;
+
+            Integer[] days = new Integer[dayCount];
+            for (int day = 0; day < dayCount; day++) days[day] = day;
+            if (random != null) Collections.shuffle(Arrays.asList(days), random);
+            Arrays.sort(days, Comparator.comparingInt((Integer day) -> best[day] < 0 ? 1 : 0).thenComparingInt(day -> load[day]));
+            int[] chosen = new int[options.sessionsPerCourse];
+            for (int i = 0; i < chosen.length; i++) chosen[i] = best[days[i]];
+            Arrays.sort(chosen);
+            return chosen;
+        }
+
+        Plan toPlan(Attempt attempt, int passes) {
+            Map<String, List<Timetable.Session>> sessions = new LinkedHashMap<>();
+            List<String> unplaced = new ArrayList<>();
+            for (int u = 0; u < courses.size(); u++) {
+                String name = courses.get(u).getCourseName();
+                if (attempt.slots[u] == null) {
+                    unplaced.add(name);
+                    continue;
+                }
+                List<Timetable.Session> list = new ArrayList<>();
+                for (int i = 0; i < attempt.slots[u].length; i++) {
+                    int slot = attempt.slots[u][i];
+                    int start = options.dayStart + (slot % perDay) * options.sessionMinutes;
+                    list.add(new Timetable.Session(options.days.get(slot / perDay), start, start + options.sessionMinutes,
+                            options.rooms.get(attempt.rooms[u][i])));
+                }
+                sessions.put(name, Collections.unmodifiableList(list));
+            }
+            return new Plan(sessions, unplaced, passes);
+        }
+    }
+}
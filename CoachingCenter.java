@@ -0,0 +1,76 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+// -------------- DOMAIN API --------------
+// What the Swing frame needs from the data, whether it lives in this process
+// (CoachingCenterService) or on a server (RemoteCoachingCenter). Broken rules
+// throw IllegalArgumentException; an edit based on an outdated copy of a
+// student or course throws ConcurrentModificationException; a lost server
+// connection throws UncheckedIOException. The messages are meant for the user.
+// The lists are live views for the thread that makes the changes.
+interface CoachingCenter extends Closeable {
+
+    // Why the saved data could not be read, or why an older copy of it was; null otherwise
+    IOException getLoadError();
+
+    // Every change is published here after it is made
+    DataEventBus events();
+
+    List<Student1> getStudents();
+    List<Course> getCourses();
+    List<Enrollment> getEnrollments();
+
+    int indexOfStudent(int id);
+    int indexOfCourse(String courseName);
+    List<Enrollment> enrollmentsOf(int studentId);
+    List<Enrollment> rosterOf(String courseName);
+
+    List<Student1> searchStudents(String query, BooleanSupplier cancelled);
+    List<Course> searchCourses(String query, BooleanSupplier cancelled);
+
+    Student1 addStudent(String name, int age, String contact, String email);
+    Student1 updateStudent(int id, String name, int age, String contact, String email);
+    CoachingCenterService.Removal removeStudent(int id);
+
+    Course addCourse(String courseName);
+    Course renameCourse(String currentName, String newName);
+    Course assignInstructor(String courseName, String instructorName);
+    CoachingCenterService.Removal removeCourse(String courseName);
+
+    // Sets the course's weekly sessions; an empty list takes them away. Refused when a
+    // room, the instructor or an enrolled student would be in two places at once, as are
+    // an instructor or an enrollment that would cause that.
+    Course scheduleCourse(String courseName, List<Timetable.Session> sessions);
+
+    // Applies an AutoScheduler plan as one change. Courses that clash with edits made
+    // since the plan was computed are left out, with the reason added to rejected.
+    int applySchedule(AutoScheduler.Plan plan, List<String> rejected);
+
+    Enrollment enroll(int studentId, String courseName);
+
+    // Bulk imports; rejected rows are added to parsed.errors. Return how many rows were added.
+    // A student row's importedId is set to the id the student got.
+    int importStudents(CsvBulkIO.Parsed<CsvBulkIO.StudentRow> parsed);
+    int importCourses(CsvBulkIO.Parsed<CsvBulkIO.CourseRow> parsed);
+    int importEnrollments(CsvBulkIO.Parsed<CsvBulkIO.EnrollmentRow> parsed);
+
+    // Undo and redo step through whole changes: an edit, an import, a removal with its
+    // cascade. They return false when there is nothing to step to, which is always the
+    // case on a shared server, since it keeps no history per user.
+    boolean canUndo();
+    boolean canRedo();
+    boolean undo();
+    boolean redo();
+
+    // Deep copy that stays valid while edits continue; safe to call from any thread
+    DataCodec.Snapshot copySnapshot();
+
+    // Enrollments per course from counts kept with every change; cheap enough for the EDT.
+    // The other reports work on a copySnapshot(), see ReportEngine.
+    ReportEngine.Report enrollmentCounts();
+
+    @Override
+    void close();
+}
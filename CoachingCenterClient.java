@@ -0,0 +1,209 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.List;
+
+// -------------- NETWORK CLIENT --------------
+// One connection to a CoachingCenterServer. Calls block until the answer
+// arrives and are serialized, so one client may be shared between threads.
+// Refusals come back as the exceptions the service threw: IllegalArgumentException
+// for a broken rule and ConcurrentModificationException for a stale version.
+class CoachingCenterClient implements Closeable {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    // The server's data together with the change count it was copied at
+    static final class State {
+        final long changeCount;
+        final DataCodec.Snapshot snapshot;
+
+        State(long changeCount, DataCodec.Snapshot snapshot) {
+            this.changeCount = changeCount;
+            this.snapshot = snapshot;
+        }
+    }
+
+    // The server's changes since a change count, and its count after them
+    static final class Changes {
+        final long changeCount;
+        final byte[] records; // WireProtocol change records; null when the server no longer has them all
+
+        Changes(long changeCount, byte[] records) {
+            this.changeCount = changeCount;
+            this.records = records;
+        }
+    }
+
+    // Told the server's change counts before and after each edit this client made
+    interface EditListener {
+        void edited(long before, long after);
+    }
+
+    private interface Arguments {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream request = new ByteArrayOutputStream(256);
+    private int nextRequestId;
+    private volatile EditListener editListener = (before, after) -> { };
+
+    CoachingCenterClient(String host, int port) throws IOException {
+        socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    // Runs on the thread making the edit, before the edit's call returns
+    void onEdit(EditListener listener) {
+        editListener = listener;
+    }
+
+    // ----------------- OPERATIONS -----------------
+    State snapshot() throws IOException {
+        DataInputStream response = call(WireProtocol.SNAPSHOT, o -> { });
+        long changeCount = response.readLong();
+        return new State(changeCount, WireProtocol.readSnapshot(response));
+    }
+
+    long changeCount() throws IOException {
+        return call(WireProtocol.CHANGE_COUNT, o -> { }).readLong();
+    }
+
+    Changes changesSince(long changeCount) throws IOException {
+        DataInputStream response = call(WireProtocol.CHANGES, o -> o.writeLong(changeCount));
+        long now = response.readLong();
+        if (!response.readBoolean()) return new Changes(now, null);
+        byte[] records = new byte[response.readInt()];
+        response.readFully(records);
+        return new Changes(now, records);
+    }
+
+    // Null when there is no such student
+    Student1 getStudent(int id) throws IOException {
+        DataInputStream response = call(WireProtocol.GET_STUDENT, o -> o.writeInt(id));
+        return response.readBoolean() ? WireProtocol.readStudent(response) : null;
+    }
+
+    Student1 addStudent(String name, int age, String contact, String email) throws IOException {
+        return WireProtocol.readStudent(call(WireProtocol.ADD_STUDENT, o -> {
+            o.writeUTF(name);
+            o.writeInt(age);
+            o.writeUTF(contact);
+            o.writeUTF(email);
+        }));
+    }
+
+    Student1 updateStudent(int id, int expectedVersion, String name, int age, String contact, String email) throws IOException {
+        return WireProtocol.readStudent(call(WireProtocol.UPDATE_STUDENT, o -> {
+            o.writeInt(id);
+            o.writeInt(expectedVersion);
+            o.writeUTF(name);
+            o.writeInt(age);
+            o.writeUTF(contact);
+            o.writeUTF(email);
+        }));
+    }
+
+    void removeStudent(int id) throws IOException {
+        call(WireProtocol.REMOVE_STUDENT, o -> o.writeInt(id));
+    }
+
+    Course addCourse(String courseName) throws IOException {
+        return WireProtocol.readCourse(call(WireProtocol.ADD_COURSE, o -> o.writeUTF(courseName)));
+    }
+
+    Course renameCourse(String currentName, int expectedVersion, String newName) throws IOException {
+        return WireProtocol.readCourse(call(WireProtocol.RENAME_COURSE, o -> {
+            o.writeUTF(currentName);
+            o.writeInt(expectedVersion);
+            o.writeUTF(newName);
+        }));
+    }
+
+    Course assignInstructor(String courseName, int expectedVersion, String instructorName) throws IOException {
+        return WireProtocol.readCourse(call(WireProtocol.ASSIGN_INSTRUCTOR, o -> {
+            o.writeUTF(courseName);
+            o.writeInt(expectedVersion);
+            o.writeUTF(instructorName);
+        }));
+    }
+
+    Course scheduleCourse(String courseName, int expectedVersion, List<Timetable.Session> sessions) throws IOException {
+        return WireProtocol.readCourse(call(WireProtocol.SCHEDULE_COURSE, o -> {
+            o.writeUTF(courseName);
+            o.writeInt(expectedVersion);
+            o.writeUTF(Timetable.format(sessions));
+        }));
+    }
+
+    void removeCourse(String courseName) throws IOException {
+        call(WireProtocol.REMOVE_COURSE, o -> o.writeUTF(courseName));
+    }
+
+    void enroll(int studentId, String courseName) throws IOException {
+        call(WireProtocol.ENROLL, o -> {
+            o.writeInt(studentId);
+            o.writeUTF(courseName);
+        });
+    }
+
+    List<Student1> searchStudents(String query, int limit) throws IOException {
+        DataInputStream response = call(WireProtocol.SEARCH_STUDENTS, o -> {
+            o.writeUTF(query);
+            o.writeInt(limit);
+        });
+        int count = response.readInt();
+        List<Student1> matches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) matches.add(WireProtocol.readStudent(response));
+        return matches;
+    }
+
+    // ----------------- FRAMING -----------------
+    // Sends one request and returns the body of a successful answer
+    private synchronized DataInputStream call(byte op, Arguments arguments) throws IOException {
+        int requestId = nextRequestId++;
+        request.reset();
+        DataOutputStream body = new DataOutputStream(request);
+        body.writeInt(requestId);
+        body.writeByte(op);
+        arguments.write(body);
+        out.writeInt(request.size());
+        request.writeTo(out);
+        out.flush();
+
+        int length = in.readInt();
+        if (length <= 0 || length > WireProtocol.MAX_FRAME) throw new IOException("Bad frame length " + length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        DataInputStream response = new DataInputStream(new ByteArrayInputStream(payload));
+        if (response.readInt() != requestId) throw new IOException("Response does not match the request");
+        byte status = response.readByte();
+        switch (status) {
+            case WireProtocol.OK:
+                if (WireProtocol.isEdit(op)) {
+                    // The counts follow the result
+                    ByteBuffer counts = ByteBuffer.wrap(payload, length - 16, 16);
+                    editListener.edited(counts.getLong(), counts.getLong());
+                }
+                return response;
+            case WireProtocol.INVALID:
+                throw new IllegalArgumentException(response.readUTF());
+            case WireProtocol.CONFLICT:
+                throw new ConcurrentModificationException(response.readUTF());
+            default:
+                throw new IOException("Server error: " + response.readUTF());
+        }
+    }
+}
@@ -1,17 +1,27 @@
 import javax.swing.*;
+import javax.swing.Timer;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.time.DayOfWeek;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 class Course implements Serializable {
     private static final long serialVersionUID = 1L;
     private String courseName;
     private String instructorName;
+    private int version; // bumped by every rename or instructor change
+    private int id;      // handed out by the service, in list order; not saved
+    private transient List<Timetable.Session> sessions; // unmodifiable; legacy saves predate it, so null means none
 
     public Course(String courseName) {
         this.courseName = courseName;
@@ -23,6 +33,15 @@ class Course implements Serializable {
     public String getInstructorName() { return instructorName; }
     public void setInstructorName(String instructorName) { this.instructorName = instructorName; }
 
+    public int getVersion() { return version; }
+    void setVersion(int version) { this.version = version; }
+
+    public int getId() { return id; }
+    void setId(int id) { this.id = id; }
+
+    public List<Timetable.Session> getSessions() { return sessions != null ? sessions : Collections.emptyList(); }
+    void setSessions(List<Timetable.Session> sessions) { this.sessions = sessions; }
+
     @Override
     public String toString() {
         return courseName;
@@ -30,7 +49,8 @@ class Course implements Serializable {
 
     public String detailedString() {
         return "Course: " + courseName +
-                (instructorName != null ? ", Instructor: " + instructorName : ", No instructor assigned");
+                (instructorName != null ? ", Instructor: " + instructorName : ", No instructor assigned") +
+                (getSessions().isEmpty() ? "" : ", Schedule: " + Timetable.format(getSessions()));
     }
 }
 
@@ -47,6 +67,19 @@ class Enrollment implements Serializable {
     public Student1 getStudent() { return student; }
     public Course getCourse() { return course; }
 
+    // Enrollments are made on demand from the service's int pairs, so two views of one pair are equal
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Enrollment)) return false;
+        Enrollment other = (Enrollment) o;
+        return student == other.student && course == other.course;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(student) + System.identityHashCode(course);
+    }
+
     @Override
     public String toString() {
         return student.getName() + " enrolled in " + course.getCourseName();
@@ -56,16 +89,39 @@ class Enrollment implements Serializable {
 // -------------- MAIN SYSTEM CLASS --------------
 public class CoachingCenterManagementSystem extends JFrame {
 
-    private List<Student1> students = new ArrayList<>();
-    private List<Course> courses = new ArrayList<>();
-    private List<Enrollment> enrollments = new ArrayList<>();
-
-    private int nextStudentId = 1;
-    private static final String DATA_FILE = "coaching_center_data.ser";
+    static final String DATA_FILE = "coaching_center_data.ccd";
+    static final String LEGACY_DATA_FILE = "coaching_center_data.ser";
+    static final String JOURNAL_FILE = "coaching_center_data.journal";
+
+    // Above this many events for one list in a batch, its models are refreshed instead
+    private static final int ROW_EVENT_LIMIT = 64;
+
+    // How often a client of a shared server looks for other users' changes
+    private static final int SYNC_INTERVAL_MILLIS = 2000;
+
+    // See Metrics; with -Dcoachingcenter.metrics=true main also installs an EdtStallDetector
+    // (threshold -Dcoachingcenter.metrics.stallMillis, 200 ms)
+    private static final Metrics.Timer VIEW_UPDATE_TIMER = Metrics.timer("view.update");
+    private static final Metrics.Timer REFRESH_ALL_TIMER = Metrics.timer("view.refreshAll");
+    private static final Metrics.Timer REFRESH_STUDENTS_TIMER = Metrics.timer("view.refreshStudents");
+    private static final Metrics.Timer REFRESH_COURSES_TIMER = Metrics.timer("view.refreshCourses");
+    private static final Metrics.Timer REFRESH_ENROLLMENTS_TIMER = Metrics.timer("view.refreshEnrollments");
+    private static final Metrics.Timer REFRESH_COMBOS_TIMER = Metrics.timer("view.refreshCombos");
+    private static final Metrics.Timer OVERVIEW_TIMER = Metrics.timer("view.overview");
+
+    // Owns the data and every rule, locally or on a server; an empty in-memory one stands in until loading finishes
+    private CoachingCenter service = new CoachingCenterService();
+    private final Callable<CoachingCenter> dataSource; // null for the data files in the working directory
+    private final CountDownLatch dataLoaded = new CountDownLatch(1);
+    private Timer syncTimer;
+    private boolean syncing;
+    private boolean painted; // the first paint is marked, so later repaints skip the mark
 
     // UI Components for Students Tab
-    private DefaultListModel<Student1> studentListModel = new DefaultListModel<>();
+    private FilteredListModel<Student1> studentListModel = new FilteredListModel<>(() -> service.getStudents());
     private JList<Student1> studentJList = new JList<>(studentListModel);
+    private JTextField studentSearchField = new JTextField(15);
+    private LiveSearch<Student1> studentSearch;
     private JTextField studentNameField = new JTextField(20);
     private JTextField studentAgeField = new JTextField(5);
     private JTextField studentContactField = new JTextField(15);
@@ -75,49 +131,206 @@ public class CoachingCenterManagementSystem extends JFrame {
     private JButton removeStudentButton = new JButton("Remove Student");
 
     // UI Components for Courses Tab
-    private DefaultListModel<Course> courseListModel = new DefaultListModel<>();
+    private FilteredListModel<Course> courseListModel = new FilteredListModel<>(() -> service.getCourses());
     private JList<Course> courseJList = new JList<>(courseListModel);
+    private JTextField courseSearchField = new JTextField(15);
+    private LiveSearch<Course> courseSearch;
     private JTextField courseNameField = new JTextField(20);
     private JTextField instructorNameField = new JTextField(20);
+    private JTextField scheduleField = new JTextField(30);
     private JButton addCourseButton = new JButton("Add Course");
     private JButton updateCourseButton = new JButton("Update Course");
     private JButton assignInstructorButton = new JButton("Assign Instructor");
     private JButton removeCourseButton = new JButton("Remove Course");
+    private JButton scheduleCourseButton = new JButton("Set Schedule");
 
     // UI Components for Enrollment Tab
-    private JComboBox<Student1> enrollmentStudentComboBox = new JComboBox<>();
-    private JComboBox<Course> enrollmentCourseComboBox = new JComboBox<>();
+    private ListComboBoxModel<Student1> enrollmentStudentModel = new ListComboBoxModel<>(() -> service.getStudents());
+    private ListComboBoxModel<Course> enrollmentCourseModel = new ListComboBoxModel<>(() -> service.getCourses());
+    private JComboBox<Student1> enrollmentStudentComboBox = new JComboBox<>(enrollmentStudentModel);
+    private JComboBox<Course> enrollmentCourseComboBox = new JComboBox<>(enrollmentCourseModel);
     private JButton enrollButton = new JButton("Enroll");
-    private DefaultListModel<String> enrollmentListModel = new DefaultListModel<>();
-    private JList<String> enrollmentJList = new JList<>(enrollmentListModel);
+    private boolean combosStale = true; // filled once the Enrollments tab is first shown
+    private ListBackedModel<Enrollment> enrollmentListModel = new ListBackedModel<>(() -> service.getEnrollments());
+    private JList<Enrollment> enrollmentJList = new JList<>(enrollmentListModel);
 
     // UI Components for Data Overview Tab
-    private JTextArea overviewTextArea = new JTextArea(25, 50);
-
+    private OverviewModel overviewModel = new OverviewModel(() -> service.getStudents(), () -> service.getCourses(),
+            () -> service.getEnrollments());
+    private JList<String> overviewJList = new JList<>(overviewModel);
+    private boolean overviewStale;
+
+    // Menu for bulk CSV import and export
+    private JMenu fileMenu = new JMenu("File");
+    private JMenu editMenu = new JMenu("Edit");
+    private JMenuItem undoItem = new JMenuItem("Undo");
+    private JMenuItem redoItem = new JMenuItem("Redo");
+    private JMenu reportsMenu = new JMenu("Reports");
+    private JMenu scheduleMenu = new JMenu("Schedule");
+
+    // Tabs other than the first, until they are first selected: placeholder -> builder
+    private JTabbedPane tabbedPane = new JTabbedPane();
+    private Map<JPanel, Supplier<JPanel>> lazyTabs = new HashMap<>();
+
+    // Status bar: load progress and persistence errors, reported without modal dialogs
+    private JLabel statusLabel = new JLabel(" ");
+
+    // Works on the data files in the working directory
     public CoachingCenterManagementSystem() {
-        setTitle("Coaching Center Management System");
+        this(null, "Coaching Center Management System");
+    }
+
+    // Works on whatever dataSource opens, e.g. a connection to a shared server; it is called off the EDT
+    CoachingCenterManagementSystem(Callable<CoachingCenter> dataSource, String title) {
+        this.dataSource = dataSource;
+        setTitle(title);
         setSize(700, 700);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) { shutDown(); }
 
-        loadData();
-        updateNextStudentId();
+            @Override
+            public void windowClosed(WindowEvent e) { shutDown(); }
+        });
 
         initUI();
 
-        refreshStudentList();
-        refreshCourseList();
-        refreshEnrollmentList();
-        refreshEnrollmentCombos();
-        displayOverview();
+        // The window comes up empty and read-only while the data loads in the background
+        setEditingEnabled(false);
+        showStatus("Loading data...", false);
+        new DataLoader().execute();
     }
 
     private void initUI() {
-        JTabbedPane tabbedPane = new JTabbedPane();
+        // Fixed cell sizes keep Swing from measuring every row of a large list up front
+        Student1 prototypeStudent = new Student1(100000, "XXXXXXXXXXXXXXXXXXXXXXXX", 0, "", "");
+        Course prototypeCourse = new Course("XXXXXXXXXXXXXXXXXXXXXXXX");
+        studentJList.setPrototypeCellValue(prototypeStudent);
+        courseJList.setPrototypeCellValue(prototypeCourse);
+        enrollmentJList.setPrototypeCellValue(new Enrollment(prototypeStudent, prototypeCourse));
+        enrollmentStudentComboBox.setPrototypeDisplayValue(prototypeStudent);
+        enrollmentCourseComboBox.setPrototypeDisplayValue(prototypeCourse);
+
+        // Only the Students tab, which shows first, is put together before the window
+        // appears; the others are built the first time they are selected
+        tabbedPane.addTab("Students", buildStudentsTab());
+        addLazyTab("Courses", this::buildCoursesTab);
+        addLazyTab("Enrollments", this::buildEnrollmentsTab);
+        addLazyTab("Overview", this::buildOverviewTab);
+        tabbedPane.addChangeListener(e -> buildSelectedTab());
+
+        add(tabbedPane);
+
+        JMenuItem importStudentsItem = new JMenuItem("Import Students CSV...");
+        JMenuItem importCoursesItem = new JMenuItem("Import Courses CSV...");
+        JMenuItem importEnrollmentsItem = new JMenuItem("Import Enrollments CSV...");
+        JMenuItem importExportedItem = new JMenuItem("Import Exported CSV Folder...");
+        JMenuItem exportItem = new JMenuItem("Export CSV...");
+        importStudentsItem.addActionListener(e -> importStudentsCsv());
+        importCoursesItem.addActionListener(e -> importCoursesCsv());
+        importEnrollmentsItem.addActionListener(e -> importEnrollmentsCsv());
+        importExportedItem.addActionListener(e -> importExportedCsv());
+        exportItem.addActionListener(e -> exportCsv());
+        fileMenu.add(importStudentsItem);
+        fileMenu.add(importCoursesItem);
+        fileMenu.add(importEnrollmentsItem);
+        fileMenu.add(importExportedItem);
+        fileMenu.addSeparator();
+        fileMenu.add(exportItem);
+        int shortcut = Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
+        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, shortcut));
+        redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, shortcut));
+        undoItem.addActionListener(e -> attempt(service::undo));
+        redoItem.addActionListener(e -> attempt(service::redo));
+        editMenu.add(undoItem);
+        editMenu.add(redoItem);
+        // The live counts are cheap; the other reports are computed on a copy off the EDT
+        JMenuItem courseCountsItem = new JMenuItem("Enrollments per Course");
+        courseCountsItem.addActionListener(e -> showReport(service.enrollmentCounts()));
+        reportsMenu.add(courseCountsItem);
+        addReportItem("Students per Instructor", ReportEngine::studentsPerInstructor);
+        addReportItem("Age Distribution per Course", ReportEngine::agesPerCourse);
+        addReportItem("Unenrolled Students", ReportEngine::unenrolledStudents);
+        addReportItem("Course Overlap", ReportEngine::courseOverlap);
+        reportsMenu.addSeparator();
+        JMenuItem exportReportsItem = new JMenuItem("Export All Reports...");
+        exportReportsItem.addActionListener(e -> exportReports());
+        reportsMenu.add(exportReportsItem);
+        JMenuItem autoScheduleItem = new JMenuItem("Auto-Schedule Courses...");
+        autoScheduleItem.addActionListener(e -> autoSchedule());
+        scheduleMenu.add(autoScheduleItem);
+        JMenuBar menuBar = new JMenuBar();
+        menuBar.add(fileMenu);
+        menuBar.add(editMenu);
+        menuBar.add(scheduleMenu);
+        menuBar.add(reportsMenu);
+        setJMenuBar(menuBar);
+
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        add(statusLabel, BorderLayout.SOUTH);
+
+        // -------------------- ACTION LISTENERS --------------------
+
+        // Search boxes: filter by name, email or contact number, and by course or instructor name
+        studentSearch = new LiveSearch<>(studentSearchField, studentJList, studentListModel,
+                (text, cancelled) -> service.searchStudents(text, cancelled));
+        courseSearch = new LiveSearch<>(courseSearchField, courseJList, courseListModel,
+                (text, cancelled) -> service.searchCourses(text, cancelled));
+
+        // Student List Selection: populate fields
+        studentJList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                Student1 selected = studentJList.getSelectedValue();
+                if (selected != null) {
+                    studentNameField.setText(selected.getName());
+                    studentAgeField.setText(String.valueOf(selected.getAge()));
+                    studentContactField.setText(selected.getContactNumber());
+                    studentEmailField.setText(selected.getEmail());
+                }
+            }
+        });
+
+        addStudentButton.addActionListener(e -> addStudent());
+        updateStudentButton.addActionListener(e -> updateStudent());
+        removeStudentButton.addActionListener(e -> removeStudent());
+
+        // Course List Selection: populate fields
+        courseJList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                Course selected = courseJList.getSelectedValue();
+                if (selected != null) {
+                    courseNameField.setText(selected.getCourseName());
+                    instructorNameField.setText(selected.getInstructorName() != null ? selected.getInstructorName() : "");
+                    scheduleField.setText(Timetable.format(selected.getSessions()));
+                }
+            }
+        });
 
-        // Students Tab
+        addCourseButton.addActionListener(e -> addCourse());
+        updateCourseButton.addActionListener(e -> updateCourse());
+        assignInstructorButton.addActionListener(e -> assignInstructor());
+        removeCourseButton.addActionListener(e -> removeCourse());
+        scheduleCourseButton.addActionListener(e -> scheduleCourse());
+
+        enrollButton.addActionListener(e -> enrollStudentInCourse());
+    }
+
+    private static JPanel searchableList(JTextField searchField, JList<?> list) {
+        JPanel searchPanel = new JPanel(new BorderLayout(4, 0));
+        searchPanel.add(new JLabel("Search:"), BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(searchPanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(list), BorderLayout.CENTER);
+        return panel;
+    }
+
+    // ----------------- TABS -----------------
+    private JPanel buildStudentsTab() {
         JPanel studentsPanel = new JPanel(new BorderLayout());
-        studentsPanel.add(new JScrollPane(studentJList), BorderLayout.WEST);
+        studentsPanel.add(searchableList(studentSearchField, studentJList), BorderLayout.WEST);
 
         JPanel studentFormPanel = new JPanel();
         studentFormPanel.setLayout(new BoxLayout(studentFormPanel, BoxLayout.Y_AXIS));
@@ -138,12 +351,12 @@ public class CoachingCenterManagementSystem extends JFrame {
         studentFormPanel.add(studentButtonsPanel);
 
         studentsPanel.add(studentFormPanel, BorderLayout.CENTER);
+        return studentsPanel;
+    }
 
-        tabbedPane.addTab("Students", studentsPanel);
-
-        // Courses Tab
+    private JPanel buildCoursesTab() {
         JPanel coursesPanel = new JPanel(new BorderLayout());
-        coursesPanel.add(new JScrollPane(courseJList), BorderLayout.WEST);
+        coursesPanel.add(searchableList(courseSearchField, courseJList), BorderLayout.WEST);
 
         JPanel courseFormPanel = new JPanel();
         courseFormPanel.setLayout(new BoxLayout(courseFormPanel, BoxLayout.Y_AXIS));
@@ -151,6 +364,8 @@ public class CoachingCenterManagementSystem extends JFrame {
         courseFormPanel.add(courseNameField);
         courseFormPanel.add(new JLabel("Instructor Name:"));
         courseFormPanel.add(instructorNameField);
+        courseFormPanel.add(new JLabel("Schedule (e.g. " + Timetable.SESSION_FORMAT + "; Thu 14:00-15:30 @ R101):"));
+        courseFormPanel.add(scheduleField);
         courseFormPanel.add(Box.createRigidArea(new Dimension(0,10)));
 
         JPanel courseButtonsPanel = new JPanel();
@@ -159,12 +374,15 @@ public class CoachingCenterManagementSystem extends JFrame {
         courseButtonsPanel.add(assignInstructorButton);
         courseButtonsPanel.add(removeCourseButton);
         courseFormPanel.add(courseButtonsPanel);
+        JPanel scheduleButtonsPanel = new JPanel();
+        scheduleButtonsPanel.add(scheduleCourseButton);
+        courseFormPanel.add(scheduleButtonsPanel);
 
         coursesPanel.add(courseFormPanel, BorderLayout.CENTER);
+        return coursesPanel;
+    }
 
-        tabbedPane.addTab("Courses", coursesPanel);
-
-        // Enrollment Tab
+    private JPanel buildEnrollmentsTab() {
         JPanel enrollmentPanel = new JPanel(new BorderLayout());
 
         JPanel enrollFormPanel = new JPanel();
@@ -178,55 +396,51 @@ public class CoachingCenterManagementSystem extends JFrame {
 
         enrollmentPanel.add(enrollFormPanel, BorderLayout.NORTH);
         enrollmentPanel.add(new JScrollPane(enrollmentJList), BorderLayout.CENTER);
-
-        tabbedPane.addTab("Enrollments", enrollmentPanel);
-
-        // Overview Tab
-        JPanel overviewPanel = new JPanel(new BorderLayout());
-        overviewTextArea.setEditable(false);
-        overviewTextArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        overviewPanel.add(new JScrollPane(overviewTextArea), BorderLayout.CENTER);
-
-        tabbedPane.addTab("Overview", overviewPanel);
-
-        add(tabbedPane);
-
-        // -------------------- ACTION LISTENERS --------------------
-
-        // Student List Selection: populate fields
-        studentJList.addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting()) {
-                Student1 selected = studentJList.getSelectedValue();
-                if (selected != null) {
-                    studentNameField.setText(selected.getName());
-                    studentAgeField.setText(String.valueOf(selected.getAge()));
-                    studentContactField.setText(selected.getContactNumber());
-                    studentEmailField.setText(selected.getEmail());
-                }
+        // Like the overview, the combos are only filled while they can be seen
+        enrollmentStudentComboBox.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && combosStale) {
+                refreshEnrollmentCombos();
             }
         });
+        return enrollmentPanel;
+    }
 
-        addStudentButton.addActionListener(e -> addStudent());
-        updateStudentButton.addActionListener(e -> updateStudent());
-        removeStudentButton.addActionListener(e -> removeStudent());
-
-        // Course List Selection: populate fields
-        courseJList.addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting()) {
-                Course selected = courseJList.getSelectedValue();
-                if (selected != null) {
-                    courseNameField.setText(selected.getCourseName());
-                    instructorNameField.setText(selected.getInstructorName() != null ? selected.getInstructorName() : "");
-                }
+    private JPanel buildOverviewTab() {
+        JPanel overviewPanel = new JPanel(new BorderLayout());
+        overviewJList.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        overviewJList.setPrototypeCellValue(
+                "ID: 100000, Name: XXXXXXXXXXXXXXXXXXXX, Age: 100, Contact: XXXXXXXXXXXXXXX, Email: XXXXXXXXXXXXXXXXXXXXXXXXX");
+        overviewJList.setVisibleRowCount(25);
+        // Changes made while another tab is showing are only pushed to the view once it is shown again
+        overviewJList.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && overviewStale) {
+                displayOverview();
             }
         });
+        overviewPanel.add(new JScrollPane(overviewJList), BorderLayout.CENTER);
+        return overviewPanel;
+    }
 
-        addCourseButton.addActionListener(e -> addCourse());
-        updateCourseButton.addActionListener(e -> updateCourse());
-        assignInstructorButton.addActionListener(e -> assignInstructor());
-        removeCourseButton.addActionListener(e -> removeCourse());
+    // A placeholder stands in for the tab until it is first selected
+    private void addLazyTab(String title, Supplier<JPanel> build) {
+        JPanel placeholder = new JPanel(new BorderLayout());
+        lazyTabs.put(placeholder, build);
+        tabbedPane.addTab(title, placeholder);
+    }
 
-        enrollButton.addActionListener(e -> enrollStudentInCourse());
+    private void buildSelectedTab() {
+        JPanel placeholder = (JPanel) tabbedPane.getSelectedComponent();
+        Supplier<JPanel> build = lazyTabs.remove(placeholder);
+        if (build == null) return;
+        placeholder.add(build.get(), BorderLayout.CENTER);
+        placeholder.revalidate();
+    }
+
+    // Selects every tab in turn, so all of them are built; for StartupTiming's training run
+    void buildAllTabs() {
+        int selected = tabbedPane.getSelectedIndex();
+        for (int i = 0; i < tabbedPane.getTabCount(); i++) tabbedPane.setSelectedIndex(i);
+        tabbedPane.setSelectedIndex(selected);
     }
 
     // ----------------- STUDENT METHODS -----------------
@@ -236,25 +450,10 @@ public class CoachingCenterManagementSystem extends JFrame {
         String contact = studentContactField.getText().trim();
         String email = studentEmailField.getText().trim();
 
-        if (name.isEmpty() || ageStr.isEmpty() || contact.isEmpty() || email.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Please fill all student fields.");
+        if (attempt(() -> service.addStudent(name, CoachingCenterService.validateStudent(name, ageStr, contact, email),
+                contact, email)) == null) {
             return;
         }
-
-        int age;
-        try {
-            age = Integer.parseInt(ageStr);
-            if (age <= 0) throw new NumberFormatException();
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, "Please enter a valid positive integer for age.");
-            return;
-        }
-
-        students.add(new Student1(nextStudentId++, name, age, contact, email));
-        saveData();
-        refreshStudentList();
-        refreshEnrollmentCombos();
-        displayOverview();
         clearStudentFields();
     }
 
@@ -270,29 +469,10 @@ public class CoachingCenterManagementSystem extends JFrame {
         String contact = studentContactField.getText().trim();
         String email = studentEmailField.getText().trim();
 
-        if (name.isEmpty() || ageStr.isEmpty() || contact.isEmpty() || email.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Please fill all student fields.");
-            return;
-        }
-
-        int age;
-        try {
-            age = Integer.parseInt(ageStr);
-            if (age <= 0) throw new NumberFormatException();
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, "Please enter a valid positive integer for age.");
+        if (attempt(() -> service.updateStudent(selected.getId(), name,
+                CoachingCenterService.validateStudent(name, ageStr, contact, email), contact, email)) == null) {
             return;
         }
-
-        selected.setName(name);
-        selected.setAge(age);
-        selected.setContactNumber(contact);
-        selected.setEmail(email);
-
-        saveData();
-        refreshStudentList();
-        refreshEnrollmentCombos();
-        displayOverview();
         clearStudentFields();
     }
 
@@ -303,15 +483,8 @@ public class CoachingCenterManagementSystem extends JFrame {
             return;
         }
 
-        // Remove enrollments for this student
-        enrollments.removeIf(enrollment -> enrollment.getStudent().getId() == selected.getId());
-
-        students.remove(selected);
-        saveData();
-        refreshStudentList();
-        refreshEnrollmentList();
-        refreshEnrollmentCombos();
-        displayOverview();
+        // Also removes the student's enrollments
+        if (attempt(() -> service.removeStudent(selected.getId())) == null) return;
         clearStudentFields();
     }
 
@@ -324,28 +497,15 @@ public class CoachingCenterManagementSystem extends JFrame {
     }
 
     private void refreshStudentList() {
-        studentListModel.clear();
-        students.forEach(studentListModel::addElement);
+        long start = Metrics.start();
+        studentListModel.refresh();
+        REFRESH_STUDENTS_TIMER.stop(start);
     }
 
     // ----------------- COURSE METHODS -----------------
     private void addCourse() {
         String courseName = courseNameField.getText().trim();
-        if (courseName.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Course name cannot be empty.");
-            return;
-        }
-
-        if (courses.stream().anyMatch(c -> c.getCourseName().equalsIgnoreCase(courseName))) {
-            JOptionPane.showMessageDialog(this, "Course already exists.");
-            return;
-        }
-
-        courses.add(new Course(courseName));
-        saveData();
-        refreshCourseList();
-        refreshEnrollmentCombos();
-        displayOverview();
+        if (attempt(() -> service.addCourse(courseName)) == null) return;
         clearCourseFields();
     }
 
@@ -357,25 +517,7 @@ public class CoachingCenterManagementSystem extends JFrame {
         }
 
         String courseName = courseNameField.getText().trim();
-        if (courseName.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Course name cannot be empty.");
-            return;
-        }
-
-        // Check if new name conflicts with existing courses except the selected one
-        boolean conflict = courses.stream()
-                .filter(c -> c != selected)
-                .anyMatch(c -> c.getCourseName().equalsIgnoreCase(courseName));
-        if (conflict) {
-            JOptionPane.showMessageDialog(this, "Another course with this name already exists.");
-            return;
-        }
-
-        selected.setCourseName(courseName);
-        saveData();
-        refreshCourseList();
-        refreshEnrollmentCombos();
-        displayOverview();
+        if (attempt(() -> service.renameCourse(selected.getCourseName(), courseName)) == null) return;
         clearCourseFields();
     }
 
@@ -387,15 +529,7 @@ public class CoachingCenterManagementSystem extends JFrame {
         }
 
         String instructorName = instructorNameField.getText().trim();
-        if (instructorName.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Instructor name cannot be empty.");
-            return;
-        }
-
-        selected.setInstructorName(instructorName);
-        saveData();
-        refreshCourseList();
-        displayOverview();
+        if (attempt(() -> service.assignInstructor(selected.getCourseName(), instructorName)) == null) return;
         clearCourseFields();
     }
 
@@ -406,27 +540,35 @@ public class CoachingCenterManagementSystem extends JFrame {
             return;
         }
 
-        // Remove enrollments for this course
-        enrollments.removeIf(enrollment -> enrollment.getCourse().equals(selected));
+        // Also removes the course's enrollments
+        if (attempt(() -> service.removeCourse(selected.getCourseName())) == null) return;
+        clearCourseFields();
+    }
 
-        courses.remove(selected);
-        saveData();
-        refreshCourseList();
-        refreshEnrollmentList();
-        refreshEnrollmentCombos();
-        displayOverview();
+    // An empty field takes the course's sessions away
+    private void scheduleCourse() {
+        Course selected = courseJList.getSelectedValue();
+        if (selected == null) {
+            JOptionPane.showMessageDialog(this, "Select a course to schedule.");
+            return;
+        }
+
+        String schedule = scheduleField.getText();
+        if (attempt(() -> service.scheduleCourse(selected.getCourseName(), Timetable.parseAll(schedule))) == null) return;
         clearCourseFields();
     }
 
     private void clearCourseFields() {
         courseNameField.setText("");
         instructorNameField.setText("");
+        scheduleField.setText("");
         courseJList.clearSelection();
     }
 
     private void refreshCourseList() {
-        courseListModel.clear();
-        courses.forEach(courseListModel::addElement);
+        long start = Metrics.start();
+        courseListModel.refresh();
+        REFRESH_COURSES_TIMER.stop(start);
     }
 
     // -------------- ENROLLMENT METHODS --------------
@@ -439,93 +581,599 @@ public class CoachingCenterManagementSystem extends JFrame {
             return;
         }
 
-        boolean alreadyEnrolled = enrollments.stream()
-                .anyMatch(enrollment -> enrollment.getStudent().getId() == student.getId() &&
-                        enrollment.getCourse().getCourseName().equalsIgnoreCase(course.getCourseName()));
+        attempt(() -> service.enroll(student.getId(), course.getCourseName()));
+    }
 
-        if (alreadyEnrolled) {
-            JOptionPane.showMessageDialog(this, "Student already enrolled in this course.");
-            return;
+    // Runs a change and returns its result, or tells the user why it was refused and returns null
+    private <T> T attempt(Supplier<T> change) {
+        try {
+            return change.get();
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage());
+        } catch (ConcurrentModificationException e) {
+            // Someone else changed the record first; show them their edit
+            JOptionPane.showMessageDialog(this, e.getMessage());
+            syncWithServer();
+        } catch (UncheckedIOException e) {
+            JOptionPane.showMessageDialog(this, "Lost connection to the server: " + e.getCause().getMessage());
         }
-
-        enrollments.add(new Enrollment(student, course));
-        saveData();
-        refreshEnrollmentList();
-        displayOverview();
+        return null;
     }
 
     private void refreshEnrollmentList() {
-        enrollmentListModel.clear();
-        for (Enrollment e : enrollments) {
-            enrollmentListModel.addElement(e.toString());
-        }
+        long start = Metrics.start();
+        enrollmentListModel.refresh();
+        REFRESH_ENROLLMENTS_TIMER.stop(start);
     }
 
     private void refreshEnrollmentCombos() {
-        enrollmentStudentComboBox.removeAllItems();
-        for (Student1 s : students) enrollmentStudentComboBox.addItem(s);
+        long start = Metrics.start();
+        combosStale = false;
+        enrollmentStudentModel.refresh();
+        enrollmentCourseModel.refresh();
+        REFRESH_COMBOS_TIMER.stop(start);
+    }
 
-        enrollmentCourseComboBox.removeAllItems();
-        for (Course c : courses) enrollmentCourseComboBox.addItem(c);
+    // ---------------- CSV IMPORT / EXPORT -----------------
+    private void importStudentsCsv() {
+        File file = chooseFile("Import Students CSV", JFileChooser.FILES_ONLY);
+        if (file != null) runImport(file, () -> CsvBulkIO.parseStudents(file), parsed -> service.importStudents(parsed));
     }
 
-    // ---------------- DATA OVERVIEW -----------------
-    private void displayOverview() {
+    private void importCoursesCsv() {
+        File file = chooseFile("Import Courses CSV", JFileChooser.FILES_ONLY);
+        if (file != null) runImport(file, () -> CsvBulkIO.parseCourses(file), parsed -> service.importCourses(parsed));
+    }
+
+    private void importEnrollmentsCsv() {
+        File file = chooseFile("Import Enrollments CSV", JFileChooser.FILES_ONLY);
+        if (file != null) runImport(file, () -> CsvBulkIO.parseEnrollments(file), parsed -> service.importEnrollments(parsed));
+    }
+
+    // A folder written by Export CSV. The students get new ids here, so the enrollment
+    // rows are pointed at those before they are imported.
+    private void importExportedCsv() {
+        File dir = chooseFile("Import exported CSV folder", JFileChooser.DIRECTORIES_ONLY);
+        if (dir == null) return;
+        setEditingEnabled(false);
+        showStatus("Importing " + dir + "...", false);
+        new SwingWorker<Void, Void>() {
+            private CsvBulkIO.Parsed<CsvBulkIO.StudentRow> students;
+            private CsvBulkIO.Parsed<CsvBulkIO.CourseRow> courses;
+            private CsvBulkIO.Parsed<CsvBulkIO.EnrollmentRow> enrollments;
+
+            @Override
+            protected Void doInBackground() throws Exception {
+                students = CsvBulkIO.parseStudents(new File(dir, CsvBulkIO.STUDENTS_FILE));
+                courses = CsvBulkIO.parseCourses(new File(dir, CsvBulkIO.COURSES_FILE));
+                enrollments = CsvBulkIO.parseEnrollments(new File(dir, CsvBulkIO.ENROLLMENTS_FILE));
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                setEditingEnabled(true);
+                try {
+                    get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    showStatus("Import failed: " + cause.getMessage(), true);
+                    return;
+                }
+                Integer imported = attempt(() -> {
+                    int added = service.importStudents(students) + service.importCourses(courses);
+                    CsvBulkIO.renumberStudents(enrollments, students);
+                    return added + service.importEnrollments(enrollments);
+                });
+                if (imported == null) {
+                    showStatus("Import of " + dir.getName() + " failed", true);
+                    return;
+                }
+                List<CsvBulkIO.RowError> errors = new ArrayList<>();
+                addErrors(errors, CsvBulkIO.STUDENTS_FILE, students);
+                addErrors(errors, CsvBulkIO.COURSES_FILE, courses);
+                addErrors(errors, CsvBulkIO.ENROLLMENTS_FILE, enrollments);
+                showStatus("Imported " + imported + " rows from " + dir.getName()
+                        + (errors.isEmpty() ? "" : ", " + errors.size() + " rejected"), false);
+                if (!errors.isEmpty()) showImportErrors(errors);
+            }
+        }.execute();
+    }
+
+    private static void addErrors(List<CsvBulkIO.RowError> errors, String fileName, CsvBulkIO.Parsed<?> parsed) {
+        for (CsvBulkIO.RowError e : parsed.errors) errors.add(new CsvBulkIO.RowError(e.line, fileName + ": " + e.message));
+    }
+
+    private File chooseFile(String title, int selectionMode) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle(title);
+        chooser.setFileSelectionMode(selectionMode);
+        return chooser.showDialog(this, "Select") == JFileChooser.APPROVE_OPTION ? chooser.getSelectedFile() : null;
+    }
+
+    // Parses off the EDT, then commits every valid row on the EDT as one batch of events
+    private <T> void runImport(File file, Callable<CsvBulkIO.Parsed<T>> parse, Function<CsvBulkIO.Parsed<T>, Integer> commit) {
+        setEditingEnabled(false);
+        showStatus("Importing " + file.getName() + "...", false);
+        new SwingWorker<CsvBulkIO.Parsed<T>, Void>() {
+            @Override
+            protected CsvBulkIO.Parsed<T> doInBackground() throws Exception {
+                return parse.call();
+            }
+
+            @Override
+            protected void done() {
+                setEditingEnabled(true);
+                CsvBulkIO.Parsed<T> parsed;
+                try {
+                    parsed = get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    showStatus("Import failed: " + cause.getMessage(), true);
+                    return;
+                }
+                Integer imported = attempt(() -> commit.apply(parsed));
+                if (imported == null) {
+                    showStatus("Import of " + file.getName() + " failed", true);
+                    return;
+                }
+                showStatus("Imported " + imported + " rows from " + file.getName()
+                        + (parsed.errors.isEmpty() ? "" : ", " + parsed.errors.size() + " rejected"), false);
+                if (!parsed.errors.isEmpty()) showImportErrors(parsed.errors);
+            }
+        }.execute();
+    }
+
+    private void showImportErrors(List<CsvBulkIO.RowError> errors) {
         StringBuilder sb = new StringBuilder();
+        errors.stream().limit(500).forEach(e -> sb.append(e).append("\n"));
+        if (errors.size() > 500) sb.append("... and ").append(errors.size() - 500).append(" more\n");
+        JTextArea text = new JTextArea(sb.toString(), 15, 60);
+        text.setEditable(false);
+        JOptionPane.showMessageDialog(this, new JScrollPane(text), errors.size() + " rows were not imported",
+                JOptionPane.WARNING_MESSAGE);
+    }
 
-        sb.append("=== STUDENTS ===\n");
-        if (students.isEmpty()) sb.append("No students registered.\n");
-        else students.forEach(s -> sb.append(s.detailedString()).append("\n"));
+    private void exportCsv() {
+        File dir = chooseFile("Export CSV to folder", JFileChooser.DIRECTORIES_ONLY);
+        if (dir == null) return;
+
+        showStatus("Exporting to " + dir + "...", false);
+        CoachingCenter data = service;
+        new SwingWorker<DataCodec.Snapshot, Void>() {
+            @Override
+            protected DataCodec.Snapshot doInBackground() throws IOException {
+                // A consistent copy taken under the service's read lock, so edits may continue meanwhile
+                DataCodec.Snapshot snapshot = data.copySnapshot();
+                CsvBulkIO.exportStudents(new File(dir, CsvBulkIO.STUDENTS_FILE), snapshot.students);
+                CsvBulkIO.exportCourses(new File(dir, CsvBulkIO.COURSES_FILE), snapshot.courses);
+                CsvBulkIO.exportEnrollments(new File(dir, CsvBulkIO.ENROLLMENTS_FILE), snapshot.enrollments);
+                return snapshot;
+            }
 
-        sb.append("\n=== COURSES ===\n");
-        if (courses.isEmpty()) sb.append("No courses added.\n");
-        else courses.forEach(c -> sb.append(c.detailedString()).append("\n"));
+            @Override
+            protected void done() {
+                try {
+                    DataCodec.Snapshot snapshot = get();
+                    showStatus("Exported " + snapshot.students.size() + " students, " + snapshot.courses.size()
+                            + " courses, " + snapshot.enrollments.size() + " enrollments to " + dir, false);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    showStatus("Export failed: " + cause.getMessage(), true);
+                }
+            }
+        }.execute();
+    }
 
-        sb.append("\n=== ENROLLMENTS ===\n");
-        if (enrollments.isEmpty()) sb.append("No enrollments yet.\n");
-        else enrollments.forEach(e -> sb.append(e.toString()).append("\n"));
+    // ---------------- REPORTS -----------------
+    private void addReportItem(String title, Function<DataCodec.Snapshot, ReportEngine.Report> report) {
+        JMenuItem item = new JMenuItem(title);
+        item.addActionListener(e -> runReport(title, report));
+        reportsMenu.add(item);
+    }
 
-        overviewTextArea.setText(sb.toString());
+    private void runReport(String title, Function<DataCodec.Snapshot, ReportEngine.Report> report) {
+        showStatus("Computing " + title + "...", false);
+        CoachingCenter data = service;
+        new SwingWorker<ReportEngine.Report, Void>() {
+            @Override
+            protected ReportEngine.Report doInBackground() {
+                return report.apply(data.copySnapshot());
+            }
+
+            @Override
+            protected void done() {
+                ReportEngine.Report result;
+                try {
+                    result = get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    showStatus(title + " failed: " + cause.getMessage(), true);
+                    return;
+                }
+                showStatus("Computed " + title, false);
+                showReport(result);
+            }
+        }.execute();
+    }
+
+    private void showReport(ReportEngine.Report report) {
+        JTable table = new JTable(new javax.swing.table.AbstractTableModel() {
+            @Override
+            public int getRowCount() { return report.rows.size(); }
+
+            @Override
+            public int getColumnCount() { return report.columns.length; }
+
+            @Override
+            public String getColumnName(int column) { return report.columns[column]; }
+
+            @Override
+            public Object getValueAt(int row, int column) { return report.rows.get(row)[column]; }
+        });
+        table.setAutoCreateRowSorter(true);
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setPreferredSize(new Dimension(640, 400));
+        Object[] options = {"Export CSV...", "Close"};
+        int choice = JOptionPane.showOptionDialog(this, scroll, report.title + " (" + report.rows.size() + " rows)",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[1]);
+        if (choice != 0) return;
+        File dir = chooseFile("Export report to folder", JFileChooser.DIRECTORIES_ONLY);
+        if (dir != null) writeReports(dir, () -> List.of(report));
+    }
+
+    private void exportReports() {
+        File dir = chooseFile("Export reports to folder", JFileChooser.DIRECTORIES_ONLY);
+        if (dir == null) return;
+        CoachingCenter data = service;
+        writeReports(dir, () -> ReportEngine.all(data.copySnapshot()));
+    }
+
+    private void writeReports(File dir, Callable<List<ReportEngine.Report>> reports) {
+        showStatus("Exporting reports to " + dir + "...", false);
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                List<ReportEngine.Report> all = reports.call();
+                for (ReportEngine.Report report : all) CsvBulkIO.exportReport(new File(dir, report.fileName()), report);
+                return all.size();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    int count = get();
+                    showStatus("Exported " + count + (count == 1 ? " report" : " reports") + " to " + dir, false);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    showStatus("Export failed: " + cause.getMessage(), true);
+                }
+            }
+        }.execute();
+    }
+
+    // ---------------- AUTO-SCHEDULE -----------------
+    // Asks for rooms and hours, plans on a copy off the EDT, then applies the plan on the
+    // EDT as one change, which a single undo takes back
+    private void autoSchedule() {
+        JTextField roomsField = new JTextField("R101, R102, R103", 25);
+        JTextField daysField = new JTextField("Mon Tue Wed Thu Fri", 25);
+        JTextField hoursField = new JTextField("09:00-18:00", 10);
+        JTextField lengthField = new JTextField("90", 5);
+        JTextField perCourseField = new JTextField("2", 5);
+        JTextField limitField = new JTextField("5", 5);
+        JPanel form = new JPanel(new GridLayout(0, 2, 6, 4));
+        form.add(new JLabel("Rooms (comma-separated):"));
+        form.add(roomsField);
+        form.add(new JLabel("Days:"));
+        form.add(daysField);
+        form.add(new JLabel("Hours:"));
+        form.add(hoursField);
+        form.add(new JLabel("Session length (minutes):"));
+        form.add(lengthField);
+        form.add(new JLabel("Sessions per course:"));
+        form.add(perCourseField);
+        form.add(new JLabel("Time limit (seconds):"));
+        form.add(limitField);
+        if (JOptionPane.showConfirmDialog(this, form, "Auto-Schedule Courses", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        AutoScheduler.Options options = attempt(() -> {
+            List<DayOfWeek> days = new ArrayList<>();
+            for (String day : daysField.getText().trim().split("[\\s,]+")) days.add(Timetable.parseDay(day));
+            String[] hours = hoursField.getText().split("-");
+            if (hours.length != 2) throw new IllegalArgumentException("Write the hours as 09:00-18:00.");
+            try {
+                return new AutoScheduler.Options(Arrays.asList(roomsField.getText().split(",")), days,
+                        Timetable.parseTime(hours[0]), Timetable.parseTime(hours[1]),
+                        Integer.parseInt(lengthField.getText().trim()), Integer.parseInt(perCourseField.getText().trim()),
+                        Long.parseLong(limitField.getText().trim()) * 1000);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Please enter whole numbers for the length, sessions and time limit.");
+            }
+        });
+        if (options == null) return;
+
+        showStatus("Scheduling courses...", false);
+        CoachingCenter data = service;
+        new SwingWorker<AutoScheduler.Plan, Void>() {
+            @Override
+            protected AutoScheduler.Plan doInBackground() {
+                return AutoScheduler.plan(data.copySnapshot(), options);
+            }
+
+            @Override
+            protected void done() {
+                AutoScheduler.Plan plan;
+                try {
+                    plan = get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    showStatus("Scheduling failed: " + cause.getMessage(), true);
+                    return;
+                }
+                List<String> rejected = new ArrayList<>();
+                Integer applied = attempt(() -> service.applySchedule(plan, rejected));
+                if (applied == null) {
+                    showStatus("Scheduling failed", true);
+                    return;
+                }
+                int left = plan.unplaced.size() + rejected.size();
+                showStatus("Scheduled " + applied + " courses in " + plan.passes + " passes"
+                        + (left == 0 ? "" : ", " + left + " could not be placed"), left > 0);
+                if (left > 0) {
+                    List<String> lines = new ArrayList<>(rejected);
+                    for (String name : plan.unplaced) lines.add(name + ": no free room and time");
+                    JTextArea text = new JTextArea(String.join("\n", lines), 15, 60);
+                    text.setEditable(false);
+                    JOptionPane.showMessageDialog(CoachingCenterManagementSystem.this, new JScrollPane(text),
+                            left + " courses were not scheduled", JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    // ---------------- VIEW UPDATES -----------------
+    // Applies every change since the last EDT turn in one pass. A few events are
+    // passed to the list models row by row, which keeps selections in place; a
+    // burst such as an import resyncs each affected model with one refresh.
+    // Timed as view.update; a reload shows up as view.refreshAll instead.
+    private void dataChanged(List<DataEvent> events) {
+        long start = Metrics.start();
+        int studentEvents = 0;
+        int courseEvents = 0;
+        int enrollmentEvents = 0;
+        for (DataEvent e : events) {
+            if (e instanceof DataEvent.Reloaded) {
+                refreshAllViews();
+                return;
+            }
+            if (e instanceof DataEvent.StudentEvent) studentEvents++;
+            else if (e instanceof DataEvent.CourseEvent) courseEvents++;
+            else enrollmentEvents++;
+        }
+        boolean refreshStudents = studentEvents > ROW_EVENT_LIMIT;
+        boolean refreshCourses = courseEvents > ROW_EVENT_LIMIT;
+        boolean refreshEnrollments = enrollmentEvents > ROW_EVENT_LIMIT;
+        // Enrollment rows show student and course names
+        boolean namesChanged = false;
+        // Hidden combos are refilled once they show instead
+        boolean updateCombos = !combosStale && enrollmentStudentComboBox.isShowing();
+        combosStale = !updateCombos;
+
+        for (DataEvent e : events) {
+            if (e instanceof DataEvent.StudentEvent) {
+                DataEvent.StudentEvent se = (DataEvent.StudentEvent) e;
+                if (se instanceof DataEvent.StudentUpdated) namesChanged = true;
+                if (!refreshStudents) {
+                    applyRowEvent(se, se.row, se.student, studentListModel, updateCombos ? enrollmentStudentModel : null);
+                }
+            } else if (e instanceof DataEvent.CourseEvent) {
+                DataEvent.CourseEvent ce = (DataEvent.CourseEvent) e;
+                if (ce instanceof DataEvent.CourseRenamed) namesChanged = true;
+                if (!refreshCourses) {
+                    applyRowEvent(ce, ce.row, ce.course, courseListModel, updateCombos ? enrollmentCourseModel : null);
+                }
+            } else if (!refreshEnrollments) {
+                DataEvent.EnrollmentEvent ee = (DataEvent.EnrollmentEvent) e;
+                if (ee instanceof DataEvent.EnrollmentAdded) enrollmentListModel.rowsAdded(ee.row, ee.row);
+                else enrollmentListModel.rowsRemoved(ee.row, ee.row);
+            }
+        }
+
+        // A filtered list shows search results, which the search has to recompute
+        if (refreshStudents) {
+            refreshStudentList();
+            if (updateCombos) enrollmentStudentModel.refresh();
+            studentSearch.requery();
+        }
+        if (refreshCourses) {
+            refreshCourseList();
+            if (updateCombos) enrollmentCourseModel.refresh();
+            courseSearch.requery();
+        }
+        if (refreshEnrollments) {
+            refreshEnrollmentList();
+        } else if (namesChanged && !service.getEnrollments().isEmpty()) {
+            // JList only repaints the visible rows
+            enrollmentListModel.rowsChanged(0, service.getEnrollments().size() - 1);
+        }
+        displayOverview();
+        updateUndoItems();
+        VIEW_UPDATE_TIMER.stop(start);
+    }
+
+    // combo is null while the combos are stale
+    private static <E> void applyRowEvent(DataEvent e, int row, E item, ListBackedModel<E> list, ListComboBoxModel<E> combo) {
+        if (e instanceof DataEvent.StudentAdded || e instanceof DataEvent.CourseAdded) {
+            list.rowsAdded(row, row);
+            if (combo != null) combo.rowsAdded(row, row);
+        } else if (e instanceof DataEvent.StudentRemoved || e instanceof DataEvent.CourseRemoved) {
+            list.rowsRemoved(row, row);
+            if (combo != null) combo.rowRemoved(row, item);
+        } else {
+            list.rowsChanged(row, row);
+            if (combo != null) combo.rowsChanged(row, row);
+        }
+    }
+
+    // ---------------- DATA OVERVIEW -----------------
+    private void displayOverview() {
+        if (!overviewJList.isShowing()) {
+            overviewStale = true;
+            return;
+        }
+        overviewStale = false;
+        long start = Metrics.start();
+        overviewModel.refresh();
+        OVERVIEW_TIMER.stop(start);
     }
 
     // ---------------- DATA PERSISTENCE -----------------
-    private void saveData() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            oos.writeObject(students);
-            oos.writeObject(courses);
-            oos.writeObject(enrollments);
-            oos.writeInt(nextStudentId);
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(this, "Error saving data: " + e.getMessage());
+    // Opens the data off the EDT (snapshot read plus journal replay, or the server's copy), then installs it on the EDT
+    private class DataLoader extends SwingWorker<CoachingCenter, Void> {
+        @Override
+        protected CoachingCenter doInBackground() throws Exception {
+            if (dataSource != null) return dataSource.call();
+            Consumer<IOException> saveErrors =
+                    e -> SwingUtilities.invokeLater(() -> showStatus("Error saving data: " + e.getMessage(), true));
+            // -Dcoachingcenter.jdbcUrl=jdbc:h2:file:./coaching_center keeps the data in a database instead
+            String jdbcUrl = System.getProperty("coachingcenter.jdbcUrl");
+            if (jdbcUrl != null) return CoachingCenterService.open(new JdbcStorageEngine(jdbcUrl, saveErrors));
+            return CoachingCenterService.open(new File(DATA_FILE), new File(LEGACY_DATA_FILE), new File(JOURNAL_FILE), saveErrors);
         }
+
+        @Override
+        protected void done() {
+            try {
+                service = get();
+                service.events().subscribe(DataEventBus.onEdt(events -> dataChanged(events)));
+                refreshAllViews();
+                setEditingEnabled(true);
+                if (service instanceof RemoteCoachingCenter) {
+                    syncTimer = new Timer(SYNC_INTERVAL_MILLIS, e -> syncWithServer());
+                    syncTimer.start();
+                }
+                if (service.getLoadError() != null) {
+                    showStatus("Error loading data: " + service.getLoadError().getMessage(), true);
+                } else {
+                    showStatus(service.getStudents().size() + " students, " + service.getCourses().size() + " courses loaded", false);
+                }
+            } catch (Exception e) {
+                // Without a journal nothing could be saved, so the window stays read-only
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                showStatus("Error loading data: " + cause.getMessage(), true);
+            } finally {
+                dataLoaded.countDown();
+                StartupTiming.mark("data.loaded");
+            }
+        }
+    }
+
+    private void refreshAllViews() {
+        long start = Metrics.start();
+        refreshStudentList();
+        refreshCourseList();
+        refreshEnrollmentList();
+        if (enrollmentStudentComboBox.isShowing()) refreshEnrollmentCombos();
+        else combosStale = true;
+        studentSearch.requery();
+        courseSearch.requery();
+        displayOverview();
+        REFRESH_ALL_TIMER.stop(start);
+    }
+
+    // ---------------- SHARED SERVER -----------------
+    // Fetches other users' changes off the EDT and applies them on it; a no-op for local data.
+    // The views follow the copy's events like any other change.
+    private void syncWithServer() {
+        if (!(service instanceof RemoteCoachingCenter) || syncing) return;
+        RemoteCoachingCenter remote = (RemoteCoachingCenter) service;
+        syncing = true;
+        new SwingWorker<RemoteCoachingCenter.Update, Void>() {
+            @Override
+            protected RemoteCoachingCenter.Update doInBackground() {
+                return remote.fetchIfChanged();
+            }
+
+            @Override
+            protected void done() {
+                syncing = false;
+                try {
+                    RemoteCoachingCenter.Update update = get();
+                    if (update != null) remote.install(update);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    showStatus("Lost connection to the server: " + cause.getMessage(), true);
+                }
+            }
+        }.execute();
     }
 
-    @SuppressWarnings("unchecked")
-    private void loadData() {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) return;
+    private void shutDown() {
+        if (syncTimer != null) syncTimer.stop();
+        service.close();
+    }
+
+    private void showStatus(String message, boolean error) {
+        statusLabel.setText(message);
+        statusLabel.setForeground(error ? Color.RED.darker() : UIManager.getColor("Label.foreground"));
+    }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            students = (List<Student1>) ois.readObject();
-            courses = (List<Course>) ois.readObject();
-            enrollments = (List<Enrollment>) ois.readObject();
-            nextStudentId = ois.readInt();
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Error loading data: " + e.getMessage());
+    private void setEditingEnabled(boolean enabled) {
+        for (JButton b : new JButton[]{addStudentButton, updateStudentButton, removeStudentButton,
+                addCourseButton, updateCourseButton, assignInstructorButton, removeCourseButton, scheduleCourseButton,
+                enrollButton}) {
+            b.setEnabled(enabled);
         }
+        fileMenu.setEnabled(enabled);
+        editMenu.setEnabled(enabled);
+        reportsMenu.setEnabled(enabled);
+        scheduleMenu.setEnabled(enabled);
+        updateUndoItems();
     }
 
-    private void updateNextStudentId() {
-        nextStudentId = students.stream()
-                .mapToInt(Student1::getId)
-                .max()
-                .orElse(0) + 1;
+    // An undo publishes events like any edit, so the views follow it through dataChanged
+    private void updateUndoItems() {
+        undoItem.setEnabled(service.canUndo());
+        redoItem.setEnabled(service.canRedo());
     }
 
+    // The first paint is when the user actually sees the window
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (!painted) {
+            painted = true;
+            StartupTiming.mark("frame.firstPaint");
+        }
+    }
+
+    // With --connect host[:port] the window works on a CoachingCenterServer shared with other users
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            CoachingCenterManagementSystem app = new CoachingCenterManagementSystem();
-            app.setVisible(true);
-        });
+        StartupTiming.mark("main");
+        Metrics.configureFromSystemProperties();
+        if (Metrics.isEnabled()) {
+            EdtStallDetector.install(Long.getLong("coachingcenter.metrics.stallMillis", EdtStallDetector.DEFAULT_THRESHOLD_MILLIS));
+        }
+        SwingUtilities.invokeLater(() -> open(args));
+    }
+
+    // Builds and shows the window for main's arguments; on the EDT
+    static CoachingCenterManagementSystem open(String[] args) {
+        CoachingCenterManagementSystem app;
+        if (args.length >= 2 && args[0].equals("--connect")) {
+            String[] address = args[1].split(":", 2);
+            int port = address.length > 1 ? Integer.parseInt(address[1]) : WireProtocol.DEFAULT_PORT;
+            app = new CoachingCenterManagementSystem(() -> RemoteCoachingCenter.connect(address[0], port),
+                    "Coaching Center Management System - " + args[1]);
+        } else {
+            app = new CoachingCenterManagementSystem();
+        }
+        app.setVisible(true);
+        StartupTiming.mark("frame.visible");
+        return app;
     }
 }
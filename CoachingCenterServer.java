@@ -0,0 +1,410 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+// -------------- NETWORK SERVER --------------
+// Serves one CoachingCenterService to many clients over WireProtocol. A single
+// selector thread accepts connections and moves bytes; complete requests run on
+// a worker pool, where the service's read-write lock lets lookups proceed in
+// parallel. Requests from one connection run in the order they arrived, so a
+// client may pipeline them.
+//
+// The server keeps the latest committed batches as wire change records, so a
+// client brings its copy up to date with what changed since its change count
+// and needs the whole data only once the log no longer reaches back that far.
+class CoachingCenterServer implements Closeable {
+
+    private final CoachingCenterService service;
+    private final ExecutorService workers;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Thread selectorThread;
+    private volatile boolean closed;
+
+    // Change log; written by the listener under the service's write lock, read under its read lock
+    private static final int MAX_LOG_BYTES = 4 << 20;
+    private final ArrayDeque<LoggedBatch> log = new ArrayDeque<>();
+    private final DataEventBus.Listener logger = this::logBatch;
+    private long logStart; // the change count the oldest logged batch starts from
+    private long logBytes;
+
+    private static final Metrics.Timer REQUEST_TIMER = Metrics.timer("server.request");
+
+    private static final class LoggedBatch {
+        final long changeCount; // after the batch
+        final byte[] changes;
+
+        LoggedBatch(long changeCount, byte[] changes) {
+            this.changeCount = changeCount;
+            this.changes = changes;
+        }
+    }
+
+    private final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(8192);
+        final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+        // Tail of this connection's request chain
+        CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    CoachingCenterServer(CoachingCenterService service, int port, int workerThreads) throws IOException {
+        this.service = service;
+        this.workers = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread t = new Thread(r, "server-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        selectorThread = new Thread(this::runSelector, "server-selector");
+        service.read(() -> {
+            logStart = service.changeCount();
+            service.events().subscribe(logger);
+            return null;
+        });
+    }
+
+    void start() {
+        selectorThread.start();
+    }
+
+    // The bound port, useful when the server was created with port 0
+    int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        service.events().unsubscribe(logger);
+    }
+
+    // ----------------- SELECTOR THREAD -----------------
+    private void runSelector() {
+        try {
+            while (!closed) {
+                selector.select();
+                for (Connection c; (c = pendingWrites.poll()) != null; ) {
+                    if (c.key.isValid()) c.key.interestOps(c.key.interestOps() | SelectionKey.OP_WRITE);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        if (key.isValid() && key.isReadable()) read((Connection) key.attachment());
+                        if (key.isValid() && key.isWritable()) write((Connection) key.attachment());
+                    } catch (IOException e) {
+                        drop(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // The selector itself failed; nothing can be served any more
+        } finally {
+            for (SelectionKey key : selector.keys()) drop(key);
+            try {
+                selector.close();
+                serverChannel.close();
+            } catch (IOException ignored) {
+                // Shutting down anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    private void read(Connection c) throws IOException {
+        if (c.channel.read(c.in) < 0) throw new EOFException();
+        c.in.flip();
+        while (c.in.remaining() >= 4) {
+            int length = c.in.getInt(c.in.position());
+            if (length <= 0 || length > WireProtocol.MAX_FRAME) throw new IOException("Bad frame length " + length);
+            if (c.in.remaining() < 4 + length) break;
+            byte[] request = new byte[length];
+            c.in.position(c.in.position() + 4);
+            c.in.get(request);
+            c.tail = c.tail.thenRunAsync(() -> respond(c, request), workers);
+        }
+        c.in.compact();
+        // Grow for a frame larger than the buffer
+        if (!c.in.hasRemaining()) {
+            ByteBuffer bigger = ByteBuffer.allocate(c.in.capacity() * 2);
+            c.in.flip();
+            bigger.put(c.in);
+            c.in = bigger;
+        }
+    }
+
+    private void write(Connection c) throws IOException {
+        for (ByteBuffer b; (b = c.out.peek()) != null; ) {
+            c.channel.write(b);
+            if (b.hasRemaining()) return;
+            c.out.poll();
+        }
+        c.key.interestOps(SelectionKey.OP_READ);
+        // A response queued after the loop saw an empty queue must not be left waiting
+        if (!c.out.isEmpty()) c.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private static void drop(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+
+    // ----------------- REQUESTS -----------------
+    private void respond(Connection c, byte[] request) {
+        long start = Metrics.start();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(request));
+            int requestId = in.readInt();
+            byte op = in.readByte();
+            out.writeInt(0); // length, patched below
+            out.writeInt(requestId);
+            out.writeByte(WireProtocol.OK);
+            try {
+                if (WireProtocol.isEdit(op)) edit(op, in, out);
+                else handle(op, in, out);
+            } catch (IllegalArgumentException | ConcurrentModificationException e) {
+                bytes.reset();
+                out.writeInt(0);
+                out.writeInt(requestId);
+                out.writeByte(e instanceof ConcurrentModificationException ? WireProtocol.CONFLICT : WireProtocol.INVALID);
+                out.writeUTF(String.valueOf(e.getMessage()));
+            } catch (RuntimeException e) {
+                bytes.reset();
+                out.writeInt(0);
+                out.writeInt(requestId);
+                out.writeByte(WireProtocol.FAILED);
+                out.writeUTF(String.valueOf(e));
+            }
+        } catch (IOException e) {
+            // Malformed request: nothing sensible to answer, so hang up
+            drop(c.key);
+            return;
+        }
+        ByteBuffer response = ByteBuffer.wrap(bytes.toByteArray());
+        response.putInt(0, response.capacity() - 4);
+        c.out.add(response);
+        pendingWrites.add(c);
+        selector.wakeup();
+        REQUEST_TIMER.stop(start);
+    }
+
+    // Runs the edit as one change and appends the change counts around it; nothing else
+    // changes the data in between, so a client whose copy was at the first count
+    // has everything up to the second once it has applied its own edit
+    private void edit(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        long[] counts = new long[2];
+        try {
+            service.transaction(() -> {
+                counts[0] = service.changeCount();
+                try {
+                    handle(op, in, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                counts[1] = service.changeCount();
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.writeLong(counts[0]);
+        out.writeLong(counts[1]);
+    }
+
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case WireProtocol.SNAPSHOT: {
+                // Count and copy under one read lock so the client can tell later changes apart
+                Object[] state = service.read(() -> new Object[]{service.changeCount(), service.copySnapshot()});
+                out.writeLong((Long) state[0]);
+                WireProtocol.writeSnapshot(out, (DataCodec.Snapshot) state[1]);
+                break;
+            }
+            case WireProtocol.CHANGE_COUNT:
+                out.writeLong(service.changeCount());
+                break;
+            case WireProtocol.CHANGES: {
+                long since = in.readLong();
+                Object[] state = service.read(() -> new Object[]{service.changeCount(), changesSince(since)});
+                byte[] changes = (byte[]) state[1];
+                out.writeLong((Long) state[0]);
+                out.writeBoolean(changes != null);
+                if (changes != null) {
+                    out.writeInt(changes.length);
+                    out.write(changes);
+                }
+                break;
+            }
+            case WireProtocol.GET_STUDENT: {
+                int id = in.readInt();
+                Student1 s = service.read(() -> copy(service.findStudent(id)));
+                out.writeBoolean(s != null);
+                if (s != null) WireProtocol.writeStudent(out, s);
+                break;
+            }
+            case WireProtocol.ADD_STUDENT: {
+                String name = in.readUTF();
+                int age = in.readInt();
+                WireProtocol.writeStudent(out, service.addStudent(name, age, in.readUTF(), in.readUTF()));
+                break;
+            }
+            case WireProtocol.UPDATE_STUDENT: {
+                int id = in.readInt();
+                int version = in.readInt();
+                String name = in.readUTF();
+                int age = in.readInt();
+                WireProtocol.writeStudent(out, service.updateStudent(id, version, name, age, in.readUTF(), in.readUTF()));
+                break;
+            }
+            case WireProtocol.REMOVE_STUDENT:
+                service.removeStudent(in.readInt());
+                break;
+            case WireProtocol.ADD_COURSE:
+                WireProtocol.writeCourse(out, service.addCourse(in.readUTF()));
+                break;
+            case WireProtocol.RENAME_COURSE: {
+                String name = in.readUTF();
+                int version = in.readInt();
+                WireProtocol.writeCourse(out, service.renameCourse(name, version, in.readUTF()));
+                break;
+            }
+            case WireProtocol.ASSIGN_INSTRUCTOR: {
+                String name = in.readUTF();
+                int version = in.readInt();
+                WireProtocol.writeCourse(out, service.assignInstructor(name, version, in.readUTF()));
+                break;
+            }
+            case WireProtocol.SCHEDULE_COURSE: {
+                String name = in.readUTF();
+                int version = in.readInt();
+                WireProtocol.writeCourse(out, service.scheduleCourse(name, version, Timetable.parseAll(in.readUTF())));
+                break;
+            }
+            case WireProtocol.REMOVE_COURSE:
+                service.removeCourse(in.readUTF());
+                break;
+            case WireProtocol.ENROLL: {
+                int studentId = in.readInt();
+                service.enroll(studentId, in.readUTF());
+                break;
+            }
+            case WireProtocol.SEARCH_STUDENTS: {
+                String query = in.readUTF();
+                int limit = in.readInt();
+                List<Student1> matches = service.read(() -> {
+                    List<Student1> found = service.searchStudents(query, () -> false);
+                    List<Student1> copies = new ArrayList<>();
+                    for (Student1 s : found.subList(0, Math.min(limit, found.size()))) copies.add(copy(s));
+                    return copies;
+                });
+                out.writeInt(matches.size());
+                for (Student1 s : matches) WireProtocol.writeStudent(out, s);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown operation " + op);
+        }
+    }
+
+    // ----------------- CHANGE LOG -----------------
+    private void logBatch(List<DataEvent> batch) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            if (!WireProtocol.writeChanges(new DataOutputStream(bytes), batch)) {
+                // Copies from before the batch need the whole data
+                log.clear();
+                logBytes = 0;
+                logStart = service.changeCount();
+                return;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by an in-memory stream
+        }
+        log.add(new LoggedBatch(service.changeCount(), bytes.toByteArray()));
+        logBytes += bytes.size();
+        while (logBytes > MAX_LOG_BYTES) {
+            LoggedBatch oldest = log.poll();
+            logBytes -= oldest.changes.length;
+            logStart = oldest.changeCount;
+        }
+    }
+
+    // Run under the read lock. The changes committed after the given count, or null when
+    // the log does not reach back that far. A count inside a batch's range was taken
+    // after a rolled-back change, which changed nothing.
+    private byte[] changesSince(long changeCount) {
+        if (changeCount < logStart || changeCount > service.changeCount()) return null;
+        ByteArrayOutputStream changes = new ByteArrayOutputStream();
+        for (LoggedBatch batch : log) {
+            if (batch.changeCount > changeCount) changes.write(batch.changes, 0, batch.changes.length);
+        }
+        return changes.toByteArray();
+    }
+
+    // Students are edited in place under the write lock, so they are copied under the read lock before encoding
+    private static Student1 copy(Student1 s) {
+        if (s == null) return null;
+        Student1 copy = new Student1(s.getId(), s.getName(), s.getAge(), s.getContactNumber(), s.getEmail());
+        copy.setVersion(s.getVersion());
+        return copy;
+    }
+
+    // ----------------- MAIN -----------------
+    // Serves the data files in the working directory: java CoachingCenterServer [port]
+    public static void main(String[] args) throws Exception {
+        Metrics.configureFromSystemProperties();
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : WireProtocol.DEFAULT_PORT;
+        CoachingCenterService service = CoachingCenterService.open(new File(CoachingCenterManagementSystem.DATA_FILE),
+                new File(CoachingCenterManagementSystem.LEGACY_DATA_FILE), new File(CoachingCenterManagementSystem.JOURNAL_FILE),
+                e -> System.err.println("Error saving data: " + e.getMessage()));
+        if (service.getLoadError() != null) System.err.println("Error loading data: " + service.getLoadError().getMessage());
+        CoachingCenterServer server = new CoachingCenterServer(service, port, Runtime.getRuntime().availableProcessors());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            service.close();
+        }));
+        server.start();
+        System.out.println("Serving " + service.getStudents().size() + " students on port " + server.port());
+    }
+}
@@ -0,0 +1,1116 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// -------------- DOMAIN SERVICE --------------
+// Headless owner of the students, courses and enrollments, their indexes and
+// their storage. Every rule lives here: validation, id assignment, duplicate
+// checks and cascading deletes. Rule violations throw IllegalArgumentException
+// with the message the forms show.
+//
+// Mutators take the write lock and lookups the read lock, so any number of
+// readers can run next to one writer. The list views returned by getStudents()
+// and friends are live and unlocked: they are meant for the thread that makes
+// the changes (the EDT in the Swing frame). Other threads use the lookups,
+// read(...) or copySnapshot().
+//
+// Enrollments are (student id, course id) pairs in an EnrollmentStore. The
+// Enrollment objects handed out by getEnrollments(), enrollmentsOf(...) and
+// rosterOf(...) are made as they are read, for display.
+//
+// Every change publishes DataEvents on events() and commits them before it
+// releases the write lock; the storage engine is one of the subscribers.
+//
+// Students and courses carry a version that every update bumps. The overloads
+// taking an expected version refuse to overwrite an edit the caller has not
+// seen; versions restart from zero whenever the data is loaded.
+//
+// Each committed batch is also one step of the undo history. transaction(...)
+// makes several edits one batch, and so one journal write and one undo step.
+//
+// Courses may have weekly sessions. A Timetable indexes them by room and by
+// instructor; scheduling a course, assigning an instructor and enrolling a
+// student are refused when they would put a room, an instructor or a student
+// in two places at once. Undo, replay and replication restore states that
+// were already checked, so they skip the checks.
+public class CoachingCenterService implements CoachingCenter {
+
+    static final int JOURNAL_COMPACT_THRESHOLD = 1000;
+    static final int UNDO_LIMIT = 100;
+    public static final int ANY_VERSION = -1;
+
+    private static final String FILL_ALL_STUDENT_FIELDS = "Please fill all student fields.";
+    private static final Comparator<Student1> BY_STUDENT_ID = Comparator.comparingInt(Student1::getId);
+    private static final Comparator<Course> BY_COURSE_ID = Comparator.comparingInt(Course::getId);
+    private static final Metrics.Timer LOAD_TIMER = Metrics.timer("data.load");
+
+    // Positions a removal took out of the lists, so views can report exact row changes
+    public static final class Removal {
+        public final int row;
+        public final int[] enrollmentRows; // ascending
+
+        Removal(int row, int[] enrollmentRows) {
+            this.row = row;
+            this.enrollmentRows = enrollmentRows;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger nextStudentId = new AtomicInteger(1);
+    private final AtomicLong changeCount = new AtomicLong();
+    private final DataEventBus events = new DataEventBus();
+
+    private List<Student1> students = new ArrayList<>();
+    private List<Course> courses = new ArrayList<>();
+    private EnrollmentStore enrollments = new EnrollmentStore();
+    private final List<Enrollment> enrollmentView = new EnrollmentView();
+    private DataIndex index = new DataIndex(students, courses);
+    private Timetable timetable = new Timetable(courses); // guarded by the write lock
+    private int nextCourseId; // guarded by the write lock
+    private final SearchIndex<Student1> studentSearch =
+            new SearchIndex<>(s -> new String[]{s.getName(), s.getEmail(), s.getContactNumber()});
+    private final SearchIndex<Course> courseSearch =
+            new SearchIndex<>(c -> new String[]{c.getCourseName(), c.getInstructorName()});
+
+    // Committed batches, newest first; guarded by the write lock
+    private final Deque<List<DataEvent>> undoStack = new ArrayDeque<>();
+    private final Deque<List<DataEvent>> redoStack = new ArrayDeque<>();
+    private Deque<List<DataEvent>> historyTarget; // where an undo or redo files its batch
+
+    private StorageEngine storage; // null for an in-memory service
+    private IOException loadError;
+
+    // Empty, in-memory service; nothing is persisted
+    public CoachingCenterService() {
+        events.subscribe(this::remember);
+    }
+
+    // The data files and their journal, see FileStorageEngine
+    public static CoachingCenterService open(File dataFile, File legacyFile, File journalFile,
+                                             Consumer<IOException> journalErrors) throws IOException {
+        return open(new FileStorageEngine(dataFile, legacyFile, journalFile, journalErrors));
+    }
+
+    // Loads what the engine saved and hands it every committed batch from then on. When
+    // the snapshot cannot be read the service starts from the replayed edits alone;
+    // getLoadError() reports that, and problems the engine recovered from.
+    public static CoachingCenterService open(StorageEngine storage) throws IOException {
+        long start = Metrics.start();
+        CoachingCenterService service = read(storage);
+        service.storage = storage;
+        service.events.subscribe(storage::saveDelta);
+        service.events.subscribe(Metrics::countEvents);
+        LOAD_TIMER.stop(start);
+        return service;
+    }
+
+    // What the engine saved, detached from it: nothing done to the service is saved
+    static CoachingCenterService read(StorageEngine storage) throws IOException {
+        CoachingCenterService service = new CoachingCenterService();
+        try {
+            List<IOException> skipped = new ArrayList<>();
+            DataCodec.Snapshot snapshot = storage.load(skipped);
+            if (snapshot != null) service.install(snapshot);
+            if (!skipped.isEmpty()) service.loadError = skipped.get(0);
+        } catch (IOException e) {
+            service.loadError = e;
+        }
+        storage.replay(service.new Replay());
+        service.updateNextStudentId();
+        return service;
+    }
+
+    private void install(DataCodec.Snapshot snapshot) {
+        students = snapshot.students;
+        courses = snapshot.courses;
+        // Course ids are not saved; they follow list order, as the snapshot's course rows do
+        for (int row = 0; row < courses.size(); row++) courses.get(row).setId(row);
+        nextCourseId = courses.size();
+        enrollments = new EnrollmentStore();
+        DataCodec.Enrollments pairs = snapshot.enrollments;
+        for (int i = 0; i < pairs.size(); i++) enrollments.add(pairs.studentId(i), pairs.courseRow(i));
+        index = new DataIndex(students, courses);
+        timetable = new Timetable(courses);
+        nextStudentId.set(snapshot.nextStudentId);
+    }
+
+    // Ids are handed out in increasing order, so the last student holds the highest one
+    private void updateNextStudentId() {
+        int lastId = students.isEmpty() ? 0 : students.get(students.size() - 1).getId();
+        nextStudentId.accumulateAndGet(lastId + 1, Math::max);
+    }
+
+    // Service over data received from elsewhere, e.g. a client's copy of the server's data
+    static CoachingCenterService fromSnapshot(DataCodec.Snapshot snapshot) {
+        CoachingCenterService service = new CoachingCenterService();
+        service.install(snapshot);
+        service.updateNextStudentId();
+        return service;
+    }
+
+    @Override
+    public IOException getLoadError() { return loadError; }
+
+    // Number of changes made since loading; lets clients tell whether their copy is current
+    public long changeCount() { return changeCount.get(); }
+
+    // Listeners run on the changing thread with the write lock held; views should use DataEventBus.onEdt
+    @Override
+    public DataEventBus events() { return events; }
+
+    // ----------------- VALIDATION -----------------
+    // Shared by the forms and the CSV import. Returns the parsed age; throws with the
+    // message shown to the user when a rule is broken.
+    static int validateStudent(String name, String ageStr, String contact, String email) {
+        if (isEmpty(ageStr)) throw new IllegalArgumentException(FILL_ALL_STUDENT_FIELDS);
+        int age;
+        try {
+            age = Integer.parseInt(ageStr);
+        } catch (NumberFormatException e) {
+            age = 0;
+        }
+        checkStudent(name, age, contact, email);
+        return age;
+    }
+
+    private static void checkStudent(String name, int age, String contact, String email) {
+        if (isEmpty(name) || isEmpty(contact) || isEmpty(email)) {
+            throw new IllegalArgumentException(FILL_ALL_STUDENT_FIELDS);
+        }
+        if (age <= 0) throw new IllegalArgumentException("Please enter a valid positive integer for age.");
+    }
+
+    static void validateCourseName(String courseName) {
+        if (isEmpty(courseName)) throw new IllegalArgumentException("Course name cannot be empty.");
+    }
+
+    private static boolean isEmpty(String s) {
+        return s == null || s.isEmpty();
+    }
+
+    // ----------------- READS -----------------
+    @Override
+    public List<Student1> getStudents() { return Collections.unmodifiableList(students); }
+
+    @Override
+    public List<Course> getCourses() { return Collections.unmodifiableList(courses); }
+
+    @Override
+    public List<Enrollment> getEnrollments() { return enrollmentView; }
+
+    // Read-only view over the store in enrollment order
+    private class EnrollmentView extends AbstractList<Enrollment> implements RandomAccess {
+        @Override
+        public Enrollment get(int row) {
+            return new Enrollment(index.student(enrollments.studentAt(row)), index.course(enrollments.courseAt(row)));
+        }
+
+        @Override
+        public int size() { return enrollments.size(); }
+    }
+
+    // Runs a multi-step query against one consistent state
+    public <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Student1 findStudent(int id) {
+        return read(() -> index.student(id));
+    }
+
+    public Course findCourse(String courseName) {
+        return read(() -> index.course(courseName));
+    }
+
+    public boolean isEnrolled(int studentId, String courseName) {
+        return read(() -> {
+            Student1 s = index.student(studentId);
+            Course c = index.course(courseName);
+            return s != null && c != null && enrollments.contains(s.getId(), c.getId());
+        });
+    }
+
+    @Override
+    public List<Enrollment> enrollmentsOf(int studentId) {
+        return read(() -> {
+            Student1 s = index.student(studentId);
+            if (s == null) return Collections.<Enrollment>emptyList();
+            List<Enrollment> list = new ArrayList<>(enrollments.courseCount(studentId));
+            for (int i = 0; i < enrollments.courseCount(studentId); i++) {
+                list.add(new Enrollment(s, index.course(enrollments.courseOf(studentId, i))));
+            }
+            return list;
+        });
+    }
+
+    @Override
+    public List<Enrollment> rosterOf(String courseName) {
+        return read(() -> {
+            Course c = index.course(courseName);
+            if (c == null) return Collections.<Enrollment>emptyList();
+            List<Enrollment> list = new ArrayList<>(enrollments.studentCount(c.getId()));
+            for (int i = 0; i < enrollments.studentCount(c.getId()); i++) {
+                list.add(new Enrollment(index.student(enrollments.studentOf(c.getId(), i)), c));
+            }
+            return list;
+        });
+    }
+
+    // Row of the student in getStudents(), or -1
+    @Override
+    public int indexOfStudent(int id) {
+        return read(() -> {
+            Student1 s = index.student(id);
+            return s == null ? -1 : rowOf(s);
+        });
+    }
+
+    // Row of the course in getCourses(), or -1
+    @Override
+    public int indexOfCourse(String courseName) {
+        return read(() -> {
+            Course c = index.course(courseName);
+            return c == null ? -1 : rowOf(c);
+        });
+    }
+
+    // ----------------- SEARCH -----------------
+    // Students whose name, email or contact number match the query, in list order.
+    // Throws CancellationException once cancelled reports true.
+    @Override
+    public List<Student1> searchStudents(String query, BooleanSupplier cancelled) {
+        return read(() -> studentSearch.search(query, students, cancelled));
+    }
+
+    // Courses whose name or instructor match the query, in list order
+    @Override
+    public List<Course> searchCourses(String query, BooleanSupplier cancelled) {
+        return read(() -> courseSearch.search(query, courses, cancelled));
+    }
+
+    // Deep copy of the current state that stays valid while edits continue
+    @Override
+    public DataCodec.Snapshot copySnapshot() {
+        return read(this::copyState);
+    }
+
+    // The store keeps each course's count, so this costs one row per course
+    @Override
+    public ReportEngine.Report enrollmentCounts() {
+        return read(() -> ReportEngine.enrollmentsPerCourse(courses, row -> enrollments.studentCount(courses.get(row).getId())));
+    }
+
+    private DataCodec.Snapshot copyState() {
+        List<Student1> studentList = new ArrayList<>(students.size());
+        for (Student1 s : students) studentList.add(copyOf(s));
+        List<Course> courseList = new ArrayList<>(courses.size());
+        int[] courseRows = new int[nextCourseId];
+        for (Course c : courses) {
+            Course copy = new Course(c.getCourseName());
+            copy.setInstructorName(c.getInstructorName());
+            copy.setSessions(c.getSessions());
+            copy.setVersion(c.getVersion());
+            copy.setId(c.getId());
+            courseRows[c.getId()] = courseList.size();
+            courseList.add(copy);
+        }
+        DataCodec.Enrollments pairs = new DataCodec.Enrollments(studentList, courseList, enrollments.size());
+        for (int row = 0; row < enrollments.size(); row++) {
+            pairs.addPair(enrollments.studentAt(row), courseRows[enrollments.courseAt(row)]);
+        }
+        return new DataCodec.Snapshot(studentList, courseList, pairs,
+                nextStudentId.get(), 0);
+    }
+
+    private static Student1 copyOf(Student1 s) {
+        Student1 copy = new Student1(s.getId(), s.getName(), s.getAge(), s.getContactNumber(), s.getEmail());
+        copy.setVersion(s.getVersion());
+        return copy;
+    }
+
+    // ----------------- STUDENTS -----------------
+    @Override
+    public Student1 addStudent(String name, int age, String contact, String email) {
+        checkStudent(name, age, contact, email);
+        lock.writeLock().lock();
+        try {
+            Student1 student = new Student1(nextStudentId.getAndIncrement(), name, age, contact, email);
+            publish(new DataEvent.StudentAdded(insertStudent(student), student));
+            return student;
+        } finally {
+            endWrite();
+        }
+    }
+
+    @Override
+    public Student1 updateStudent(int id, String name, int age, String contact, String email) {
+        return updateStudent(id, ANY_VERSION, name, age, contact, email);
+    }
+
+    public Student1 updateStudent(int id, int expectedVersion, String name, int age, String contact, String email) {
+        checkStudent(name, age, contact, email);
+        lock.writeLock().lock();
+        try {
+            Student1 student = requireStudent(id);
+            checkVersion(expectedVersion, student.getVersion(), "student");
+            Student1 before = copyOf(student);
+            student.setVersion(student.getVersion() + 1);
+            setFields(student, name, age, contact, email);
+            publish(new DataEvent.StudentUpdated(rowOf(student), student, before));
+            return student;
+        } finally {
+            endWrite();
+        }
+    }
+
+    // Removes the student together with their enrollments
+    @Override
+    public Removal removeStudent(int id) {
+        lock.writeLock().lock();
+        try {
+            return dropStudent(requireStudent(id), this::publish);
+        } finally {
+            endWrite();
+        }
+    }
+
+    // Imports rows as one batch of events, and so one journal batch; returns how many were added.
+    // Each row's importedId is the id its student got.
+    @Override
+    public int importStudents(CsvBulkIO.Parsed<CsvBulkIO.StudentRow> parsed) {
+        lock.writeLock().lock();
+        try {
+            for (CsvBulkIO.StudentRow row : parsed.rows) {
+                Student1 student = new Student1(nextStudentId.getAndIncrement(), row.name, row.age, row.contact, row.email);
+                publish(new DataEvent.StudentAdded(insertStudent(student), student));
+                row.importedId = student.getId();
+            }
+            return parsed.rows.size();
+        } finally {
+            endWrite();
+        }
+    }
+
+    private static void checkVersion(int expected, int actual, String what) {
+        if (expected != ANY_VERSION && expected != actual) {
+            throw new ConcurrentModificationException("This " + what + " was changed by another user. Reload and try again.");
+        }
+    }
+
+    private Student1 requireStudent(int id) {
+        Student1 student = index.student(id);
+        if (student == null) throw new IllegalArgumentException("No student with id " + id);
+        return student;
+    }
+
+    // The list stays in id order: new students go last, one put back by an undo or a
+    // journaled undo goes where its id belongs. Returns the row.
+    private int insertStudent(Student1 student) {
+        int row = students.size();
+        if (row > 0 && students.get(row - 1).getId() > student.getId()) {
+            row = -Collections.binarySearch(students, student, BY_STUDENT_ID) - 1;
+        }
+        students.add(row, student);
+        index.studentAdded(student);
+        if (row == students.size() - 1) studentSearch.added(student);
+        else studentSearch.inserted(student);
+        nextStudentId.accumulateAndGet(student.getId() + 1, Math::max);
+        return row;
+    }
+
+    private void setFields(Student1 student, String name, int age, String contact, String email) {
+        student.setName(name);
+        student.setAge(age);
+        student.setContactNumber(contact);
+        student.setEmail(email);
+        studentSearch.updated(student);
+    }
+
+    // Deletes the student with their enrollments and reports both, the cascade last row first
+    private Removal dropStudent(Student1 student, Consumer<DataEvent> out) {
+        int[] courseIds = enrollments.coursesOf(student.getId()); // in the order of their rows
+        Removal removal = deleteStudent(student);
+        DataEvent removed = new DataEvent.StudentRemoved(removal.row, student);
+        out.accept(removed);
+        for (int i = courseIds.length - 1; i >= 0; i--) {
+            out.accept(new DataEvent.EnrollmentRemoved(removal.enrollmentRows[i], student, index.course(courseIds[i]), removed));
+        }
+        return removal;
+    }
+
+    private Removal deleteStudent(Student1 student) {
+        int[] enrollmentRows = enrollments.removeStudent(student.getId());
+        index.studentRemoved(student);
+        int row = rowOf(student);
+        students.remove(row);
+        studentSearch.removed(student);
+        return new Removal(row, enrollmentRows);
+    }
+
+    // The list is ordered by id, so only log(n) rows of a lazily mapped list get decoded
+    private int rowOf(Student1 student) {
+        int row = Collections.binarySearch(students, student, BY_STUDENT_ID);
+        if (row < 0 || students.get(row) != student) row = students.indexOf(student);
+        return row;
+    }
+
+    // ----------------- COURSES -----------------
+    @Override
+    public Course addCourse(String courseName) {
+        validateCourseName(courseName);
+        lock.writeLock().lock();
+        try {
+            if (index.course(courseName) != null) throw new IllegalArgumentException("Course already exists.");
+            Course course = new Course(courseName);
+            publish(new DataEvent.CourseAdded(insertCourse(course), course));
+            return course;
+        } finally {
+            endWrite();
+        }
+    }
+
+    @Override
+    public Course renameCourse(String currentName, String newName) {
+        return renameCourse(currentName, ANY_VERSION, newName);
+    }
+
+    public Course renameCourse(String currentName, int expectedVersion, String newName) {
+        validateCourseName(newName);
+        lock.writeLock().lock();
+        try {
+            Course course = requireCourse(currentName);
+            checkVersion(expectedVersion, course.getVersion(), "course");
+            // The new name may only match the course itself, e.g. when changing its case
+            Course existing = index.course(newName);
+            if (existing != null && existing != course) {
+                throw new IllegalArgumentException("Another course with this name already exists.");
+            }
+            String oldName = course.getCourseName();
+            course.setVersion(course.getVersion() + 1);
+            setCourseName(course, newName);
+            publish(new DataEvent.CourseRenamed(rowOf(course), course, oldName, newName));
+            return course;
+        } finally {
+            endWrite();
+        }
+    }
+
+    @Override
+    public Course assignInstructor(String courseName, String instructorName) {
+        return assignInstructor(courseName, ANY_VERSION, instructorName);
+    }
+
+    public Course assignInstructor(String courseName, int expectedVersion, String instructorName) {
+        if (isEmpty(instructorName)) throw new IllegalArgumentException("Instructor name cannot be empty.");
+        lock.writeLock().lock();
+        try {
+            Course course = requireCourse(courseName);
+            checkVersion(expectedVersion, course.getVersion(), "course");
+            Timetable.Booking clash = timetable.instructorClash(course, instructorName, course.getSessions());
+            if (clash != null) throw new IllegalArgumentException(teaches(instructorName, clash));
+            String previousName = course.getInstructorName();
+            course.setVersion(course.getVersion() + 1);
+            setInstructor(course, instructorName);
+            publish(new DataEvent.InstructorAssigned(rowOf(course), course, previousName, instructorName));
+            return course;
+        } finally {
+            endWrite();
+        }
+    }
+
+    // Removes the course together with its enrollments
+    @Override
+    public Removal removeCourse(String courseName) {
+        lock.writeLock().lock();
+        try {
+            return dropCourse(requireCourse(courseName), this::publish);
+        } finally {
+            endWrite();
+        }
+    }
+
+    // Courses that already exist are rejected into parsed.errors; returns how many were added.
+    // A course whose sessions clash is still added, unscheduled, and the clash is reported
+    @Override
+    public int importCourses(CsvBulkIO.Parsed<CsvBulkIO.CourseRow> parsed) {
+        lock.writeLock().lock();
+        try {
+            int added = 0;
+            for (CsvBulkIO.CourseRow row : parsed.rows) {
+                if (index.course(row.courseName) != null) {
+                    parsed.errors.add(new CsvBulkIO.RowError(row.line, "Course already exists: " + row.courseName));
+                    continue;
+                }
+                Course course = new Course(row.courseName);
+                int at = insertCourse(course);
+                publish(new DataEvent.CourseAdded(at, course));
+                if (row.instructorName != null) {
+                    setInstructor(course, row.instructorName);
+                    publish(new DataEvent.InstructorAssigned(at, course, null, row.instructorName));
+                }
+                String clash = clashOf(course, row.sessions);
+                if (clash != null) {
+                    parsed.errors.add(new CsvBulkIO.RowError(row.line, "Added without its sessions: " + clash));
+                } else if (!row.sessions.isEmpty()) {
+                    setSessions(course, row.sessions);
+                    publish(new DataEvent.CourseScheduled(at, course, Collections.emptyList(), row.sessions));
+                }
+                added++;
+            }
+            return added;
+        } finally {
+            endWrite();
+        }
+    }
+
+    private Course requireCourse(String courseName) {
+        Course course = index.course(courseName);
+        if (course == null) throw new IllegalArgumentException("No course named " + courseName);
+        return course;
+    }
+
+    // Returns the row, which is always the last
+    private int insertCourse(Course course) {
+        course.setId(nextCourseId++);
+        courses.add(course);
+        index.courseAdded(course);
+        courseSearch.added(course);
+        timetable.add(course);
+        return courses.size() - 1;
+    }
+
+    // Puts a removed course back with the id it had, so at the row it had. Ids are not
+    // journaled, so after a restart the course is listed last.
+    private int restoreCourse(Course course) {
+        int row = courses.size();
+        if (row > 0 && courses.get(row - 1).getId() > course.getId()) {
+            row = -Collections.binarySearch(courses, course, BY_COURSE_ID) - 1;
+        }
+        courses.add(row, course);
+        index.courseAdded(course);
+        if (row == courses.size() - 1) courseSearch.added(course);
+        else courseSearch.inserted(course);
+        timetable.add(course);
+        return row;
+    }
+
+    private void setCourseName(Course course, String name) {
+        String oldName = course.getCourseName();
+        course.setCourseName(name);
+        index.courseRenamed(course, oldName);
+        courseSearch.updated(course);
+    }
+
+    private void setInstructor(Course course, String instructorName) {
+        timetable.remove(course);
+        course.setInstructorName(instructorName);
+        timetable.add(course);
+        courseSearch.updated(course);
+    }
+
+    private Removal dropCourse(Course course, Consumer<DataEvent> out) {
+        int[] studentIds = enrollments.studentsOf(course.getId()); // in the order of their rows
+        Removal removal = deleteCourse(course);
+        DataEvent removed = new DataEvent.CourseRemoved(removal.row, course);
+        out.accept(removed);
+        for (int i = studentIds.length - 1; i >= 0; i--) {
+            out.accept(new DataEvent.EnrollmentRemoved(removal.enrollmentRows[i], index.student(studentIds[i]), course, removed));
+        }
+        return removal;
+    }
+
+    private Removal deleteCourse(Course course) {
+        int[] enrollmentRows = enrollments.removeCourse(course.getId());
+        index.courseRemoved(course);
+        timetable.remove(course);
+        int row = rowOf(course);
+        courses.remove(row);
+        courseSearch.removed(course);
+        return new Removal(row, enrollmentRows);
+    }
+
+    // Ids are handed out in list order, so the list is ordered by id as well
+    private int rowOf(Course course) {
+        int row = Collections.binarySearch(courses, course, BY_COURSE_ID);
+        if (row < 0 || courses.get(row) != course) row = courses.indexOf(course);
+        return row;
+    }
+
+    // ----------------- SCHEDULE -----------------
+    @Override
+    public Course scheduleCourse(String courseName, List<Timetable.Session> sessions) {
+        return scheduleCourse(courseName, ANY_VERSION, sessions);
+    }
+
+    public Course scheduleCourse(String courseName, int expectedVersion, List<Timetable.Session> sessions) {
+        Timetable.checkOwnSessions(sessions);
+        List<Timetable.Session> schedule = List.copyOf(sessions);
+        lock.writeLock().lock();
+        try {
+            Course course = requireCourse(courseName);
+            checkVersion(expectedVersion, course.getVersion(), "course");
+            String clash = clashOf(course, schedule);
+            if (clash != null) throw new IllegalArgumentException(clash);
+            List<Timetable.Session> previous = course.getSessions();
+            course.setVersion(course.getVersion() + 1);
+            setSessions(course, schedule);
+            publish(new DataEvent.CourseScheduled(rowOf(course), course, previous, schedule));
+            return course;
+        } finally {
+            endWrite();
+        }
+    }
+
+    // The whole plan is one batch, and so one journal write and one undo step
+    @Override
+    public int applySchedule(AutoScheduler.Plan plan, List<String> rejected) {
+        return transaction(() -> {
+            int applied = 0;
+            for (Map.Entry<String, List<Timetable.Session>> entry : plan.sessions.entrySet()) {
+                Course course = index.course(entry.getKey());
+                try {
+                    if (course != null && !course.getSessions().isEmpty()) {
+                        throw new IllegalArgumentException("It was scheduled meanwhile.");
+                    }
+                    scheduleCourse(entry.getKey(), entry.getValue());
+                    applied++;
+                } catch (IllegalArgumentException e) {
+                    rejected.add(entry.getKey() + ": " + e.getMessage());
+                }
+            }
+            return applied;
+        });
+    }
+
+    private void setSessions(Course course, List<Timetable.Session> sessions) {
+        timetable.remove(course);
+        course.setSessions(sessions);
+        timetable.add(course);
+    }
+
+    // Why the course cannot meet at these times, or null: its room, its instructor or
+    // one of its students is busy with another course then
+    private String clashOf(Course course, List<Timetable.Session> sessions) {
+        if (sessions.isEmpty()) return null;
+        Timetable.Booking booking = timetable.roomClash(course, sessions);
+        if (booking != null) {
+            return "Room " + booking.session.room + " is taken by " + booking.course.getCourseName() + " at " + booking.session + ".";
+        }
+        booking = timetable.instructorClash(course, course.getInstructorName(), sessions);
+        if (booking != null) return teaches(course.getInstructorName(), booking);
+        for (int studentId : enrollments.studentsOf(course.getId())) {
+            String clash = attends(index.student(studentId), course, sessions);
+            if (clash != null) return clash;
+        }
+        return null;
+    }
+
+    private static String teaches(String instructorName, Timetable.Booking booking) {
+        return instructorName + " already teaches " + booking.course.getCourseName() + " at " + booking.session + ".";
+    }
+
+    // Students take a few courses each, so theirs are compared with the sessions directly
+    private String attends(Student1 student, Course course, List<Timetable.Session> sessions) {
+        if (sessions.isEmpty()) return null;
+        int id = student.getId();
+        for (int i = 0; i < enrollments.courseCount(id); i++) {
+            Course other = index.course(enrollments.courseOf(id, i));
+            if (other == course) continue;
+            Timetable.Session[] clash = Timetable.clash(sessions, other.getSessions());
+            if (clash != null) return student.getName() + " already attends " + other.getCourseName() + " at " + clash[1] + ".";
+        }
+        return null;
+    }
+
+    // ----------------- ENROLLMENTS -----------------
+    @Override
+    public Enrollment enroll(int studentId, String courseName) {
+        lock.writeLock().lock();
+        try {
+            Student1 student = requireStudent(studentId);
+            Course course = requireCourse(courseName);
+            String clash = attends(student, course, course.getSessions());
+            if (clash != null) throw new IllegalArgumentException(clash);
+            int row = enrollments.add(student.getId(), course.getId());
+            if (row < 0) throw new IllegalArgumentException("Student already enrolled in this course.");
+            publish(new DataEvent.EnrollmentAdded(row, student, course));
+            return new Enrollment(student, course);
+        } finally {
+            endWrite();
+        }
+    }
+
+    // Rows naming unknown students or courses, or repeating an enrollment, are rejected
+    // into parsed.errors; returns how many were added
+    @Override
+    public int importEnrollments(CsvBulkIO.Parsed<CsvBulkIO.EnrollmentRow> parsed) {
+        lock.writeLock().lock();
+        try {
+            int added = 0;
+            for (CsvBulkIO.EnrollmentRow row : parsed.rows) {
+                Student1 student = index.student(row.studentId);
+                Course course = index.course(row.courseName);
+                String error = student == null ? "No student with id " + row.studentId
+                        : course == null ? "No course named " + row.courseName
+                        : enrollments.contains(student.getId(), course.getId()) ? "Student already enrolled in this course."
+                        : attends(student, course, course.getSessions());
+                if (error != null) {
+                    parsed.errors.add(new CsvBulkIO.RowError(row.line, error));
+                    continue;
+                }
+                publish(new DataEvent.EnrollmentAdded(enrollments.add(student.getId(), course.getId()), student, course));
+                added++;
+            }
+            return added;
+        } finally {
+            endWrite();
+        }
+    }
+
+    // ----------------- REPLICATION -----------------
+    // Apply a change another service already validated and made, keeping its ids and
+    // versions. Used to keep a client's copy in step with the server.
+    Student1 putStudent(int id, int version, String name, int age, String contact, String email) {
+        lock.writeLock().lock();
+        try {
+            Student1 student = index.student(id);
+            if (student == null) {
+                student = new Student1(id, name, age, contact, email);
+                publish(new DataEvent.StudentAdded(insertStudent(student), student));
+            } else {
+                Student1 before = copyOf(student);
+                setFields(student, name, age, contact, email);
+                publish(new DataEvent.StudentUpdated(rowOf(student), student, before));
+            }
+            student.setVersion(version);
+            return student;
+        } finally {
+            endWrite();
+        }
+    }
+
+    // Adds the course, or renames the one currently called currentName
+    Course putCourse(String currentName, int version, String courseName, String instructorName,
+                     List<Timetable.Session> sessions) {
+        lock.writeLock().lock();
+        try {
+            Course course = currentName != null ? index.course(currentName) : null;
+            if (course == null) {
+                course = new Course(courseName);
+                publish(new DataEvent.CourseAdded(insertCourse(course), course));
+            } else if (!course.getCourseName().equals(courseName)) {
+                String oldName = course.getCourseName();
+                setCourseName(course, courseName);
+                publish(new DataEvent.CourseRenamed(rowOf(course), course, oldName, courseName));
+            }
+            if (!Objects.equals(course.getInstructorName(), instructorName)) {
+                String previousName = course.getInstructorName();
+                setInstructor(course, instructorName);
+                publish(new DataEvent.InstructorAssigned(rowOf(course), course, previousName, instructorName));
+            }
+            if (!course.getSessions().equals(sessions)) {
+                List<Timetable.Session> previous = course.getSessions();
+                setSessions(course, sessions);
+                publish(new DataEvent.CourseScheduled(rowOf(course), course, previous, sessions));
+            }
+            course.setVersion(version);
+            courseSearch.updated(course);
+            return course;
+        } finally {
+            endWrite();
+        }
+    }
+
+    // Enrolls or unenrolls; nothing changes when either side is missing or the pair already is as asked
+    void putEnrollment(int studentId, String courseName, boolean enrolled) {
+        lock.writeLock().lock();
+        try {
+            Student1 student = index.student(studentId);
+            Course course = index.course(courseName);
+            if (student == null || course == null) return;
+            if (enrolled) {
+                int row = enrollments.add(student.getId(), course.getId());
+                if (row >= 0) publish(new DataEvent.EnrollmentAdded(row, student, course));
+            } else {
+                int row = enrollments.remove(student.getId(), course.getId());
+                if (row >= 0) publish(new DataEvent.EnrollmentRemoved(row, student, course, null));
+            }
+        } finally {
+            endWrite();
+        }
+    }
+
+    // ----------------- EVENTS -----------------
+    private void publish(DataEvent event) {
+        changeCount.incrementAndGet();
+        events.publish(event);
+    }
+
+    // Ends every mutator: listeners see the change while it still holds the write lock.
+    // Inside a transaction only the outermost release commits.
+    private void endWrite() {
+        try {
+            if (lock.getWriteHoldCount() == 1) events.commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ----------------- TRANSACTIONS -----------------
+    // Runs several edits as one change: their events commit as one batch, so they reach
+    // the journal in one write and undo as one step. When an edit throws, the edits made
+    // before it are reverted and nothing is published. Transactions may nest.
+    public <T> T transaction(Supplier<T> edits) {
+        lock.writeLock().lock();
+        int mark = events.pendingCount();
+        try {
+            return edits.get();
+        } catch (RuntimeException e) {
+            revert(events.retract(mark), event -> { });
+            throw e;
+        } finally {
+            endWrite();
+        }
+    }
+
+    // ----------------- UNDO -----------------
+    // The history holds the committed batches themselves. The events name the live
+    // objects and, for updates, the values they replaced, so undoing a batch makes
+    // the inverse of each of its events and copies nothing. The inverse events are
+    // published like any other change, so views and the journal follow an undo, and
+    // undoing them in turn is the redo. A new change clears what could be redone.
+    @Override
+    public boolean canUndo() {
+        return read(() -> !undoStack.isEmpty());
+    }
+
+    @Override
+    public boolean canRedo() {
+        return read(() -> !redoStack.isEmpty());
+    }
+
+    // Reverts the latest change; false when there is none
+    @Override
+    public boolean undo() {
+        return step(undoStack, redoStack);
+    }
+
+    @Override
+    public boolean redo() {
+        return step(redoStack, undoStack);
+    }
+
+    private boolean step(Deque<List<DataEvent>> from, Deque<List<DataEvent>> to) {
+        lock.writeLock().lock();
+        try {
+            if (lock.getWriteHoldCount() > 1) throw new IllegalStateException("Cannot undo inside a transaction");
+            List<DataEvent> batch = from.poll();
+            if (batch == null) return false;
+            historyTarget = to;
+            revert(batch, this::publish);
+            events.commit();
+            return true;
+        } finally {
+            historyTarget = null;
+            endWrite();
+        }
+    }
+
+    // Files each committed batch: undos go to the redo stack, everything else to the undo stack
+    private void remember(List<DataEvent> batch) {
+        Deque<List<DataEvent>> target = historyTarget;
+        if (target == null) {
+            target = undoStack;
+            redoStack.clear();
+        }
+        target.push(batch);
+        if (target.size() > UNDO_LIMIT) target.removeLast();
+    }
+
+    // Makes the inverse of every event in the batch, last first. Removed students and
+    // courses come back as the same objects with the same ids, at the rows they had,
+    // together with the enrollments that went with them.
+    private void revert(List<DataEvent> batch, Consumer<DataEvent> out) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            DataEvent event = batch.get(i);
+            if (event instanceof DataEvent.StudentAdded) {
+                dropStudent(((DataEvent.StudentAdded) event).student, out);
+            } else if (event instanceof DataEvent.StudentUpdated) {
+                DataEvent.StudentUpdated updated = (DataEvent.StudentUpdated) event;
+                Student1 student = updated.student;
+                Student1 before = copyOf(student);
+                Student1 old = updated.before;
+                student.setVersion(student.getVersion() + 1);
+                setFields(student, old.getName(), old.getAge(), old.getContactNumber(), old.getEmail());
+                out.accept(new DataEvent.StudentUpdated(rowOf(student), student, before));
+            } else if (event instanceof DataEvent.StudentRemoved) {
+                Student1 student = ((DataEvent.StudentRemoved) event).student;
+                out.accept(new DataEvent.StudentAdded(insertStudent(student), student));
+                restoreCascade(batch, i, out);
+            } else if (event instanceof DataEvent.CourseAdded) {
+                dropCourse(((DataEvent.CourseAdded) event).course, out);
+            } else if (event instanceof DataEvent.CourseRenamed) {
+                DataEvent.CourseRenamed renamed = (DataEvent.CourseRenamed) event;
+                Course course = renamed.course;
+                course.setVersion(course.getVersion() + 1);
+                setCourseName(course, renamed.oldName);
+                out.accept(new DataEvent.CourseRenamed(rowOf(course), course, renamed.newName, renamed.oldName));
+            } else if (event instanceof DataEvent.InstructorAssigned) {
+                DataEvent.InstructorAssigned assigned = (DataEvent.InstructorAssigned) event;
+                Course course = assigned.course;
+                course.setVersion(course.getVersion() + 1);
+                setInstructor(course, assigned.previousName);
+                out.accept(new DataEvent.InstructorAssigned(rowOf(course), course, assigned.instructorName, assigned.previousName));
+            } else if (event instanceof DataEvent.CourseScheduled) {
+                DataEvent.CourseScheduled scheduled = (DataEvent.CourseScheduled) event;
+                Course course = scheduled.course;
+                course.setVersion(course.getVersion() + 1);
+                setSessions(course, scheduled.previousSessions);
+                out.accept(new DataEvent.CourseScheduled(rowOf(course), course, scheduled.sessions, scheduled.previousSessions));
+            } else if (event instanceof DataEvent.CourseRemoved) {
+                Course course = ((DataEvent.CourseRemoved) event).course;
+                int row = restoreCourse(course);
+                out.accept(new DataEvent.CourseAdded(row, course));
+                // The journal adds courses by name alone
+                if (course.getInstructorName() != null) {
+                    out.accept(new DataEvent.InstructorAssigned(row, course, null, course.getInstructorName()));
+                }
+                if (!course.getSessions().isEmpty()) {
+                    out.accept(new DataEvent.CourseScheduled(row, course, Collections.emptyList(), course.getSessions()));
+                }
+                restoreCascade(batch, i, out);
+            } else if (event instanceof DataEvent.EnrollmentAdded) {
+                DataEvent.EnrollmentAdded added = (DataEvent.EnrollmentAdded) event;
+                int row = enrollments.remove(added.student.getId(), added.course.getId());
+                out.accept(new DataEvent.EnrollmentRemoved(row, added.student, added.course, null));
+            } else if (event instanceof DataEvent.EnrollmentRemoved && ((DataEvent.EnrollmentRemoved) event).cause == null) {
+                DataEvent.EnrollmentRemoved removed = (DataEvent.EnrollmentRemoved) event;
+                enrollments.insert(new int[]{removed.row}, new int[]{removed.student.getId()}, new int[]{removed.course.getId()});
+                out.accept(new DataEvent.EnrollmentAdded(removed.row, removed.student, removed.course));
+            }
+            // Cascaded removals come back with their student or course
+        }
+    }
+
+    // Puts back the enrollments removed with batch[at], which follow it last row first
+    private void restoreCascade(List<DataEvent> batch, int at, Consumer<DataEvent> out) {
+        int end = at + 1;
+        while (end < batch.size() && batch.get(end) instanceof DataEvent.EnrollmentRemoved
+                && ((DataEvent.EnrollmentRemoved) batch.get(end)).cause == batch.get(at)) {
+            end++;
+        }
+        int count = end - at - 1;
+        int[] rows = new int[count];
+        int[] studentIds = new int[count];
+        int[] courseIds = new int[count];
+        DataEvent.EnrollmentRemoved[] removed = new DataEvent.EnrollmentRemoved[count];
+        for (int i = 0; i < count; i++) {
+            removed[i] = (DataEvent.EnrollmentRemoved) batch.get(end - 1 - i);
+            rows[i] = removed[i].row;
+            studentIds[i] = removed[i].student.getId();
+            courseIds[i] = removed[i].course.getId();
+        }
+        enrollments.insert(rows, studentIds, courseIds);
+        for (DataEvent.EnrollmentRemoved r : removed) out.accept(new DataEvent.EnrollmentAdded(r.row, r.student, r.course));
+    }
+
+    // ---------------- PERSISTENCE -----------------
+    // The storage engine saves each committed batch as open(...) subscribed it; a
+    // file engine journals it and now and then rewrites the snapshot on its journal thread.
+
+    // Blocks until every edit made so far is on disk; throws when some could not be saved
+    public void flush() throws InterruptedException, IOException {
+        if (storage != null) storage.flush();
+    }
+
+    // Saves everything in full, e.g. once the engine has reported an edit it could not
+    // save. Edits wait until it is done, so none can fall between the copy and the save.
+    public void saveAll() throws IOException {
+        if (storage == null) return;
+        lock.writeLock().lock();
+        try {
+            storage.saveAll(copyState());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (storage != null) storage.close();
+    }
+
+    // Re-applies the edits the engine saved after its snapshot while loading
+    private class Replay implements DataJournal.Handler {
+        @Override
+        public void studentAdded(int id, String name, int age, String contact, String email) {
+            insertStudent(new Student1(id, name, age, contact, email));
+        }
+
+        @Override
+        public void studentUpdated(int id, String name, int age, String contact, String email) {
+            Student1 s = index.student(id);
+            if (s != null) setFields(s, name, age, contact, email);
+        }
+
+        @Override
+        public void studentRemoved(int id) {
+            Student1 s = index.student(id);
+            if (s != null) deleteStudent(s);
+        }
+
+        @Override
+        public void courseAdded(String courseName) {
+            insertCourse(new Course(courseName));
+        }
+
+        @Override
+        public void courseRenamed(String oldName, String newName) {
+            Course c = index.course(oldName);
+            if (c != null) setCourseName(c, newName);
+        }
+
+        @Override
+        public void instructorAssigned(String courseName, String instructorName) {
+            Course c = index.course(courseName);
+            if (c != null) setInstructor(c, instructorName);
+        }
+
+        @Override
+        public void courseScheduled(String courseName, String sessions) {
+            Course c = index.course(courseName);
+            if (c != null) setSessions(c, Timetable.parseAll(sessions));
+        }
+
+        @Override
+        public void courseRemoved(String courseName) {
+            Course c = index.course(courseName);
+            if (c != null) deleteCourse(c);
+        }
+
+        @Override
+        public void enrolled(int studentId, String courseName) {
+            Student1 s = index.student(studentId);
+            Course c = index.course(courseName);
+            if (s != null && c != null) enrollments.add(s.getId(), c.getId());
+        }
+
+        @Override
+        public void unenrolled(int studentId, String courseName) {
+            Course c = index.course(courseName);
+            if (c != null) enrollments.remove(studentId, c.getId());
+        }
+    }
+}
@@ -0,0 +1,316 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// -------------- CSV BULK IMPORT / EXPORT --------------
+// Files are read line by line and handed to the common pool in chunks, which
+// parse and validate their rows in parallel with the same rules as the forms.
+// Rows that fail are reported with their line number; checks that need the
+// current data (duplicate courses, unknown students) happen when the caller
+// commits the parsed batch. Imported students always get fresh ids; the "id"
+// column of an exported student file is kept with each row, so an import of a
+// whole exported folder can point the enrollment rows at the new ids (see
+// renumberStudents). A course's schedule is one "sessions" field in the
+// timetable's text form. Quoted fields may contain commas and doubled quotes
+// but not line breaks.
+class CsvBulkIO {
+
+    static final String[] STUDENT_COLUMNS = {"name", "age", "contact", "email", "id"};
+    static final String[] COURSE_COLUMNS = {"course", "instructor", "sessions"};
+    static final String[] ENROLLMENT_COLUMNS = {"studentId", "course"};
+
+    // What Export CSV writes into the chosen folder
+    static final String STUDENTS_FILE = "students.csv";
+    static final String COURSES_FILE = "courses.csv";
+    static final String ENROLLMENTS_FILE = "enrollments.csv";
+
+    private static final int CHUNK_LINES = 8192;
+
+    static class RowError {
+        final long line;
+        final String message;
+
+        RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + line + ": " + message;
+        }
+    }
+
+    static class Parsed<T> {
+        final List<T> rows = new ArrayList<>();
+        final List<RowError> errors = new ArrayList<>();
+    }
+
+    static class StudentRow {
+        final long line;
+        final String name;
+        final int age;
+        final String contact;
+        final String email;
+        final int exportedId; // the id column's value, or 0 when the file has none
+        int importedId;       // set by the import that adds the row
+
+        StudentRow(long line, String name, int age, String contact, String email) {
+            this(line, name, age, contact, email, 0);
+        }
+
+        StudentRow(long line, String name, int age, String contact, String email, int exportedId) {
+            this.line = line;
+            this.name = name;
+            this.age = age;
+            this.contact = contact;
+            this.email = email;
+            this.exportedId = exportedId;
+        }
+    }
+
+    static class CourseRow {
+        final long line;
+        final String courseName;
+        final String instructorName; // null when the column is missing or blank
+        final List<Timetable.Session> sessions; // empty when the column is missing or blank
+
+        CourseRow(long line, String courseName, String instructorName) {
+            this(line, courseName, instructorName, Collections.emptyList());
+        }
+
+        CourseRow(long line, String courseName, String instructorName, List<Timetable.Session> sessions) {
+            this.line = line;
+            this.courseName = courseName;
+            this.instructorName = instructorName;
+            this.sessions = sessions;
+        }
+    }
+
+    static class EnrollmentRow {
+        final long line;
+        final int studentId;
+        final String courseName;
+
+        EnrollmentRow(long line, int studentId, String courseName) {
+            this.line = line;
+            this.studentId = studentId;
+            this.courseName = courseName;
+        }
+    }
+
+    // Turns the fields of one row, in the order of the requested columns, into a row object
+    private interface RowParser<T> {
+        T parse(long line, String[] fields);
+    }
+
+    // ----------------- IMPORT -----------------
+    static Parsed<StudentRow> parseStudents(File file) throws IOException {
+        return parse(file, STUDENT_COLUMNS, 4, (line, f) -> {
+            int age = CoachingCenterService.validateStudent(f[0], f[1], f[2], f[3]);
+            return new StudentRow(line, f[0], age, f[2], f[3], f[4].isEmpty() ? 0 : parseId(f[4]));
+        });
+    }
+
+    static Parsed<CourseRow> parseCourses(File file) throws IOException {
+        return parse(file, COURSE_COLUMNS, 1, (line, f) -> {
+            CoachingCenterService.validateCourseName(f[0]);
+            List<Timetable.Session> sessions = Timetable.parseAll(f[2]);
+            Timetable.checkOwnSessions(sessions);
+            return new CourseRow(line, f[0], f[1].isEmpty() ? null : f[1], sessions);
+        });
+    }
+
+    static Parsed<EnrollmentRow> parseEnrollments(File file) throws IOException {
+        return parse(file, ENROLLMENT_COLUMNS, 2, (line, f) -> {
+            if (f[0].isEmpty() || f[1].isEmpty()) throw new IllegalArgumentException("Student id and course are required.");
+            return new EnrollmentRow(line, parseId(f[0]), f[1]);
+        });
+    }
+
+    private static int parseId(String field) {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Student id is not a number: " + field);
+        }
+    }
+
+    // For enrollments exported together with the students, once the students are imported:
+    // points each row at the id its student got. Rows naming an id the student file does not
+    // have, or whose student was not imported, are rejected, since the id may belong to
+    // someone else here.
+    static void renumberStudents(Parsed<EnrollmentRow> enrollments, Parsed<StudentRow> students) {
+        Map<Integer, Integer> ids = new HashMap<>();
+        for (StudentRow s : students.rows) {
+            if (s.exportedId != 0 && s.importedId != 0) ids.put(s.exportedId, s.importedId);
+        }
+        List<EnrollmentRow> renumbered = new ArrayList<>(enrollments.rows.size());
+        for (EnrollmentRow row : enrollments.rows) {
+            Integer id = ids.get(row.studentId);
+            if (id != null) {
+                renumbered.add(new EnrollmentRow(row.line, id, row.courseName));
+            } else {
+                enrollments.errors.add(new RowError(row.line, "Student id " + row.studentId + " was not imported with the students."));
+            }
+        }
+        enrollments.rows.clear();
+        enrollments.rows.addAll(renumbered);
+        enrollments.errors.sort(Comparator.comparingLong(e -> e.line));
+    }
+
+    // The header row names the columns; the first requiredColumns of them must be present
+    private static <T> Parsed<T> parse(File file, String[] columns, int requiredColumns, RowParser<T> parser) throws IOException {
+        List<CompletableFuture<Parsed<T>>> chunks = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            String header = in.readLine();
+            if (header == null) return new Parsed<>();
+            int[] positions = columnPositions(splitLine(stripBom(header)), columns, requiredColumns);
+
+            long lineNumber = 1;
+            List<String> lines = new ArrayList<>(CHUNK_LINES);
+            long chunkStart = lineNumber + 1;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                lines.add(line);
+                if (lines.size() == CHUNK_LINES) {
+                    chunks.add(parseChunkAsync(lines, chunkStart, positions, parser));
+                    lines = new ArrayList<>(CHUNK_LINES);
+                    chunkStart = lineNumber + 1;
+                }
+            }
+            if (!lines.isEmpty()) chunks.add(parseChunkAsync(lines, chunkStart, positions, parser));
+        }
+
+        // Chunks are merged in file order so rows keep their original order
+        Parsed<T> result = new Parsed<>();
+        for (CompletableFuture<Parsed<T>> chunk : chunks) {
+            Parsed<T> parsed = chunk.join();
+            result.rows.addAll(parsed.rows);
+            result.errors.addAll(parsed.errors);
+        }
+        return result;
+    }
+
+    private static <T> CompletableFuture<Parsed<T>> parseChunkAsync(List<String> lines, long firstLine, int[] positions,
+                                                                    RowParser<T> parser) {
+        return CompletableFuture.supplyAsync(() -> {
+            Parsed<T> parsed = new Parsed<>();
+            for (int i = 0; i < lines.size(); i++) {
+                long line = firstLine + i;
+                String text = lines.get(i);
+                if (text.isBlank()) continue;
+                try {
+                    List<String> values = splitLine(text);
+                    String[] fields = new String[positions.length];
+                    for (int c = 0; c < positions.length; c++) {
+                        int at = positions[c];
+                        fields[c] = at >= 0 && at < values.size() ? values.get(at).trim() : "";
+                    }
+                    parsed.rows.add(parser.parse(line, fields));
+                } catch (IllegalArgumentException e) {
+                    parsed.errors.add(new RowError(line, e.getMessage()));
+                }
+            }
+            return parsed;
+        });
+    }
+
+    private static int[] columnPositions(List<String> header, String[] columns, int requiredColumns) throws IOException {
+        int[] positions = new int[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            positions[c] = -1;
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).trim().equalsIgnoreCase(columns[c])) positions[c] = i;
+            }
+            if (positions[c] < 0 && c < requiredColumns) {
+                throw new IOException("Missing column '" + columns[c] + "'; expected header: " + String.join(",", columns));
+            }
+        }
+        return positions;
+    }
+
+    private static String stripBom(String line) {
+        return line.startsWith("\uFEFF") ? line.substring(1) : line;
+    }
+
+    static List<String> splitLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch != '"') field.append(ch);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') field.append(line.charAt(++i));
+                else quoted = false;
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Unterminated quoted field.");
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // ----------------- EXPORT -----------------
+    static void exportStudents(File file, List<Student1> students) throws IOException {
+        try (Writer out = writer(file)) {
+            writeRow(out, "id", "name", "age", "contact", "email");
+            for (Student1 s : students) {
+                writeRow(out, String.valueOf(s.getId()), s.getName(), String.valueOf(s.getAge()),
+                        s.getContactNumber(), s.getEmail());
+            }
+        }
+    }
+
+    static void exportCourses(File file, List<Course> courses) throws IOException {
+        try (Writer out = writer(file)) {
+            writeRow(out, COURSE_COLUMNS);
+            for (Course c : courses) writeRow(out, c.getCourseName(), c.getInstructorName(), Timetable.format(c.getSessions()));
+        }
+    }
+
+    static void exportEnrollments(File file, List<Enrollment> enrollments) throws IOException {
+        try (Writer out = writer(file)) {
+            writeRow(out, ENROLLMENT_COLUMNS);
+            for (Enrollment e : enrollments) {
+                writeRow(out, String.valueOf(e.getStudent().getId()), e.getCourse().getCourseName());
+            }
+        }
+    }
+
+    static void exportReport(File file, ReportEngine.Report report) throws IOException {
+        try (Writer out = writer(file)) {
+            writeRow(out, report.columns);
+            for (String[] row : report.rows) writeRow(out, row);
+        }
+    }
+
+    private static Writer writer(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static void writeRow(Writer out, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) out.write(',');
+            String field = fields[i] != null ? fields[i] : "";
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0) {
+                out.write('"');
+                out.write(field.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(field);
+            }
+        }
+        out.write('\n');
+    }
+}
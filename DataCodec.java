@@ -0,0 +1,392 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+// -------------- BINARY SNAPSHOT FORMAT --------------
+// Version 4 layout (all big-endian), fixed-size records so MappedDataStore can
+// decode any row straight from a memory-mapped file:
+//   header      magic "CCMS", version, nextStudentId, journal sequence, section counts,
+//               a CRC-32C per section, then a CRC-32C of the header itself
+//   students    (id, age, name, contact, email) with strings as string-heap offsets
+//   courses     (name, instructor or -1, sessions as Timetable.format writes them or -1)
+//   enrollments (studentRow, courseRow) int pairs
+//   string heap each distinct string once, as (byte length, UTF-8 bytes)
+// Version 3 has no sessions, so 8-byte course records; version 2 is version 3
+// without checksums and with a 32-byte header. Version 1 files
+// (streamed, string table up front) are still read eagerly.
+//
+// Saving keeps the file it replaces as the previous generation, <file>.prev. A
+// file that fails its checksums is not loaded; readLastGood falls back to the
+// previous generation, and the journal keeps the edits made since then.
+class DataCodec {
+
+    static final int MAGIC = 0x43434D53; // "CCMS"
+    static final short VERSION_1 = 1;
+    static final short VERSION_2 = 2;
+    static final short VERSION_3 = 3;
+    static final short VERSION = 4;
+
+    static final int HEADER_SIZE = 56;
+    static final int HEADER_SIZE_2 = 32;
+    static final int SECTION_CRCS_OFFSET = 32; // students, courses, enrollments, heap
+    static final int HEADER_CRC_OFFSET = 48;   // covers the header up to here
+    static final int STUDENT_RECORD_SIZE = 20;
+    static final int COURSE_RECORD_SIZE = 12;
+    static final int COURSE_RECORD_SIZE_3 = 8; // versions 2 and 3
+    static final int ENROLLMENT_RECORD_SIZE = 8;
+    static final int NO_STRING = -1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final Metrics.Timer SAVE_TIMER = Metrics.timer("data.save");
+    private static final Metrics.Counter SAVE_BYTES = Metrics.counter("data.save.bytes");
+
+    static class Snapshot {
+        final List<Student1> students;
+        final List<Course> courses;
+        final Enrollments enrollments;
+        final int nextStudentId;
+        final long journalSequence;
+
+        Snapshot(List<Student1> students, List<Course> courses, Enrollments enrollments,
+                 int nextStudentId, long journalSequence) {
+            this.students = students;
+            this.courses = courses;
+            this.enrollments = enrollments;
+            this.nextStudentId = nextStudentId;
+            this.journalSequence = journalSequence;
+        }
+    }
+
+    // A snapshot's enrollments as (student id, course row) int pairs. Enrollment
+    // objects are only made for whoever reads the list; loading hands the pairs
+    // straight to an EnrollmentStore.
+    static final class Enrollments extends AbstractList<Enrollment> implements RandomAccess {
+        private final List<Student1> students;
+        private final List<Course> courses;
+        private int[] studentIds;
+        private int[] courseRows;
+        private int size;
+
+        Enrollments(List<Student1> students, List<Course> courses, int capacity) {
+            this.students = students;
+            this.courses = courses;
+            this.studentIds = new int[Math.max(capacity, 10)];
+            this.courseRows = new int[studentIds.length];
+        }
+
+        // Pairs for Enrollment objects over the given lists
+        static Enrollments of(List<Student1> students, List<Course> courses, List<Enrollment> enrollments) {
+            Map<Course, Integer> rows = new IdentityHashMap<>();
+            for (Course c : courses) rows.put(c, rows.size());
+            Enrollments pairs = new Enrollments(students, courses, enrollments.size());
+            for (Enrollment e : enrollments) pairs.addPair(e.getStudent().getId(), rows.get(e.getCourse()));
+            return pairs;
+        }
+
+        void addPair(int studentId, int courseRow) {
+            if (size == studentIds.length) {
+                studentIds = Arrays.copyOf(studentIds, size * 2);
+                courseRows = Arrays.copyOf(courseRows, size * 2);
+            }
+            studentIds[size] = studentId;
+            courseRows[size++] = courseRow;
+        }
+
+        int studentId(int i) {
+            Objects.checkIndex(i, size);
+            return studentIds[i];
+        }
+
+        int courseRow(int i) {
+            Objects.checkIndex(i, size);
+            return courseRows[i];
+        }
+
+        @Override
+        public Enrollment get(int i) {
+            return new Enrollment(student(studentId(i)), courses.get(courseRow(i)));
+        }
+
+        @Override
+        public int size() { return size; }
+
+        // The list is ordered by id, so only log(n) rows of a lazily mapped list get decoded
+        private Student1 student(int id) {
+            int low = 0;
+            int high = students.size() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midId = students.get(mid).getId();
+                if (midId < id) low = mid + 1;
+                else if (midId > id) high = mid - 1;
+                else return students.get(mid);
+            }
+            for (Student1 s : students) {
+                if (s.getId() == id) return s;
+            }
+            throw new IllegalStateException("Enrollment refers to missing student " + id);
+        }
+    }
+
+    // ----------------- WRITE -----------------
+    // Writes a temporary file and forces it to disk, then turns the current file into the
+    // previous generation and moves the new one into place. A crash at any point leaves a
+    // complete file under one of the two names.
+    static void write(File file, Snapshot snapshot) throws IOException {
+        long start = Metrics.start();
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            write(out, snapshot);
+            out.getChannel().force(true);
+            SAVE_BYTES.add(out.getChannel().size());
+        }
+        if (file.exists()) {
+            Files.move(file.toPath(), previousGeneration(file).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file);
+        SAVE_TIMER.stop(start);
+    }
+
+    static File previousGeneration(File file) {
+        return new File(file.getPath() + ".prev");
+    }
+
+    // Makes renames in the file's directory durable. Not every platform can open a
+    // directory; there the rename is as durable as the file system makes it anyway.
+    static void syncDirectory(File file) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+
+    // The sections are checksummed as they stream out; the header, which holds the
+    // checksums, is written over its placeholder at the end
+    private static void write(FileOutputStream file, Snapshot snapshot) throws IOException {
+        StringHeap heap = new StringHeap();
+        for (Student1 s : snapshot.students) {
+            heap.add(s.getName());
+            heap.add(s.getContactNumber());
+            heap.add(s.getEmail());
+        }
+        for (Course c : snapshot.courses) {
+            heap.add(c.getCourseName());
+            heap.add(c.getInstructorName());
+            heap.add(sessionsText(c));
+        }
+        Map<Integer, Integer> studentRows = new HashMap<>(snapshot.students.size() * 2);
+        for (Student1 s : snapshot.students) studentRows.put(s.getId(), studentRows.size());
+
+        long heapOffset = HEADER_SIZE
+                + (long) snapshot.students.size() * STUDENT_RECORD_SIZE
+                + (long) snapshot.courses.size() * COURSE_RECORD_SIZE
+                + (long) snapshot.enrollments.size() * ENROLLMENT_RECORD_SIZE;
+        if (heapOffset + heap.size > Integer.MAX_VALUE) throw new IOException("Data set too large for one data file");
+
+        CRC32C crc = new CRC32C();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), BUFFER_SIZE));
+        int[] sectionCrcs = new int[4];
+        out.write(new byte[HEADER_SIZE]);
+        endSection(out, crc);
+
+        for (Student1 s : snapshot.students) {
+            out.writeInt(s.getId());
+            out.writeInt(s.getAge());
+            out.writeInt(heap.offsetOf(s.getName()));
+            out.writeInt(heap.offsetOf(s.getContactNumber()));
+            out.writeInt(heap.offsetOf(s.getEmail()));
+        }
+        sectionCrcs[0] = endSection(out, crc);
+
+        for (Course c : snapshot.courses) {
+            out.writeInt(heap.offsetOf(c.getCourseName()));
+            out.writeInt(heap.offsetOf(c.getInstructorName()));
+            out.writeInt(heap.offsetOf(sessionsText(c)));
+        }
+        sectionCrcs[1] = endSection(out, crc);
+
+        Enrollments enrollments = snapshot.enrollments;
+        for (int i = 0; i < enrollments.size(); i++) {
+            out.writeInt(studentRows.get(enrollments.studentId(i)));
+            out.writeInt(enrollments.courseRow(i));
+        }
+        sectionCrcs[2] = endSection(out, crc);
+
+        for (byte[] bytes : heap.entries) {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        sectionCrcs[3] = endSection(out, crc);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                .putInt(snapshot.nextStudentId).putLong(snapshot.journalSequence)
+                .putInt(snapshot.students.size()).putInt(snapshot.courses.size()).putInt(snapshot.enrollments.size());
+        for (int sectionCrc : sectionCrcs) header.putInt(sectionCrc);
+        crc.reset();
+        crc.update(header.array(), 0, HEADER_CRC_OFFSET);
+        header.putInt(HEADER_CRC_OFFSET, (int) crc.getValue());
+        header.clear();
+        FileChannel channel = file.getChannel();
+        while (header.hasRemaining()) channel.write(header, header.position());
+    }
+
+    private static String sessionsText(Course c) {
+        return c.getSessions().isEmpty() ? null : Timetable.format(c.getSessions());
+    }
+
+    // Pushes the buffered section through the checksum and starts the next one
+    private static int endSection(DataOutputStream out, CRC32C crc) throws IOException {
+        out.flush();
+        int value = (int) crc.getValue();
+        crc.reset();
+        return value;
+    }
+
+    // Each distinct string is stored once; records refer to it by its offset in the heap
+    private static class StringHeap {
+        final Map<String, Integer> offsets = new HashMap<>();
+        final List<byte[]> entries = new ArrayList<>();
+        long size;
+
+        void add(String str) {
+            if (str == null || offsets.containsKey(str)) return;
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            offsets.put(str, (int) size);
+            entries.add(bytes);
+            size += 4 + bytes.length;
+        }
+
+        int offsetOf(String str) {
+            return str == null ? NO_STRING : offsets.get(str);
+        }
+    }
+
+    // ----------------- READ -----------------
+    // The newest generation that reads back intact. Why newer ones were passed over is
+    // added to skipped; when none is intact the current file's problem is thrown.
+    static Snapshot readLastGood(File file, List<IOException> skipped) throws IOException {
+        File previous = previousGeneration(file);
+        if (!file.exists()) return read(previous); // a crash came between the two renames of a save
+        try {
+            return read(file);
+        } catch (IOException e) {
+            if (!previous.exists()) throw e;
+            try {
+                Snapshot snapshot = read(previous);
+                skipped.add(e);
+                return snapshot;
+            } catch (IOException alsoDamaged) {
+                e.addSuppressed(alsoDamaged);
+                throw e;
+            }
+        }
+    }
+
+    // Version 2 to 4 files are memory-mapped and decoded lazily, with version 3 and 4 checksums
+    // verified in one streaming pass first; older files are read in full
+    static Snapshot read(File file) throws IOException {
+        short version;
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            ByteBuffer header = ByteBuffer.allocate(6);
+            while (header.hasRemaining() && channel.read(header) >= 0) { }
+            if (header.position() < 6 || header.getInt(0) != MAGIC) throw new IOException("Not a coaching center data file");
+            version = header.getShort(4);
+        }
+        if (version == VERSION || version == VERSION_3 || version == VERSION_2) return MappedDataStore.open(file).snapshot();
+        if (version != VERSION_1) throw new IOException("Unsupported data file version " + version);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            in.readInt();
+            in.readShort();
+            return readVersion1(in);
+        }
+    }
+
+    private static Snapshot readVersion1(DataInputStream in) throws IOException {
+        int nextStudentId = in.readInt();
+        long journalSequence = in.readLong();
+
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) strings[i] = in.readUTF();
+
+        int studentCount = in.readInt();
+        List<Student1> students = new ArrayList<>(studentCount);
+        Set<Integer> studentIds = new HashSet<>(studentCount * 2);
+        for (int i = 0; i < studentCount; i++) {
+            int id = in.readInt();
+            String name = strings[in.readInt()];
+            int age = in.readInt();
+            String contact = strings[in.readInt()];
+            String email = strings[in.readInt()];
+            Student1 s = new Student1(id, name, age, contact, email);
+            students.add(s);
+            studentIds.add(id);
+        }
+
+        int courseCount = in.readInt();
+        List<Course> courses = new ArrayList<>(courseCount);
+        for (int i = 0; i < courseCount; i++) {
+            Course c = new Course(strings[in.readInt()]);
+            int instructor = in.readInt();
+            if (instructor != NO_STRING) c.setInstructorName(strings[instructor]);
+            courses.add(c);
+        }
+
+        int enrollmentCount = in.readInt();
+        Enrollments enrollments = new Enrollments(students, courses, enrollmentCount);
+        for (int i = 0; i < enrollmentCount; i++) {
+            int studentId = in.readInt();
+            int courseRow = in.readInt();
+            if (!studentIds.contains(studentId) || courseRow < 0 || courseRow >= courseCount) {
+                throw new IOException("Enrollment " + i + " refers to a missing student or course");
+            }
+            enrollments.addPair(studentId, courseRow);
+        }
+
+        return new Snapshot(students, courses, enrollments, nextStudentId, journalSequence);
+    }
+
+    // ----------------- MIGRATION -----------------
+    // Reads a snapshot written by the old ObjectOutputStream-based saveData()
+    @SuppressWarnings("unchecked")
+    static Snapshot readLegacy(File file) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            List<Student1> students = (List<Student1>) ois.readObject();
+            List<Course> courses = (List<Course>) ois.readObject();
+            List<Enrollment> enrollments = (List<Enrollment>) ois.readObject();
+            int nextStudentId = ois.readInt();
+            long journalSequence = 0;
+            try {
+                journalSequence = ois.readLong();
+            } catch (EOFException e) {
+                // Written before the journal existed
+            }
+            return new Snapshot(students, courses, Enrollments.of(students, courses, enrollments), nextStudentId, journalSequence);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable legacy data file", e);
+        }
+    }
+
+    // Converts the legacy file once and keeps it alongside as a backup
+    static Snapshot migrate(File legacyFile, File file) throws IOException {
+        Snapshot snapshot = readLegacy(legacyFile);
+        write(file, snapshot);
+        Files.move(legacyFile.toPath(), new File(legacyFile.getPath() + ".migrated").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        return snapshot;
+    }
+}
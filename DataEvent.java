@@ -0,0 +1,127 @@
+import java.util.List;
+
+// -------------- DOMAIN EVENTS --------------
+// What a change did to the students, courses and enrollments. Rows are positions
+// in the service's lists right after the event, so applying a batch in order
+// keeps a view's row numbers valid; a removal's row is where the item was.
+// Events refer to the live objects, which may have changed again by the time a
+// view sees the event.
+abstract class DataEvent {
+
+    // ----------------- STUDENTS -----------------
+    abstract static class StudentEvent extends DataEvent {
+        final int row;
+        final Student1 student;
+
+        StudentEvent(int row, Student1 student) {
+            this.row = row;
+            this.student = student;
+        }
+    }
+
+    static final class StudentAdded extends StudentEvent {
+        StudentAdded(int row, Student1 student) { super(row, student); }
+    }
+
+    static final class StudentUpdated extends StudentEvent {
+        final Student1 before; // detached copy of the fields as they were
+
+        StudentUpdated(int row, Student1 student, Student1 before) {
+            super(row, student);
+            this.before = before;
+        }
+    }
+
+    // Followed by an EnrollmentRemoved for each of the student's enrollments
+    static final class StudentRemoved extends StudentEvent {
+        StudentRemoved(int row, Student1 student) { super(row, student); }
+    }
+
+    // ----------------- COURSES -----------------
+    abstract static class CourseEvent extends DataEvent {
+        final int row;
+        final Course course;
+
+        CourseEvent(int row, Course course) {
+            this.row = row;
+            this.course = course;
+        }
+    }
+
+    static final class CourseAdded extends CourseEvent {
+        CourseAdded(int row, Course course) { super(row, course); }
+    }
+
+    static final class CourseRenamed extends CourseEvent {
+        final String oldName;
+        final String newName;
+
+        CourseRenamed(int row, Course course, String oldName, String newName) {
+            super(row, course);
+            this.oldName = oldName;
+            this.newName = newName;
+        }
+    }
+
+    // Either name may be null: no instructor before, or an undo took the instructor away
+    static final class InstructorAssigned extends CourseEvent {
+        final String previousName;
+        final String instructorName;
+
+        InstructorAssigned(int row, Course course, String previousName, String instructorName) {
+            super(row, course);
+            this.previousName = previousName;
+            this.instructorName = instructorName;
+        }
+    }
+
+    // New weekly sessions; either list may be empty
+    static final class CourseScheduled extends CourseEvent {
+        final List<Timetable.Session> previousSessions;
+        final List<Timetable.Session> sessions;
+
+        CourseScheduled(int row, Course course, List<Timetable.Session> previousSessions, List<Timetable.Session> sessions) {
+            super(row, course);
+            this.previousSessions = previousSessions;
+            this.sessions = sessions;
+        }
+    }
+
+    // Followed by an EnrollmentRemoved for each of the course's enrollments
+    static final class CourseRemoved extends CourseEvent {
+        CourseRemoved(int row, Course course) { super(row, course); }
+    }
+
+    // ----------------- ENROLLMENTS -----------------
+    // The service keeps enrollments as id pairs, so events name both sides instead of an Enrollment
+    abstract static class EnrollmentEvent extends DataEvent {
+        final int row;
+        final Student1 student;
+        final Course course;
+
+        EnrollmentEvent(int row, Student1 student, Course course) {
+            this.row = row;
+            this.student = student;
+            this.course = course;
+        }
+    }
+
+    static final class EnrollmentAdded extends EnrollmentEvent {
+        EnrollmentAdded(int row, Student1 student, Course course) { super(row, student, course); }
+    }
+
+    // Cascaded removals arrive last row first, so each row is still valid when applied
+    static final class EnrollmentRemoved extends EnrollmentEvent {
+        final DataEvent cause; // the StudentRemoved or CourseRemoved that took it along, or null
+
+        EnrollmentRemoved(int row, Student1 student, Course course, DataEvent cause) {
+            super(row, student, course);
+            this.cause = cause;
+        }
+    }
+
+    // ----------------- EVERYTHING -----------------
+    // The lists were replaced as a whole, e.g. by a fresh copy of a server's data
+    static final class Reloaded extends DataEvent {
+    }
+}
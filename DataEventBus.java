@@ -0,0 +1,92 @@
+import javax.swing.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// -------------- EVENT BUS --------------
+// Carries DataEvents from the service to whoever keeps something in step with
+// the data: the journal, the Swing views, a client's copy of a server. A change
+// publishes its events and commits them once it is complete, so listeners see
+// a whole operation (an import, a removal with its cascade) as one batch.
+// Listeners run on the committing thread while the change still holds the write
+// lock, which keeps the journal in order; views use onEdt(...) to get the
+// batches later on the EDT instead.
+class DataEventBus {
+
+    interface Listener {
+        void changed(List<DataEvent> events);
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private List<DataEvent> pending = new ArrayList<>();
+
+    void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    synchronized void publish(DataEvent event) {
+        pending.add(event);
+    }
+
+    // Hands everything published since the last commit to every listener as one batch
+    synchronized void commit() {
+        if (pending.isEmpty()) return;
+        List<DataEvent> batch = Collections.unmodifiableList(pending);
+        pending = new ArrayList<>();
+        for (Listener listener : listeners) listener.changed(batch);
+    }
+
+    // Number of events published since the last commit
+    synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    // Takes back the events published since pendingCount() was from; they are never
+    // delivered. For a change that is rolled back before it commits.
+    synchronized List<DataEvent> retract(int from) {
+        List<DataEvent> tail = pending.subList(from, pending.size());
+        List<DataEvent> retracted = new ArrayList<>(tail);
+        tail.clear();
+        return retracted;
+    }
+
+    // ----------------- EDT DELIVERY -----------------
+    // Wraps a listener so it runs on the EDT, once per event-queue turn, with every
+    // batch committed since its last run joined into one list. A burst of changes
+    // made in one EDT task, or by another thread meanwhile, thus costs one update.
+    static Listener onEdt(Listener target) {
+        return new EdtCoalescer(target);
+    }
+
+    private static final class EdtCoalescer implements Listener {
+        private final Listener target;
+        private List<DataEvent> queued = new ArrayList<>();
+
+        EdtCoalescer(Listener target) {
+            this.target = target;
+        }
+
+        @Override
+        public void changed(List<DataEvent> events) {
+            boolean schedule;
+            synchronized (this) {
+                schedule = queued.isEmpty();
+                queued.addAll(events);
+            }
+            if (schedule) SwingUtilities.invokeLater(this::deliver);
+        }
+
+        private void deliver() {
+            List<DataEvent> batch;
+            synchronized (this) {
+                batch = queued;
+                queued = new ArrayList<>();
+            }
+            target.changed(batch);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.*;
+import java.util.List;
+
+// -------------- IN-MEMORY INDEXES --------------
+// Hash indexes over the domain lists: students by id, courses by case-folded
+// name and by id. Enrollments index themselves, see EnrollmentStore. The lists
+// stay the source of truth; every mutator reports its change here. Building is
+// deferred to the first lookup so a lazily mapped data file is not decoded at
+// startup.
+class DataIndex {
+
+    private final List<Student1> students;
+    private final List<Course> courses;
+    private volatile boolean built;
+
+    private final Map<Integer, Student1> studentsById = new HashMap<>();
+    private final Map<String, Course> coursesByName = new HashMap<>();
+    private Course[] coursesById = new Course[16];
+
+    DataIndex(List<Student1> students, List<Course> courses) {
+        this.students = students;
+        this.courses = courses;
+    }
+
+    // Same equivalence as String.equalsIgnoreCase, which the duplicate checks have always used
+    static String foldCase(String name) {
+        return name.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+
+    // Synchronized because the first lookup may come from any of several concurrent readers
+    private void ensureBuilt() {
+        if (built) return;
+        synchronized (this) {
+            if (built) return;
+            for (Student1 s : students) studentsById.put(s.getId(), s);
+            for (Course c : courses) indexCourse(c);
+            built = true;
+        }
+    }
+
+    // ----------------- LOOKUPS -----------------
+    Student1 student(int id) {
+        ensureBuilt();
+        return studentsById.get(id);
+    }
+
+    Course course(String courseName) {
+        ensureBuilt();
+        return coursesByName.get(foldCase(courseName));
+    }
+
+    Course course(int id) {
+        ensureBuilt();
+        return id >= 0 && id < coursesById.length ? coursesById[id] : null;
+    }
+
+    // ----------------- MAINTENANCE -----------------
+    void studentAdded(Student1 student) {
+        ensureBuilt();
+        studentsById.put(student.getId(), student);
+    }
+
+    void studentRemoved(Student1 student) {
+        ensureBuilt();
+        studentsById.remove(student.getId());
+    }
+
+    void courseAdded(Course course) {
+        ensureBuilt();
+        indexCourse(course);
+    }
+
+    void courseRenamed(Course course, String oldName) {
+        ensureBuilt();
+        coursesByName.remove(foldCase(oldName));
+        coursesByName.put(foldCase(course.getCourseName()), course);
+    }
+
+    void courseRemoved(Course course) {
+        ensureBuilt();
+        coursesByName.remove(foldCase(course.getCourseName()));
+        coursesById[course.getId()] = null;
+    }
+
+    private void indexCourse(Course course) {
+        coursesByName.put(foldCase(course.getCourseName()), course);
+        if (course.getId() >= coursesById.length) {
+            coursesById = Arrays.copyOf(coursesById, Math.max(course.getId() + 1, coursesById.length * 2));
+        }
+        coursesById[course.getId()] = course;
+    }
+}
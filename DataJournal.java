@@ -0,0 +1,484 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// -------------- WRITE-AHEAD JOURNAL --------------
+// Append-only log of small mutation records. Each record is framed as
+// [payload length][crc32][payload] so a torn tail left by a crash is detected
+// and dropped on replay. Appends are queued to one writer thread which drains
+// everything pending into a single write + fsync (group commit).
+// A compaction writes a snapshot and starts a new log; the old one is kept as
+// <file>.prev, since a load that falls back to the previous generation of the
+// data file needs its records. Replay reads both and skips what the snapshot
+// already has.
+class DataJournal implements Closeable {
+
+    private static final byte STUDENT_ADDED = 1;
+    private static final byte STUDENT_UPDATED = 2;
+    private static final byte STUDENT_REMOVED = 3;
+    private static final byte COURSE_ADDED = 4;
+    private static final byte COURSE_RENAMED = 5;
+    private static final byte INSTRUCTOR_ASSIGNED = 6;
+    private static final byte COURSE_REMOVED = 7;
+    private static final byte ENROLLED = 8;
+    private static final byte UNENROLLED = 9;
+    private static final byte COURSE_SCHEDULED = 10;
+
+    private static final Object CLOSE = new Object();
+
+    private static final Metrics.Timer REPLAY_TIMER = Metrics.timer("journal.replay");
+    private static final Metrics.Timer WRITE_TIMER = Metrics.timer("journal.write");
+    private static final Metrics.Timer COMPACTION_TIMER = Metrics.timer("journal.compaction");
+    private static final Metrics.Counter WRITTEN_BYTES = Metrics.counter("journal.bytes");
+
+    interface Handler {
+        void studentAdded(int id, String name, int age, String contact, String email);
+        void studentUpdated(int id, String name, int age, String contact, String email);
+        void studentRemoved(int id);
+        void courseAdded(String courseName);
+        void courseRenamed(String oldName, String newName);
+        void instructorAssigned(String courseName, String instructorName);
+        void courseRemoved(String courseName);
+        void enrolled(int studentId, String courseName);
+        void unenrolled(int studentId, String courseName);
+        void courseScheduled(String courseName, String sessions);
+    }
+
+    // Skips every record, e.g. to open a log only to append to it
+    static final Handler IGNORE = new Handler() {
+        @Override public void studentAdded(int id, String name, int age, String contact, String email) { }
+        @Override public void studentUpdated(int id, String name, int age, String contact, String email) { }
+        @Override public void studentRemoved(int id) { }
+        @Override public void courseAdded(String courseName) { }
+        @Override public void courseRenamed(String oldName, String newName) { }
+        @Override public void instructorAssigned(String courseName, String instructorName) { }
+        @Override public void courseRemoved(String courseName) { }
+        @Override public void enrolled(int studentId, String courseName) { }
+        @Override public void unenrolled(int studentId, String courseName) { }
+        @Override public void courseScheduled(String courseName, String sessions) { }
+    };
+
+    // Writes a snapshot that covers every record up to the sequence it was captured at.
+    interface SnapshotWriter {
+        void write() throws IOException;
+    }
+
+    private static class Compaction {
+        final SnapshotWriter writer;
+        Compaction(SnapshotWriter writer) { this.writer = writer; }
+    }
+
+    private final File file;
+    private final File previousFile;
+    private final int compactThreshold;
+    private final Consumer<IOException> errorHandler;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final List<ByteBuffer> pending = new ArrayList<>();
+
+    private FileChannel channel;
+    private long committedLength; // end of the last record forced to disk
+    private Thread writer;
+    private long lastSequence;
+    private int recordsSinceCompaction;
+    private List<ByteBuffer> batch;
+    private volatile boolean closed;
+
+    DataJournal(File file, int compactThreshold, Consumer<IOException> errorHandler) {
+        this.file = file;
+        this.previousFile = new File(file.getPath() + ".prev");
+        this.compactThreshold = compactThreshold;
+        this.errorHandler = errorHandler;
+    }
+
+    // Replays every intact record newer than the snapshot, then opens the log for appending.
+    void open(long snapshotSequence, Handler handler) throws IOException {
+        long start = Metrics.start();
+        lastSequence = snapshotSequence;
+        replay(previousFile, 0, snapshotSequence, handler);
+        recordsSinceCompaction = 0;
+        long validLength = replay(file, 0, snapshotSequence, handler);
+        REPLAY_TIMER.stop(start);
+
+        openChannel();
+        // Cut off a torn or corrupt tail so new records are never appended after garbage
+        channel.truncate(validLength);
+        channel.position(validLength);
+        committedLength = validLength;
+
+        writer = new Thread(this::runWriter, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Replays like open(...) but leaves the log alone, so a reader can run beside its
+    // writer. Returns the length of the log's intact records, for readFrom(...).
+    static long read(File file, long snapshotSequence, Handler handler) throws IOException {
+        DataJournal journal = new DataJournal(file, Integer.MAX_VALUE, e -> { });
+        journal.replay(journal.previousFile, 0, snapshotSequence, handler);
+        return journal.replay(file, 0, snapshotSequence, handler);
+    }
+
+    // The intact records of the log from offset on, which must be where an earlier
+    // read stopped; returns where these stop
+    static long readFrom(File file, long offset, Handler handler) throws IOException {
+        return new DataJournal(file, Integer.MAX_VALUE, e -> { }).replay(file, offset, 0, handler);
+    }
+
+    // Returns the end of the intact records
+    private long replay(File log, long offset, long snapshotSequence, Handler handler) throws IOException {
+        long validLength = offset;
+        if (!log.exists()) return offset;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(log)))) {
+            try {
+                in.skipNBytes(offset);
+            } catch (EOFException e) {
+                return offset;
+            }
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length <= 0) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) break;
+                } catch (EOFException e) {
+                    break;
+                }
+                long sequence = apply(payload, snapshotSequence, handler);
+                lastSequence = Math.max(lastSequence, sequence);
+                validLength += 8 + payload.length;
+                recordsSinceCompaction++;
+            }
+        }
+        return validLength;
+    }
+
+    private static long apply(byte[] payload, long snapshotSequence, Handler handler) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long sequence = in.readLong();
+        if (sequence <= snapshotSequence) return sequence;
+
+        byte type = in.readByte();
+        switch (type) {
+            case STUDENT_ADDED:
+                handler.studentAdded(in.readInt(), in.readUTF(), in.readInt(), in.readUTF(), in.readUTF());
+                break;
+            case STUDENT_UPDATED:
+                handler.studentUpdated(in.readInt(), in.readUTF(), in.readInt(), in.readUTF(), in.readUTF());
+                break;
+            case STUDENT_REMOVED:
+                handler.studentRemoved(in.readInt());
+                break;
+            case COURSE_ADDED:
+                handler.courseAdded(in.readUTF());
+                break;
+            case COURSE_RENAMED:
+                handler.courseRenamed(in.readUTF(), in.readUTF());
+                break;
+            case INSTRUCTOR_ASSIGNED: {
+                String courseName = in.readUTF();
+                String instructorName = in.readUTF();
+                handler.instructorAssigned(courseName, instructorName.isEmpty() ? null : instructorName);
+                break;
+            }
+            case COURSE_REMOVED:
+                handler.courseRemoved(in.readUTF());
+                break;
+            case ENROLLED:
+                handler.enrolled(in.readInt(), in.readUTF());
+                break;
+            case UNENROLLED:
+                handler.unenrolled(in.readInt(), in.readUTF());
+                break;
+            case COURSE_SCHEDULED:
+                handler.courseScheduled(in.readUTF(), in.readUTF());
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+        return sequence;
+    }
+
+    // ----------------- RECORDS -----------------
+    void studentAdded(Student1 s) {
+        append(STUDENT_ADDED, out -> writeStudent(out, s));
+    }
+
+    void studentUpdated(Student1 s) {
+        append(STUDENT_UPDATED, out -> writeStudent(out, s));
+    }
+
+    void studentRemoved(int id) {
+        append(STUDENT_REMOVED, out -> out.writeInt(id));
+    }
+
+    void courseAdded(String courseName) {
+        append(COURSE_ADDED, out -> out.writeUTF(courseName));
+    }
+
+    void courseRenamed(String oldName, String newName) {
+        append(COURSE_RENAMED, out -> {
+            out.writeUTF(oldName);
+            out.writeUTF(newName);
+        });
+    }
+
+    // A null instructorName, which only an undo produces, is written as an empty name
+    void instructorAssigned(String courseName, String instructorName) {
+        append(INSTRUCTOR_ASSIGNED, out -> {
+            out.writeUTF(courseName);
+            out.writeUTF(instructorName != null ? instructorName : "");
+        });
+    }
+
+    void courseRemoved(String courseName) {
+        append(COURSE_REMOVED, out -> out.writeUTF(courseName));
+    }
+
+    void enrolled(int studentId, String courseName) {
+        append(ENROLLED, out -> {
+            out.writeInt(studentId);
+            out.writeUTF(courseName);
+        });
+    }
+
+    void unenrolled(int studentId, String courseName) {
+        append(UNENROLLED, out -> {
+            out.writeInt(studentId);
+            out.writeUTF(courseName);
+        });
+    }
+
+    // The sessions as Timetable.format writes them; empty when the course has none
+    void courseScheduled(String courseName, String sessions) {
+        append(COURSE_SCHEDULED, out -> {
+            out.writeUTF(courseName);
+            out.writeUTF(sessions);
+        });
+    }
+
+    private static void writeStudent(DataOutputStream out, Student1 s) throws IOException {
+        out.writeInt(s.getId());
+        out.writeUTF(s.getName());
+        out.writeInt(s.getAge());
+        out.writeUTF(s.getContactNumber());
+        out.writeUTF(s.getEmail());
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void append(byte type, Body body) {
+        if (closed) throw new IllegalStateException("Journal is closed");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0); // length, patched below
+            out.writeInt(0); // crc, patched below
+            out.writeLong(++lastSequence);
+            out.writeByte(type);
+            body.write(out);
+
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 8, record.capacity() - 8);
+            record.putInt(0, record.capacity() - 8);
+            record.putInt(4, (int) crc.getValue());
+            recordsSinceCompaction++;
+            if (batch != null) batch.add(record);
+            else queue.add(record);
+        } catch (IOException e) {
+            // Only in-memory streams are involved here
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Records appended until endBatch() reach the writer together and are committed in one write
+    void beginBatch() {
+        if (batch == null) batch = new ArrayList<>();
+    }
+
+    void endBatch() {
+        if (batch == null) return;
+        if (!batch.isEmpty()) queue.add(batch);
+        batch = null;
+    }
+
+    // ----------------- COMPACTION -----------------
+    long lastSequence() { return lastSequence; }
+
+    boolean needsCompaction() { return recordsSinceCompaction >= compactThreshold; }
+
+    // The writer runs on the journal thread once every earlier record is on disk, and
+    // no later one is, so it may read the log back; the log is emptied once it succeeds.
+    void compact(SnapshotWriter snapshotWriter) {
+        endBatch();
+        recordsSinceCompaction = 0;
+        queue.add(new Compaction(snapshotWriter));
+    }
+
+    // Blocks until every record appended so far has been written and forced to disk;
+    // throws when a write failed and some of them are still waiting for a retry.
+    void flush() throws InterruptedException, IOException {
+        if (writer == null) return;
+        if (closed) throw new IllegalStateException("Journal is closed");
+        Barrier barrier = new Barrier();
+        queue.add(barrier);
+        barrier.done.await();
+        if (barrier.failure != null) {
+            throw new IOException("Journal " + file + " is behind: " + barrier.failure.getMessage(), barrier.failure);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed || writer == null) return;
+        closed = true;
+        queue.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ----------------- WRITER THREAD -----------------
+    // A failed write keeps its records pending, in order, and the next commit cuts
+    // off whatever it left in the file and writes them again. A failed compaction
+    // leaves the log as it was. Either way the writer goes on, so barriers are
+    // always released and a close is always honoured.
+    private static class Barrier {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile IOException failure;
+    }
+
+    private void runWriter() {
+        List<Object> batch = new ArrayList<>();
+        List<Barrier> barriers = new ArrayList<>();
+        boolean stop = false;
+        while (!stop) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch);
+            for (Object item : batch) {
+                if (item instanceof ByteBuffer) {
+                    pending.add((ByteBuffer) item);
+                } else if (item instanceof List) {
+                    for (Object record : (List<?>) item) pending.add((ByteBuffer) record);
+                } else if (item instanceof Compaction) {
+                    runCompaction((Compaction) item);
+                } else if (item instanceof Barrier) {
+                    barriers.add((Barrier) item);
+                } else if (item == CLOSE) {
+                    stop = true;
+                }
+            }
+            batch.clear();
+            IOException failure = commitOrReport();
+            for (Barrier barrier : barriers) release(barrier, failure);
+            barriers.clear();
+        }
+        // Nothing writes after this, so a barrier that comes too late is released as failed
+        IOException closedFailure = new IOException("The journal writer stopped with "
+                + pending.size() + " records unwritten");
+        for (Object item : queue) if (item instanceof Barrier) release((Barrier) item, closedFailure);
+        if (!pending.isEmpty()) errorHandler.accept(closedFailure);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    private static void release(Barrier barrier, IOException failure) {
+        barrier.failure = failure;
+        barrier.done.countDown();
+    }
+
+    // The records before it go first; should they fail, the snapshot waits for the next compaction
+    private void runCompaction(Compaction compaction) {
+        if (commitOrReport() != null) return;
+        long start = Metrics.start();
+        try {
+            compaction.writer.write();
+            rotate();
+            COMPACTION_TIMER.stop(start);
+        } catch (IOException | RuntimeException e) {
+            errorHandler.accept(e instanceof IOException ? (IOException) e
+                    : new IOException("Compaction of " + file + " failed: " + e, e));
+        }
+    }
+
+    // Null when every pending record is on disk
+    private IOException commitOrReport() {
+        try {
+            commit();
+            return null;
+        } catch (IOException e) {
+            errorHandler.accept(e);
+            return e;
+        }
+    }
+
+    // The records the new snapshot covers become the previous log. Should the rename
+    // fail, the current log is reopened and simply keeps growing.
+    private void rotate() throws IOException {
+        channel.close();
+        try {
+            Files.move(file.toPath(), previousFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            openChannel();
+            committedLength = channel.size();
+            channel.position(committedLength);
+        }
+        DataCodec.syncDirectory(file);
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private void commit() throws IOException {
+        if (pending.isEmpty()) return;
+        long start = Metrics.start();
+        if (!channel.isOpen()) {
+            // A failed rotation closed the log; the file may be the new, empty one
+            openChannel();
+            committedLength = Math.min(committedLength, channel.size());
+        }
+        if (channel.position() != committedLength) {
+            // A failed write may have left part of its records behind
+            channel.truncate(committedLength);
+            channel.position(committedLength);
+        }
+        ByteBuffer[] buffers = pending.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (ByteBuffer b : buffers) remaining += b.rewind().remaining();
+        long length = committedLength + remaining;
+        while (remaining > 0) remaining -= channel.write(buffers);
+        channel.force(false);
+        WRITTEN_BYTES.add(length - committedLength);
+        committedLength = length;
+        pending.clear();
+        WRITE_TIMER.stop(start);
+    }
+}
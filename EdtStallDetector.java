@@ -0,0 +1,139 @@
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+// -------------- EDT STALL DETECTOR --------------
+// An event queue that times every event the EDT dispatches (the edt.event timer)
+// and keeps the latest events that ran longer than a threshold. A watchdog thread
+// looks at the running event a few times per threshold and, once it has run too
+// long, takes the EDT's stack right then, so a stall shows where the EDT was stuck
+// rather than where it finished. Stalls are logged to stderr when they end.
+// Does nothing beyond passing events on while metrics are off.
+class EdtStallDetector extends EventQueue {
+
+    static final long DEFAULT_THRESHOLD_MILLIS = 200;
+    private static final int KEPT_STALLS = 20;
+
+    private static final Metrics.Timer EVENT_TIMER = Metrics.timer("edt.event");
+    private static final Metrics.Counter STALL_COUNTER = Metrics.counter("edt.stalls");
+    private static final Deque<Stall> stalls = new ArrayDeque<>(); // newest first, guarded by itself
+    private static EdtStallDetector installed;
+
+    static final class Stall {
+        final long startedAt;         // System.currentTimeMillis()
+        final String event;
+        final StackTraceElement[] stack;
+        volatile long durationMillis; // grows until the event ends
+        private final long startNanos;
+
+        Stall(long startNanos, String event, StackTraceElement[] stack) {
+            long running = System.nanoTime() - startNanos;
+            this.startNanos = startNanos;
+            this.startedAt = System.currentTimeMillis() - running / 1_000_000;
+            this.event = event;
+            this.stack = stack;
+            this.durationMillis = running / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder("EDT stall of " + durationMillis + " ms in " + event);
+            for (StackTraceElement e : stack) s.append("\n\tat ").append(e);
+            return s.toString();
+        }
+    }
+
+    private final long thresholdNanos;
+    // The event being watched; written by the EDT, read by the watchdog
+    private volatile Thread dispatcher;
+    private volatile AWTEvent current;
+    private volatile long currentStart; // nanoTime, 0 while nothing is watched
+    private final AtomicReference<Stall> currentStall = new AtomicReference<>();
+    private int dispatches;             // EDT only
+
+    private EdtStallDetector(long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+    }
+
+    // Puts the detector in front of the system event queue; later calls keep the first one
+    static synchronized void install(long thresholdMillis) {
+        if (installed != null) return;
+        installed = new EdtStallDetector(thresholdMillis);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(installed);
+        Thread watchdog = new Thread(installed::watch, "edt-stall-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    // Newest first
+    static List<Stall> recentStalls() {
+        synchronized (stalls) {
+            return new ArrayList<>(stalls);
+        }
+    }
+
+    // A modal dialog runs a nested loop inside the event that opened it. The nested
+    // events are watched and timed on their own; the opening event is watched only
+    // until the first of them, and its total, mostly spent waiting, is not timed.
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        long start = Metrics.start();
+        if (start == 0) {
+            super.dispatchEvent(event);
+            return;
+        }
+        int dispatchesBefore = ++dispatches;
+        endStall(start);
+        dispatcher = Thread.currentThread();
+        current = event;
+        currentStart = start;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long end = System.nanoTime();
+            currentStart = 0;
+            endStall(end);
+            if (dispatches == dispatchesBefore) EVENT_TIMER.record(end - start);
+        }
+    }
+
+    private void endStall(long end) {
+        Stall stall = currentStall.getAndSet(null);
+        if (stall == null) return;
+        stall.durationMillis = (end - stall.startNanos) / 1_000_000;
+        System.err.println(stall);
+    }
+
+    private void watch() {
+        long period = Math.max(1, thresholdNanos / 4 / 1_000_000);
+        while (true) {
+            try {
+                Thread.sleep(period);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long start = currentStart;
+            if (start == 0 || currentStall.get() != null || System.nanoTime() - start < thresholdNanos) continue;
+            AWTEvent event = current;
+            StackTraceElement[] stack = dispatcher.getStackTrace();
+            // The event may have ended while the stack was taken
+            if (currentStart != start) continue;
+            Stall stall = new Stall(start, describe(event), stack);
+            currentStall.set(stall);
+            // Ended in between, so the EDT may have missed the stall; whoever takes it reports it
+            if (currentStart != start) endStall(System.nanoTime());
+            STALL_COUNTER.increment();
+            synchronized (stalls) {
+                stalls.addFirst(stall);
+                if (stalls.size() > KEPT_STALLS) stalls.removeLast();
+            }
+        }
+    }
+
+    private static String describe(AWTEvent event) {
+        String s = event.toString();
+        int source = s.indexOf(" on ");
+        return source > 0 ? s.substring(0, source) : s;
+    }
+}
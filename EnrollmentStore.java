@@ -0,0 +1,251 @@
+import java.util.Arrays;
+
+// -------------- ENROLLMENT STORE --------------
+// Enrollments as (student id, course id) int pairs instead of objects. The pairs
+// are kept in enrollment order, which is the order of the Enrollments list, and
+// every student and course has an int array of the other side, also in that
+// order. So a student's courses line up with their rows in the list, and
+// lookups, enroll and unenroll touch only int arrays and allocate nothing
+// beyond occasional growth. Arrays are indexed by id directly; student and
+// course ids are small and dense.
+// Not synchronized; the service's lock guards it.
+class EnrollmentStore {
+
+    private static final int[] NONE = new int[0];
+
+    // Enrollment order
+    private int[] pairStudents = new int[16];
+    private int[] pairCourses = new int[16];
+    private int size;
+
+    // Adjacency, indexed by id; counts say how much of each array is used
+    private int[][] coursesOfStudent = new int[16][];
+    private int[] courseCounts = new int[16];
+    private int[][] studentsOfCourse = new int[16][];
+    private int[] studentCounts = new int[16];
+
+    // ----------------- LOOKUPS -----------------
+    int size() { return size; }
+
+    int studentAt(int row) { return pairStudents[checkRow(row)]; }
+
+    int courseAt(int row) { return pairCourses[checkRow(row)]; }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        return row;
+    }
+
+    // A student has a handful of courses, so a scan of theirs beats any hash lookup
+    boolean contains(int studentId, int courseId) {
+        return indexOf(courses(studentId), courseCount(studentId), courseId) >= 0;
+    }
+
+    int courseCount(int studentId) {
+        return studentId < courseCounts.length ? courseCounts[studentId] : 0;
+    }
+
+    int courseOf(int studentId, int i) {
+        if (i >= courseCount(studentId)) throw new IndexOutOfBoundsException();
+        return coursesOfStudent[studentId][i];
+    }
+
+    int studentCount(int courseId) {
+        return courseId < studentCounts.length ? studentCounts[courseId] : 0;
+    }
+
+    int studentOf(int courseId, int i) {
+        if (i >= studentCount(courseId)) throw new IndexOutOfBoundsException();
+        return studentsOfCourse[courseId][i];
+    }
+
+    // Copies, in enrollment order
+    int[] coursesOf(int studentId) {
+        return Arrays.copyOf(courses(studentId), courseCount(studentId));
+    }
+
+    int[] studentsOf(int courseId) {
+        return Arrays.copyOf(students(courseId), studentCount(courseId));
+    }
+
+    private int[] courses(int studentId) {
+        int[] a = studentId < coursesOfStudent.length ? coursesOfStudent[studentId] : null;
+        return a != null ? a : NONE;
+    }
+
+    private int[] students(int courseId) {
+        int[] a = courseId < studentsOfCourse.length ? studentsOfCourse[courseId] : null;
+        return a != null ? a : NONE;
+    }
+
+    // ----------------- CHANGES -----------------
+    // Appends the pair; returns its row, or -1 when the student is already enrolled
+    int add(int studentId, int courseId) {
+        if (contains(studentId, courseId)) return -1;
+        if (size == pairStudents.length) {
+            pairStudents = Arrays.copyOf(pairStudents, size * 2);
+            pairCourses = Arrays.copyOf(pairCourses, size * 2);
+        }
+        pairStudents[size] = studentId;
+        pairCourses[size] = courseId;
+
+        ensureStudent(studentId);
+        coursesOfStudent[studentId] = append(coursesOfStudent[studentId], courseCounts[studentId]++, courseId, 2);
+        ensureCourse(courseId);
+        studentsOfCourse[courseId] = append(studentsOfCourse[courseId], studentCounts[courseId]++, studentId, 8);
+        return size++;
+    }
+
+    // Removes the pair; returns the row it had, or -1 when there was no such enrollment
+    int remove(int studentId, int courseId) {
+        if (!contains(studentId, courseId)) return -1;
+        courseCounts[studentId] = removeValue(coursesOfStudent[studentId], courseCounts[studentId], courseId);
+        studentCounts[courseId] = removeValue(studentsOfCourse[courseId], studentCounts[courseId], studentId);
+        // From the end: undoing enrollments takes back the newest first
+        int row = size - 1;
+        while (pairStudents[row] != studentId || pairCourses[row] != courseId) row--;
+        System.arraycopy(pairStudents, row + 1, pairStudents, row, size - row - 1);
+        System.arraycopy(pairCourses, row + 1, pairCourses, row, size - row - 1);
+        size--;
+        return row;
+    }
+
+    // Puts pairs back at the given rows, which are ascending positions in the list as
+    // it will be; the way a removal is undone. One pass shifts the pairs apart from the
+    // back, another rebuilds the adjacency of the students and courses involved, so it
+    // stays in enrollment order.
+    void insert(int[] rows, int[] studentIds, int[] courseIds) {
+        int count = rows.length;
+        if (count == 0) return;
+        int newSize = size + count;
+        if (rows[0] < 0 || rows[count - 1] >= newSize) {
+            throw new IndexOutOfBoundsException("Rows " + rows[0] + ".." + rows[count - 1] + " of " + newSize);
+        }
+        for (int i = 0; i < count; i++) {
+            if (contains(studentIds[i], courseIds[i])) {
+                throw new IllegalArgumentException("Student " + studentIds[i] + " is already in course " + courseIds[i]);
+            }
+        }
+        if (newSize > pairStudents.length) {
+            int length = Math.max(newSize, pairStudents.length * 2);
+            pairStudents = Arrays.copyOf(pairStudents, length);
+            pairCourses = Arrays.copyOf(pairCourses, length);
+        }
+        int from = size - 1;
+        for (int row = newSize - 1, next = count - 1; next >= 0; row--) {
+            if (rows[next] == row) {
+                pairStudents[row] = studentIds[next];
+                pairCourses[row] = courseIds[next];
+                next--;
+            } else {
+                pairStudents[row] = pairStudents[from];
+                pairCourses[row] = pairCourses[from];
+                from--;
+            }
+        }
+        size = newSize;
+
+        for (int i = 0; i < count; i++) {
+            ensureStudent(studentIds[i]);
+            ensureCourse(courseIds[i]);
+        }
+        boolean[] students = new boolean[coursesOfStudent.length];
+        boolean[] courses = new boolean[studentsOfCourse.length];
+        for (int i = 0; i < count; i++) {
+            students[studentIds[i]] = true;
+            courseCounts[studentIds[i]] = 0;
+            courses[courseIds[i]] = true;
+            studentCounts[courseIds[i]] = 0;
+        }
+        for (int row = 0; row < size; row++) {
+            int s = pairStudents[row];
+            int c = pairCourses[row];
+            if (students[s]) coursesOfStudent[s] = append(coursesOfStudent[s], courseCounts[s]++, c, 2);
+            if (courses[c]) studentsOfCourse[c] = append(studentsOfCourse[c], studentCounts[c]++, s, 8);
+        }
+    }
+
+    // Drops every enrollment of the student. Returns the rows they had, ascending;
+    // they match coursesOf(studentId) as it was before the call.
+    int[] removeStudent(int studentId) {
+        int count = courseCount(studentId);
+        if (count == 0) return NONE;
+        int[] courses = coursesOfStudent[studentId];
+        for (int i = 0; i < count; i++) {
+            int c = courses[i];
+            studentCounts[c] = removeValue(studentsOfCourse[c], studentCounts[c], studentId);
+        }
+        coursesOfStudent[studentId] = null;
+        courseCounts[studentId] = 0;
+        return compact(pairStudents, studentId, count);
+    }
+
+    // Drops every enrollment in the course; the rows match studentsOf(courseId) as it was
+    int[] removeCourse(int courseId) {
+        int count = studentCount(courseId);
+        if (count == 0) return NONE;
+        int[] students = studentsOfCourse[courseId];
+        for (int i = 0; i < count; i++) {
+            int s = students[i];
+            courseCounts[s] = removeValue(coursesOfStudent[s], courseCounts[s], courseId);
+        }
+        studentsOfCourse[courseId] = null;
+        studentCounts[courseId] = 0;
+        return compact(pairCourses, courseId, count);
+    }
+
+    // One pass that closes the gaps left by the pairs whose key column equals id
+    private int[] compact(int[] keys, int id, int count) {
+        int[] rows = new int[count];
+        int found = 0;
+        int kept = 0;
+        for (int row = 0; row < size; row++) {
+            if (keys[row] == id) {
+                rows[found++] = row;
+            } else {
+                pairStudents[kept] = pairStudents[row];
+                pairCourses[kept] = pairCourses[row];
+                kept++;
+            }
+        }
+        size = kept;
+        return rows;
+    }
+
+    private void ensureStudent(int studentId) {
+        if (studentId >= coursesOfStudent.length) {
+            int length = Math.max(studentId + 1, coursesOfStudent.length * 2);
+            coursesOfStudent = Arrays.copyOf(coursesOfStudent, length);
+            courseCounts = Arrays.copyOf(courseCounts, length);
+        }
+    }
+
+    private void ensureCourse(int courseId) {
+        if (courseId >= studentsOfCourse.length) {
+            int length = Math.max(courseId + 1, studentsOfCourse.length * 2);
+            studentsOfCourse = Arrays.copyOf(studentsOfCourse, length);
+            studentCounts = Arrays.copyOf(studentCounts, length);
+        }
+    }
+
+    private static int[] append(int[] a, int count, int value, int initialCapacity) {
+        if (a == null) a = new int[initialCapacity];
+        else if (count == a.length) a = Arrays.copyOf(a, count * 2);
+        a[count] = value;
+        return a;
+    }
+
+    // Order-preserving, so adjacency stays in enrollment order; returns the new count
+    private static int removeValue(int[] a, int count, int value) {
+        int at = indexOf(a, count, value);
+        System.arraycopy(a, at + 1, a, at, count - at - 1);
+        return count - 1;
+    }
+
+    private static int indexOf(int[] a, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (a[i] == value) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,200 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.List;
+import java.util.function.Consumer;
+
+// -------------- FILE STORAGE ENGINE --------------
+// The data file (DataCodec) with its write-ahead journal (DataJournal): every
+// batch is appended to the journal, and the whole snapshot is rewritten when
+// the journal is compacted. The journal's writer thread builds that snapshot
+// from the saved one and the records after it, so the thread that makes the
+// edits never copies the data. A damaged data file is passed over for its
+// previous generation, which the journal brings up to date; when no generation
+// can be read the damaged files are renamed, so later saves cannot replace
+// them. A legacy serialized file is migrated on first load. Lookups go through
+// a SavedDataView of the mapped file and the journal.
+class FileStorageEngine implements StorageEngine {
+
+    private final File dataFile;
+    private final File legacyFile;
+    private final File journalFile;
+    private final int compactThreshold;
+    private final Consumer<IOException> errorHandler;
+    private final boolean readOnly; // a reader: never migrates, renames or opens the journal
+    private long snapshotSequence;
+    private IOException unreadable; // why a read-only view's load failed
+    private DataJournal journal; // open once replay(...) ran
+    private SavedDataView lookups; // guarded by this
+
+    FileStorageEngine(File dataFile, File legacyFile, File journalFile, Consumer<IOException> errorHandler) {
+        this(dataFile, legacyFile, journalFile, CoachingCenterService.JOURNAL_COMPACT_THRESHOLD, errorHandler, false);
+    }
+
+    private FileStorageEngine(File dataFile, File legacyFile, File journalFile, int compactThreshold,
+                              Consumer<IOException> errorHandler, boolean readOnly) {
+        this.dataFile = dataFile;
+        this.legacyFile = legacyFile;
+        this.journalFile = journalFile;
+        this.compactThreshold = compactThreshold;
+        this.errorHandler = errorHandler;
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public DataCodec.Snapshot load(List<IOException> skipped) throws IOException {
+        File previous = DataCodec.previousGeneration(dataFile);
+        if (!dataFile.exists() && !previous.exists() && !legacyFile.exists()) return null;
+        try {
+            List<IOException> passedOver = new ArrayList<>();
+            DataCodec.Snapshot snapshot;
+            if (dataFile.exists() || previous.exists()) snapshot = DataCodec.readLastGood(dataFile, passedOver);
+            else snapshot = readOnly ? DataCodec.readLegacy(legacyFile) : DataCodec.migrate(legacyFile, dataFile);
+            snapshotSequence = snapshot.journalSequence;
+            if (!passedOver.isEmpty()) {
+                skipped.add(new IOException(passedOver.get(0).getMessage()
+                        + "; recovered from the previous save and the journal", passedOver.get(0)));
+            }
+            return snapshot;
+        } catch (IOException e) {
+            if (readOnly) throw unreadable = e;
+            boolean kept = keepDamaged(dataFile) | keepDamaged(previous);
+            throw kept ? new IOException(e.getMessage() + "; the damaged data was kept as *.damaged", e) : e;
+        }
+    }
+
+    private static boolean keepDamaged(File file) {
+        return file.exists() && file.renameTo(new File(file.getPath() + ".damaged"));
+    }
+
+    @Override
+    public void replay(DataJournal.Handler handler) throws IOException {
+        if (readOnly) {
+            DataJournal.read(journalFile, snapshotSequence, handler);
+            return;
+        }
+        journal = new DataJournal(journalFile, compactThreshold, errorHandler);
+        journal.open(snapshotSequence, handler);
+    }
+
+    // ----------------- SAVING -----------------
+    // Each committed batch becomes one journal batch, so an import or a removal with
+    // its cascade reaches the disk in one write
+    @Override
+    public void saveDelta(List<DataEvent> batch) {
+        if (batch.size() > 1) journal.beginBatch();
+        for (DataEvent event : batch) record(event);
+        journal.endBatch();
+        if (journal.needsCompaction()) {
+            long sequence = journal.lastSequence();
+            journal.compact(() -> DataCodec.write(dataFile, covering(readSaved().copySnapshot(), sequence)));
+        }
+    }
+
+    private void record(DataEvent event) {
+        if (event instanceof DataEvent.StudentAdded) {
+            journal.studentAdded(((DataEvent.StudentAdded) event).student);
+        } else if (event instanceof DataEvent.StudentUpdated) {
+            journal.studentUpdated(((DataEvent.StudentUpdated) event).student);
+        } else if (event instanceof DataEvent.StudentRemoved) {
+            journal.studentRemoved(((DataEvent.StudentRemoved) event).student.getId());
+        } else if (event instanceof DataEvent.CourseAdded) {
+            journal.courseAdded(((DataEvent.CourseAdded) event).course.getCourseName());
+        } else if (event instanceof DataEvent.CourseRenamed) {
+            DataEvent.CourseRenamed renamed = (DataEvent.CourseRenamed) event;
+            journal.courseRenamed(renamed.oldName, renamed.newName);
+        } else if (event instanceof DataEvent.InstructorAssigned) {
+            DataEvent.InstructorAssigned assigned = (DataEvent.InstructorAssigned) event;
+            journal.instructorAssigned(assigned.course.getCourseName(), assigned.instructorName);
+        } else if (event instanceof DataEvent.CourseScheduled) {
+            DataEvent.CourseScheduled scheduled = (DataEvent.CourseScheduled) event;
+            journal.courseScheduled(scheduled.course.getCourseName(), Timetable.format(scheduled.sessions));
+        } else if (event instanceof DataEvent.CourseRemoved) {
+            journal.courseRemoved(((DataEvent.CourseRemoved) event).course.getCourseName());
+        } else if (event instanceof DataEvent.EnrollmentAdded) {
+            DataEvent.EnrollmentAdded added = (DataEvent.EnrollmentAdded) event;
+            journal.enrolled(added.student.getId(), added.course.getCourseName());
+        } else if (event instanceof DataEvent.EnrollmentRemoved && ((DataEvent.EnrollmentRemoved) event).cause == null) {
+            DataEvent.EnrollmentRemoved removed = (DataEvent.EnrollmentRemoved) event;
+            journal.unenrolled(removed.student.getId(), removed.course.getCourseName());
+        }
+        // Cascaded removals come with a removed student or course, whose replay cascades again
+    }
+
+    private static DataCodec.Snapshot covering(DataCodec.Snapshot state, long sequence) {
+        return new DataCodec.Snapshot(state.students, state.courses, state.enrollments, state.nextStudentId, sequence);
+    }
+
+    // Opens the journal first when it is not open yet, so the snapshot covers its records.
+    // The write is a compaction, so a failure goes to the error handler.
+    @Override
+    public void saveAll(DataCodec.Snapshot snapshot) throws IOException {
+        if (readOnly) throw new IOException("Read-only view of " + dataFile);
+        if (journal == null) replay(DataJournal.IGNORE);
+        DataCodec.Snapshot covered = covering(snapshot, journal.lastSequence());
+        journal.compact(() -> DataCodec.write(dataFile, covered));
+        flushInterruptibly();
+    }
+
+    @Override
+    public void flush() throws InterruptedException, IOException {
+        if (journal != null) journal.flush();
+    }
+
+    private void flushInterruptibly() throws IOException {
+        try {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving " + dataFile);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (journal != null) journal.close();
+    }
+
+    // ----------------- LOOKUPS -----------------
+    @Override
+    public synchronized Student1 student(int id) throws IOException {
+        return lookups().student(id);
+    }
+
+    @Override
+    public synchronized List<Student1> students(int fromId, int toId) throws IOException {
+        return lookups().students(fromId, toId);
+    }
+
+    @Override
+    public synchronized List<String> coursesOf(int studentId) throws IOException {
+        return lookups().coursesOf(studentId);
+    }
+
+    // The view caught up with everything saved so far, or a new one when a compaction
+    // replaced the files; read again should one come while reading
+    private SavedDataView lookups() throws IOException {
+        flushInterruptibly();
+        while (true) {
+            List<Object> files = SavedDataView.identify(dataFile, journalFile);
+            if (lookups != null && lookups.matches(files)) {
+                lookups.catchUp();
+            } else {
+                FileStorageEngine reader = new FileStorageEngine(dataFile, legacyFile, journalFile, compactThreshold, errorHandler, true);
+                lookups = SavedDataView.open(reader.load(new ArrayList<>()), files, journalFile);
+            }
+            if (lookups.matches(SavedDataView.identify(dataFile, journalFile))) return lookups;
+            lookups = null;
+        }
+    }
+
+    // What the files hold now, read on the calling thread. Throws when no generation of
+    // the data file can be read, rather than return the journal's edits alone.
+    private CoachingCenterService readSaved() throws IOException {
+        FileStorageEngine view = new FileStorageEngine(dataFile, legacyFile, journalFile, compactThreshold, errorHandler, true);
+        CoachingCenterService service = CoachingCenterService.read(view);
+        if (view.unreadable != null) throw view.unreadable;
+        return service;
+    }
+}
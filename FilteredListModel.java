@@ -0,0 +1,56 @@
+import java.util.List;
+import java.util.function.Supplier;
+
+// Variant that can show a subset of the backing list, such as search results. While
+// a subset is shown, row events for the backing list do not apply to the rows on
+// screen; they are passed to the change listener instead, which re-runs the filter.
+class FilteredListModel<E> extends ListBackedModel<E> {
+
+    private List<E> matches; // null while unfiltered
+    private Runnable backingChanged = () -> {};
+
+    FilteredListModel(Supplier<List<E>> list) {
+        super(list);
+    }
+
+    void setBackingChangeListener(Runnable listener) {
+        this.backingChanged = listener;
+    }
+
+    boolean isFiltered() { return matches != null; }
+
+    void showMatches(List<E> matches) {
+        this.matches = matches;
+        refresh();
+    }
+
+    void showAll() {
+        if (matches == null) return;
+        matches = null;
+        refresh();
+    }
+
+    @Override
+    public int getSize() { return matches != null ? matches.size() : super.getSize(); }
+
+    @Override
+    public E getElementAt(int index) { return matches != null ? matches.get(index) : super.getElementAt(index); }
+
+    @Override
+    void rowsAdded(int first, int last) {
+        if (matches != null) backingChanged.run();
+        else super.rowsAdded(first, last);
+    }
+
+    @Override
+    void rowsRemoved(int first, int last) {
+        if (matches != null) backingChanged.run();
+        else super.rowsRemoved(first, last);
+    }
+
+    @Override
+    void rowsChanged(int first, int last) {
+        if (matches != null) backingChanged.run();
+        else super.rowsChanged(first, last);
+    }
+}
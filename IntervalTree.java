@@ -0,0 +1,135 @@
+import java.util.function.Predicate;
+
+// -------------- INTERVAL TREE --------------
+// Half-open int intervals [start, end) with a value each, in a treap ordered by
+// start where every node also keeps the largest end below it. An overlap query
+// skips every subtree whose largest end is at or before the query's start and
+// every right subtree starting at or after its end, so it costs O(log n) plus
+// one step per overlap it looks at. Equal intervals may be added any number of
+// times; removal finds an entry by its value's identity. Not thread-safe.
+class IntervalTree<T> {
+
+    private static final class Node<T> {
+        final int start;
+        final int end;
+        final T value;
+        final int priority;
+        int maxEnd;
+        Node<T> left;
+        Node<T> right;
+
+        Node(int start, int end, T value, int priority) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+    }
+
+    private Node<T> root;
+    private int size;
+    private int added; // feeds the priorities, so a tree built the same way has the same shape
+
+    int size() { return size; }
+
+    void add(int start, int end, T value) {
+        if (start >= end) throw new IllegalArgumentException("Empty interval [" + start + ", " + end + ")");
+        root = insert(root, new Node<>(start, end, value, priority(++added)));
+        size++;
+    }
+
+    // Removes one entry with this interval and this very value; false when there is none
+    boolean remove(int start, int end, T value) {
+        int before = size;
+        root = remove(root, start, end, value);
+        return size < before;
+    }
+
+    // The first value, in start order, whose interval overlaps [start, end) and that
+    // accepts; null when there is none
+    T firstOverlap(int start, int end, Predicate<? super T> accept) {
+        return find(root, start, end, accept);
+    }
+
+    // ----------------- TREAP -----------------
+    private Node<T> insert(Node<T> n, Node<T> x) {
+        if (n == null) return x;
+        if (x.start < n.start) {
+            n.left = insert(n.left, x);
+            if (n.left.priority > n.priority) n = rotateRight(n);
+        } else {
+            n.right = insert(n.right, x);
+            if (n.right.priority > n.priority) n = rotateLeft(n);
+        }
+        update(n);
+        return n;
+    }
+
+    // Rotations can put entries with the same start on either side, so both are searched
+    private Node<T> remove(Node<T> n, int start, int end, T value) {
+        if (n == null) return null;
+        if (n.start == start && n.end == end && n.value == value) {
+            size--;
+            return merge(n.left, n.right);
+        }
+        int before = size;
+        if (start <= n.start) n.left = remove(n.left, start, end, value);
+        if (size == before && start >= n.start) n.right = remove(n.right, start, end, value);
+        if (size < before) update(n);
+        return n;
+    }
+
+    // Every entry of a starts no later than every entry of b
+    private Node<T> merge(Node<T> a, Node<T> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private Node<T> rotateRight(Node<T> n) {
+        Node<T> l = n.left;
+        n.left = l.right;
+        l.right = n;
+        update(n);
+        update(l);
+        return l;
+    }
+
+    private Node<T> rotateLeft(Node<T> n) {
+        Node<T> r = n.right;
+        n.right = r.left;
+        r.left = n;
+        update(n);
+        update(r);
+        return r;
+    }
+
+    private static <T> void update(Node<T> n) {
+        int max = n.end;
+        if (n.left != null) max = Math.max(max, n.left.maxEnd);
+        if (n.right != null) max = Math.max(max, n.right.maxEnd);
+        n.maxEnd = max;
+    }
+
+    private static int priority(int sequence) {
+        int h = sequence * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private T find(Node<T> n, int start, int end, Predicate<? super T> accept) {
+        if (n == null || n.maxEnd <= start) return null;
+        T found = find(n.left, start, end, accept);
+        if (found != null) return found;
+        if (n.start >= end) return null; // so does everything to the right
+        if (n.end > start && accept.test(n.value)) return n.value;
+        return find(n.right, start, end, accept);
+    }
+}
@@ -0,0 +1,436 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+// -------------- SQL STORAGE ENGINE --------------
+// Keeps the data in an embedded SQL database in file mode, with its driver on
+// the class path, e.g.
+//   jdbc:h2:file:./coaching_center      (H2)
+//   jdbc:sqlite:coaching_center.db      (SQLite)
+// Only SQL both understand is used. Every committed batch becomes one
+// transaction, written on a writer thread like the journal's, so nothing is
+// ever rewritten in full and there is nothing to replay. Consecutive rows for
+// the same statement go out as one JDBC batch.
+//
+// Once a batch fails, later ones could refer to rows it did not write, so the
+// engine saves nothing more, and flush() and the lookups throw, until
+// saveAll(...) has replaced everything.
+//
+// Courses get a key in the database that also keeps their order; enrollments
+// refer to it, so renaming a course changes one row. Students are looked up by
+// their primary key, courses by a unique index on the name and enrollments by
+// their (student, course) primary key or an index on the course.
+class JdbcStorageEngine implements StorageEngine {
+
+    static final int BATCH_SIZE = 1000; // rows per executeBatch
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS students (id INTEGER PRIMARY KEY, name VARCHAR(1000) NOT NULL,"
+                    + " age INTEGER NOT NULL, contact VARCHAR(1000) NOT NULL, email VARCHAR(1000) NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS courses (id INTEGER PRIMARY KEY, name VARCHAR(1000) NOT NULL,"
+                    + " instructor VARCHAR(1000), sessions VARCHAR(10000))",
+            "CREATE UNIQUE INDEX IF NOT EXISTS courses_by_name ON courses (name)",
+            "CREATE TABLE IF NOT EXISTS enrollments (seq BIGINT NOT NULL, student_id INTEGER NOT NULL,"
+                    + " course_id INTEGER NOT NULL, PRIMARY KEY (student_id, course_id))",
+            "CREATE INDEX IF NOT EXISTS enrollments_by_course ON enrollments (course_id)",
+            "CREATE TABLE IF NOT EXISTS counters (name VARCHAR(100) PRIMARY KEY, next_value BIGINT NOT NULL)"
+    };
+
+    private static final String INSERT_STUDENT = "INSERT INTO students (id, name, age, contact, email) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_STUDENT = "UPDATE students SET name = ?, age = ?, contact = ?, email = ? WHERE id = ?";
+    private static final String DELETE_STUDENT = "DELETE FROM students WHERE id = ?";
+    private static final String INSERT_COURSE = "INSERT INTO courses (id, name, instructor, sessions) VALUES (?, ?, ?, ?)";
+    private static final String RENAME_COURSE = "UPDATE courses SET name = ? WHERE name = ?";
+    private static final String ASSIGN_INSTRUCTOR = "UPDATE courses SET instructor = ? WHERE name = ?";
+    private static final String SCHEDULE_COURSE = "UPDATE courses SET sessions = ? WHERE name = ?";
+    private static final String DELETE_COURSE = "DELETE FROM courses WHERE name = ?";
+    private static final String INSERT_ENROLLMENT = "INSERT INTO enrollments (seq, student_id, course_id) VALUES (?, ?, ?)";
+    private static final String ENROLL = "INSERT INTO enrollments (seq, student_id, course_id) SELECT ?, ?, id FROM courses WHERE name = ?";
+    private static final String UNENROLL = "DELETE FROM enrollments WHERE student_id = ?"
+            + " AND course_id = (SELECT id FROM courses WHERE name = ?)";
+    private static final String DELETE_STUDENT_ENROLLMENTS = "DELETE FROM enrollments WHERE student_id = ?";
+    private static final String DELETE_COURSE_ENROLLMENTS = "DELETE FROM enrollments"
+            + " WHERE course_id = (SELECT id FROM courses WHERE name = ?)";
+    private static final String INSERT_COUNTER = "INSERT INTO counters (name, next_value) VALUES ('student', ?)";
+    private static final String UPDATE_COUNTER = "UPDATE counters SET next_value = ? WHERE name = 'student'";
+    private static final String STUDENT_COLUMNS = "SELECT id, name, age, contact, email FROM students";
+
+    private static final Metrics.Timer WRITE_TIMER = Metrics.timer("sql.write");
+
+    // One parameterized statement to run, with its values captured when the batch was saved
+    private static final class Row {
+        final String sql;
+        final Object[] values;
+
+        Row(String sql, Object... values) {
+            this.sql = sql;
+            this.values = values;
+        }
+    }
+
+    private final String url;
+    private final Consumer<IOException> errorHandler;
+    private final Connection connection; // guarded by this
+    private final Map<String, PreparedStatement> statements = new HashMap<>(); // guarded by this
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sql-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile IOException failure; // the first batch that failed; saveAll(...) clears it
+
+    // Handed out by saveDelta(...) only, under the service's write lock
+    private int nextCourseKey;
+    private long nextEnrollmentSeq;
+    private int nextStudentId;
+
+    JdbcStorageEngine(String url, Consumer<IOException> errorHandler) throws IOException {
+        this.url = url;
+        this.errorHandler = errorHandler;
+        try {
+            connection = DriverManager.getConnection(url);
+            connection.setAutoCommit(false);
+            try (Statement s = connection.createStatement()) {
+                for (String sql : SCHEMA) s.execute(sql);
+                nextCourseKey = (int) longQuery(s, "SELECT MAX(id) FROM courses") + 1;
+                nextEnrollmentSeq = longQuery(s, "SELECT MAX(seq) FROM enrollments") + 1;
+                nextStudentId = (int) Math.max(longQuery(s, "SELECT MAX(id) FROM students") + 1,
+                        longQuery(s, "SELECT MAX(next_value) FROM counters WHERE name = 'student'"));
+                if (longQuery(s, "SELECT COUNT(*) FROM counters") == 0) {
+                    PreparedStatement counter = statement(INSERT_COUNTER);
+                    counter.setLong(1, nextStudentId);
+                    counter.executeUpdate();
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IOException("Could not open " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    // 0 for no rows or NULL
+    private static long longQuery(Statement s, String sql) throws SQLException {
+        try (ResultSet rs = s.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    @Override
+    public synchronized DataCodec.Snapshot load(List<IOException> skipped) throws IOException {
+        try (Statement s = connection.createStatement()) {
+            List<Student1> students = new ArrayList<>();
+            try (ResultSet rs = s.executeQuery(STUDENT_COLUMNS + " ORDER BY id")) {
+                while (rs.next()) students.add(student(rs));
+            }
+            List<Course> courses = new ArrayList<>();
+            Map<Integer, Integer> courseRows = new HashMap<>();
+            try (ResultSet rs = s.executeQuery("SELECT id, name, instructor, sessions FROM courses ORDER BY id")) {
+                while (rs.next()) {
+                    courseRows.put(rs.getInt(1), courses.size());
+                    Course c = new Course(rs.getString(2));
+                    c.setInstructorName(rs.getString(3));
+                    c.setSessions(Timetable.parseAll(rs.getString(4)));
+                    courses.add(c);
+                }
+            }
+            DataCodec.Enrollments enrollments = new DataCodec.Enrollments(students, courses, 0);
+            try (ResultSet rs = s.executeQuery("SELECT student_id, course_id FROM enrollments ORDER BY seq")) {
+                while (rs.next()) enrollments.addPair(rs.getInt(1), courseRows.get(rs.getInt(2)));
+            }
+            connection.commit();
+            return new DataCodec.Snapshot(students, courses, enrollments, nextStudentId, 0);
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new IOException("Could not read " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Student1 student(ResultSet rs) throws SQLException {
+        return new Student1(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getString(4), rs.getString(5));
+    }
+
+    // Every batch was committed when it was saved
+    @Override
+    public void replay(DataJournal.Handler handler) { }
+
+    // ----------------- SAVING -----------------
+    @Override
+    public void saveDelta(List<DataEvent> batch) {
+        if (failure != null) return;
+        List<Row> rows = new ArrayList<>(batch.size());
+        int studentIdBefore = nextStudentId;
+        for (DataEvent event : batch) rows(event, rows);
+        if (nextStudentId != studentIdBefore) rows.add(new Row(UPDATE_COUNTER, (long) nextStudentId));
+        if (rows.isEmpty()) return;
+        writer.execute(() -> {
+            if (failure != null) return;
+            try {
+                write(rows);
+            } catch (SQLException e) {
+                failure = new IOException("Could not save to " + url + ": " + e.getMessage()
+                        + "; later edits are not saved until everything is saved again", e);
+                errorHandler.accept(failure);
+            }
+        });
+    }
+
+    private void rows(DataEvent event, List<Row> rows) {
+        if (event instanceof DataEvent.StudentAdded) {
+            Student1 s = ((DataEvent.StudentAdded) event).student;
+            rows.add(new Row(INSERT_STUDENT, s.getId(), s.getName(), s.getAge(), s.getContactNumber(), s.getEmail()));
+            nextStudentId = Math.max(nextStudentId, s.getId() + 1);
+        } else if (event instanceof DataEvent.StudentUpdated) {
+            Student1 s = ((DataEvent.StudentUpdated) event).student;
+            rows.add(new Row(UPDATE_STUDENT, s.getName(), s.getAge(), s.getContactNumber(), s.getEmail(), s.getId()));
+        } else if (event instanceof DataEvent.StudentRemoved) {
+            int id = ((DataEvent.StudentRemoved) event).student.getId();
+            rows.add(new Row(DELETE_STUDENT_ENROLLMENTS, id));
+            rows.add(new Row(DELETE_STUDENT, id));
+        } else if (event instanceof DataEvent.CourseAdded) {
+            // By name alone, as the journal does; an undo restores the rest with its own events
+            rows.add(new Row(INSERT_COURSE, nextCourseKey++, ((DataEvent.CourseAdded) event).course.getCourseName(), null, null));
+        } else if (event instanceof DataEvent.CourseRenamed) {
+            DataEvent.CourseRenamed renamed = (DataEvent.CourseRenamed) event;
+            rows.add(new Row(RENAME_COURSE, renamed.newName, renamed.oldName));
+        } else if (event instanceof DataEvent.InstructorAssigned) {
+            DataEvent.InstructorAssigned assigned = (DataEvent.InstructorAssigned) event;
+            rows.add(new Row(ASSIGN_INSTRUCTOR, assigned.instructorName, assigned.course.getCourseName()));
+        } else if (event instanceof DataEvent.CourseScheduled) {
+            DataEvent.CourseScheduled scheduled = (DataEvent.CourseScheduled) event;
+            rows.add(new Row(SCHEDULE_COURSE, sessionsText(scheduled.sessions), scheduled.course.getCourseName()));
+        } else if (event instanceof DataEvent.CourseRemoved) {
+            String name = ((DataEvent.CourseRemoved) event).course.getCourseName();
+            rows.add(new Row(DELETE_COURSE_ENROLLMENTS, name));
+            rows.add(new Row(DELETE_COURSE, name));
+        } else if (event instanceof DataEvent.EnrollmentAdded) {
+            DataEvent.EnrollmentAdded added = (DataEvent.EnrollmentAdded) event;
+            rows.add(new Row(ENROLL, nextEnrollmentSeq++, added.student.getId(), added.course.getCourseName()));
+        } else if (event instanceof DataEvent.EnrollmentRemoved && ((DataEvent.EnrollmentRemoved) event).cause == null) {
+            DataEvent.EnrollmentRemoved removed = (DataEvent.EnrollmentRemoved) event;
+            rows.add(new Row(UNENROLL, removed.student.getId(), removed.course.getCourseName()));
+        }
+        // Cascaded removals go with the removed student's or course's rows
+    }
+
+    private static String sessionsText(List<Timetable.Session> sessions) {
+        return sessions.isEmpty() ? null : Timetable.format(sessions);
+    }
+
+    // One transaction; a run of rows for one statement is one JDBC batch
+    private synchronized void write(List<Row> rows) throws SQLException {
+        long start = Metrics.start();
+        try {
+            PreparedStatement pending = null;
+            int pendingRows = 0;
+            for (Row row : rows) {
+                PreparedStatement ps = statement(row.sql);
+                if (pending != null && (pending != ps || pendingRows == BATCH_SIZE)) {
+                    pending.executeBatch();
+                    pendingRows = 0;
+                }
+                for (int i = 0; i < row.values.length; i++) bind(ps, i + 1, row.values[i]);
+                ps.addBatch();
+                pending = ps;
+                pendingRows++;
+            }
+            if (pending != null) pending.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            rollback(e);
+            throw e;
+        }
+        WRITE_TIMER.stop(start);
+    }
+
+    private PreparedStatement statement(String sql) throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+        if (ps == null) {
+            ps = connection.prepareStatement(sql);
+            statements.put(sql, ps);
+        }
+        return ps;
+    }
+
+    private static void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value == null) ps.setNull(index, Types.VARCHAR);
+        else if (value instanceof Integer) ps.setInt(index, (Integer) value);
+        else if (value instanceof Long) ps.setLong(index, (Long) value);
+        else ps.setString(index, (String) value);
+    }
+
+    private void rollback(SQLException cause) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    // One transaction, after every batch handed over so far; rows are streamed in batches
+    // rather than collected. Edits must wait until it returns, as CoachingCenterService.saveAll()
+    // makes them, or those made after the snapshot was taken may be lost.
+    @Override
+    public void saveAll(DataCodec.Snapshot snapshot) throws IOException {
+        try {
+            awaitWriter();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving to " + url);
+        }
+        synchronized (this) {
+            try {
+                try (Statement s = connection.createStatement()) {
+                    for (String table : new String[]{"enrollments", "courses", "students", "counters"}) {
+                        s.executeUpdate("DELETE FROM " + table);
+                    }
+                }
+                PreparedStatement students = statement(INSERT_STUDENT);
+                int n = 0;
+                for (Student1 st : snapshot.students) {
+                    students.setInt(1, st.getId());
+                    students.setString(2, st.getName());
+                    students.setInt(3, st.getAge());
+                    students.setString(4, st.getContactNumber());
+                    students.setString(5, st.getEmail());
+                    students.addBatch();
+                    if (++n % BATCH_SIZE == 0) students.executeBatch();
+                }
+                students.executeBatch();
+
+                PreparedStatement courses = statement(INSERT_COURSE);
+                for (int row = 0; row < snapshot.courses.size(); row++) {
+                    Course c = snapshot.courses.get(row);
+                    bind(courses, 1, row);
+                    bind(courses, 2, c.getCourseName());
+                    bind(courses, 3, c.getInstructorName());
+                    bind(courses, 4, sessionsText(c.getSessions()));
+                    courses.addBatch();
+                    if ((row + 1) % BATCH_SIZE == 0) courses.executeBatch();
+                }
+                courses.executeBatch();
+
+                // Course keys are the rows here, as the snapshot's pairs refer to them
+                PreparedStatement enrollments = statement(INSERT_ENROLLMENT);
+                DataCodec.Enrollments pairs = snapshot.enrollments;
+                for (int i = 0; i < pairs.size(); i++) {
+                    enrollments.setLong(1, i);
+                    enrollments.setInt(2, pairs.studentId(i));
+                    enrollments.setInt(3, pairs.courseRow(i));
+                    enrollments.addBatch();
+                    if ((i + 1) % BATCH_SIZE == 0) enrollments.executeBatch();
+                }
+                enrollments.executeBatch();
+
+                nextCourseKey = snapshot.courses.size();
+                nextEnrollmentSeq = pairs.size();
+                nextStudentId = snapshot.nextStudentId;
+                PreparedStatement counter = statement(INSERT_COUNTER);
+                counter.setLong(1, nextStudentId);
+                counter.executeUpdate();
+                connection.commit();
+                failure = null;
+            } catch (SQLException e) {
+                rollback(e);
+                throw new IOException("Could not save to " + url + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws InterruptedException, IOException {
+        awaitWriter();
+        IOException failed = failure;
+        if (failed != null) throw new IOException(failed.getMessage(), failed);
+    }
+
+    private void awaitWriter() throws InterruptedException {
+        try {
+            writer.submit(() -> { }).get();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            // Nothing was left to wait for
+        }
+    }
+
+    private void flushInterruptibly() throws IOException {
+        try {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving to " + url);
+        }
+    }
+
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                errorHandler.accept(new IOException("Could not close " + url + ": " + e.getMessage(), e));
+            }
+        }
+    }
+
+    // ----------------- LOOKUPS -----------------
+    // Each waits for the batches saved before it, then reads one index; they throw
+    // while a failed batch has left the database behind
+
+    @Override
+    public Student1 student(int id) throws IOException {
+        List<Student1> found = students(STUDENT_COLUMNS + " WHERE id = ?", id);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    @Override
+    public List<Student1> students(int fromId, int toId) throws IOException {
+        return students(STUDENT_COLUMNS + " WHERE id >= ? AND id < ? ORDER BY id", fromId, toId);
+    }
+
+    private List<Student1> students(String sql, int... keys) throws IOException {
+        flushInterruptibly();
+        synchronized (this) {
+            try {
+                PreparedStatement ps = statement(sql);
+                for (int i = 0; i < keys.length; i++) ps.setInt(i + 1, keys[i]);
+                List<Student1> found = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) found.add(student(rs));
+                }
+                connection.commit();
+                return found;
+            } catch (SQLException e) {
+                throw new IOException("Could not read " + url + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public List<String> coursesOf(int studentId) throws IOException {
+        flushInterruptibly();
+        synchronized (this) {
+            try {
+                PreparedStatement ps = statement("SELECT c.name FROM enrollments e JOIN courses c ON c.id = e.course_id"
+                        + " WHERE e.student_id = ? ORDER BY e.seq");
+                ps.setInt(1, studentId);
+                List<String> names = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) names.add(rs.getString(1));
+                }
+                connection.commit();
+                return names;
+            } catch (SQLException e) {
+                throw new IOException("Could not read " + url + ": " + e.getMessage(), e);
+            }
+        }
+    }
+}
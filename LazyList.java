@@ -0,0 +1,105 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+// An ArrayList-like list whose initial rows live in a backing store and are
+// only decoded the first time they are read. Elements added later are held
+// directly; rows that were never touched cost one null slot each.
+// Like ArrayList, structural changes need external locking, but concurrent
+// readers may decode rows safely: a row is decoded once and published with
+// release/acquire semantics, so every reader sees the same instance.
+class LazyList<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int UNLOADED_ROW_OF_ADDED_ELEMENT = -1;
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private final IntFunction<E> loader;
+    private Object[] elements;
+    private int[] rows; // backing row per position, null while no row has moved (appended elements need none)
+    private int size;
+
+    LazyList(int size, IntFunction<E> loader) {
+        this.loader = loader;
+        this.elements = new Object[Math.max(size, 10)];
+        this.size = size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        Object e = SLOT.getAcquire(elements, index);
+        if (e == null) {
+            synchronized (this) {
+                e = elements[index];
+                if (e == null) {
+                    e = loader.apply(rows == null ? index : rows[index]);
+                    SLOT.setRelease(elements, index, e);
+                }
+            }
+        }
+        return (E) e;
+    }
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public E set(int index, E element) {
+        E old = get(index);
+        elements[index] = element;
+        return old;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        Objects.checkIndex(index, size + 1);
+        ensureCapacity(size + 1);
+        if (index < size) {
+            materializeRows();
+            System.arraycopy(elements, index, elements, index + 1, size - index);
+            System.arraycopy(rows, index, rows, index + 1, size - index);
+        }
+        // An appended element is never loaded, so without rows its slot needs no entry
+        elements[index] = element;
+        if (rows != null) rows[index] = UNLOADED_ROW_OF_ADDED_ELEMENT;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E old = get(index);
+        materializeRows();
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+        elements[--size] = null;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(elements, 0, size, null);
+        rows = new int[elements.length];
+        size = 0;
+        modCount++;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= elements.length) return;
+        int capacity = Math.max(minCapacity, elements.length + (elements.length >> 1));
+        elements = Arrays.copyOf(elements, capacity);
+        if (rows != null) rows = Arrays.copyOf(rows, capacity);
+    }
+
+    private void materializeRows() {
+        if (rows != null) return;
+        rows = new int[elements.length];
+        for (int i = 0; i < size; i++) rows[i] = i;
+    }
+}
@@ -0,0 +1,46 @@
+import javax.swing.*;
+import java.util.List;
+import java.util.function.Supplier;
+
+// List model that reads straight from a domain list instead of holding a copy,
+// so a lazily decoded list only decodes the rows Swing actually paints. Callers
+// change the list themselves and then report exactly which rows they touched.
+class ListBackedModel<E> extends AbstractListModel<E> {
+
+    private final Supplier<List<E>> list;
+    private int shownSize;
+
+    ListBackedModel(Supplier<List<E>> list) {
+        this.list = list;
+    }
+
+    @Override
+    public int getSize() { return list.get().size(); }
+
+    @Override
+    public E getElementAt(int index) { return list.get().get(index); }
+
+    void rowsAdded(int first, int last) {
+        shownSize += last - first + 1;
+        fireIntervalAdded(this, first, last);
+    }
+
+    void rowsRemoved(int first, int last) {
+        shownSize -= last - first + 1;
+        fireIntervalRemoved(this, first, last);
+    }
+
+    void rowsChanged(int first, int last) {
+        if (last >= first) fireContentsChanged(this, first, last);
+    }
+
+    // Full resync after the backing list was replaced, e.g. by a load; at most three events
+    void refresh() {
+        int size = getSize();
+        int common = Math.min(size, shownSize);
+        if (size < shownSize) fireIntervalRemoved(this, size, shownSize - 1);
+        if (size > shownSize) fireIntervalAdded(this, shownSize, size - 1);
+        if (common > 0) fireContentsChanged(this, 0, common - 1);
+        shownSize = size;
+    }
+}
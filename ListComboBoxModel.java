@@ -0,0 +1,45 @@
+import javax.swing.*;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Combo box variant sharing the same backing list. Like DefaultComboBoxModel, the
+// first row is selected when the box gains its first item or loses its selected one.
+class ListComboBoxModel<E> extends ListBackedModel<E> implements ComboBoxModel<E> {
+
+    private Object selectedItem;
+
+    ListComboBoxModel(Supplier<List<E>> list) {
+        super(list);
+    }
+
+    @Override
+    public void setSelectedItem(Object item) {
+        if (item == selectedItem) return;
+        selectedItem = item;
+        fireContentsChanged(this, -1, -1);
+    }
+
+    @Override
+    public Object getSelectedItem() { return selectedItem; }
+
+    @Override
+    void rowsAdded(int first, int last) {
+        super.rowsAdded(first, last);
+        if (selectedItem == null) selectFirst();
+    }
+
+    void rowRemoved(int index, E removed) {
+        rowsRemoved(index, index);
+        if (selectedItem == removed) selectFirst();
+    }
+
+    @Override
+    void refresh() {
+        super.refresh();
+        selectFirst();
+    }
+
+    private void selectFirst() {
+        setSelectedItem(getSize() > 0 ? getElementAt(0) : null);
+    }
+}
@@ -0,0 +1,106 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+
+// -------------- LIVE SEARCH --------------
+// Filters a list as the user types. A pause in typing starts one query off the
+// EDT; a newer query cancels the one still running, and only the latest result
+// reaches the list. Edits to the data while a filter is shown re-run it the same way.
+class LiveSearch<E> {
+
+    private static final int DEBOUNCE_MS = 150;
+
+    interface Query<E> {
+        List<E> run(String text, BooleanSupplier cancelled);
+    }
+
+    private final JTextField field;
+    private final JList<E> list;
+    private final FilteredListModel<E> model;
+    private final Query<E> query;
+    private final Timer debounce;
+    private SwingWorker<List<E>, Void> running;
+    private boolean warmedUp;
+
+    LiveSearch(JTextField field, JList<E> list, FilteredListModel<E> model, Query<E> query) {
+        this.field = field;
+        this.list = list;
+        this.model = model;
+        this.query = query;
+        debounce = new Timer(DEBOUNCE_MS, e -> start());
+        debounce.setRepeats(false);
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { requery(); }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) { requery(); }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) { requery(); }
+        });
+        model.setBackingChangeListener(this::requery);
+        // The search index is built by the first query; start it as soon as the user heads for the box
+        field.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) { warmUp(); }
+        });
+    }
+
+    // Runs the current text again after the debounce delay, e.g. once the data was replaced
+    void requery() {
+        debounce.restart();
+    }
+
+    private void start() {
+        if (running != null) running.cancel(false);
+        running = null;
+        String text = field.getText().trim();
+        if (text.isEmpty()) {
+            if (model.isFiltered()) {
+                list.clearSelection();
+                model.showAll();
+            }
+            return;
+        }
+
+        running = new SwingWorker<List<E>, Void>() {
+            @Override
+            protected List<E> doInBackground() {
+                return query.run(text, this::isCancelled);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || running != this) return;
+                running = null;
+                try {
+                    List<E> matches = get();
+                    list.clearSelection();
+                    model.showMatches(matches);
+                } catch (InterruptedException | ExecutionException e) {
+                    // The list keeps showing the previous results
+                }
+            }
+        };
+        running.execute();
+    }
+
+    private void warmUp() {
+        if (warmedUp) return;
+        warmedUp = true;
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                query.run("", () -> false);
+                return null;
+            }
+        }.execute();
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+// -------------- SERVER LOAD GENERATOR --------------
+// Drives a CoachingCenterServer with many concurrent clients and reports
+// throughput and latency percentiles. Each client runs a mix that is mostly
+// lookups and searches with some adds, updates and enrollments, over its own
+// connection.
+//
+//   java LoadGenerator host port [clients] [seconds]
+//   java LoadGenerator --embedded [clients] [seconds]   (in-memory server on localhost)
+class LoadGenerator {
+
+    private static final int SEED_STUDENTS = 10_000;
+    private static final int SEED_COURSES = 50;
+    private static final String[] QUERIES = {"ri", "mai", "son", "017", "ana", "xyz", "@ex"};
+
+    public static void main(String[] args) throws Exception {
+        boolean embedded = args.length > 0 && args[0].equals("--embedded");
+        int at = embedded ? 1 : 2;
+        if (!embedded && args.length < 2) {
+            System.err.println("Usage: LoadGenerator host port [clients] [seconds] | --embedded [clients] [seconds]");
+            System.exit(2);
+        }
+        int clients = args.length > at ? Integer.parseInt(args[at]) : 32;
+        int seconds = args.length > at + 1 ? Integer.parseInt(args[at + 1]) : 10;
+
+        CoachingCenterServer server = null;
+        String host = embedded ? "localhost" : args[0];
+        int port;
+        if (embedded) {
+            server = new CoachingCenterServer(new CoachingCenterService(), 0, Runtime.getRuntime().availableProcessors());
+            server.start();
+            port = server.port();
+        } else {
+            port = Integer.parseInt(args[1]);
+        }
+
+        try {
+            seed(host, port);
+            run(host, port, clients, seconds);
+        } finally {
+            if (server != null) server.close();
+        }
+    }
+
+    // Makes sure there is something to read; existing data on a real server is left alone
+    private static void seed(String host, int port) throws IOException {
+        try (CoachingCenterClient client = new CoachingCenterClient(host, port)) {
+            CoachingCenterClient.State state = client.snapshot();
+            Random random = new Random(42);
+            for (int i = state.snapshot.students.size(); i < SEED_STUDENTS; i++) {
+                client.addStudent(name(random), 18 + random.nextInt(30), "017" + (10_000_000 + random.nextInt(90_000_000)),
+                        "user" + i + "@example.com");
+            }
+            for (int i = state.snapshot.courses.size(); i < SEED_COURSES; i++) {
+                client.addCourse("Load Course " + i + "-" + random.nextInt(1_000_000));
+            }
+        }
+    }
+
+    private static void run(String host, int port, int clients, int seconds) throws Exception {
+        List<Course> courses;
+        int maxId;
+        try (CoachingCenterClient client = new CoachingCenterClient(host, port)) {
+            DataCodec.Snapshot snapshot = client.snapshot().snapshot;
+            courses = snapshot.courses;
+            maxId = snapshot.nextStudentId - 1;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            long seed = c;
+            results.add(pool.submit(() -> work(host, port, courses, maxId, seed, deadline)));
+        }
+
+        long[] all = new long[0];
+        int total = 0;
+        for (Future<long[]> f : results) {
+            long[] latencies = f.get();
+            if (total + latencies.length > all.length) all = Arrays.copyOf(all, Math.max(all.length * 2, total + latencies.length));
+            System.arraycopy(latencies, 0, all, total, latencies.length);
+            total += latencies.length;
+        }
+        pool.shutdown();
+
+        long[] sorted = Arrays.copyOf(all, total);
+        Arrays.sort(sorted);
+        System.out.printf("%d clients, %d s: %d requests, %.0f requests/s%n", clients, seconds, total, total / (double) seconds);
+        System.out.printf("latency p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                millis(sorted, 0.50), millis(sorted, 0.99), millis(sorted, 0.999), sorted.length == 0 ? 0 : sorted[total - 1] / 1e6);
+    }
+
+    // One client's loop; returns the latency of every request in nanoseconds
+    private static long[] work(String host, int port, List<Course> courses, int maxId, long seed, long deadline) throws IOException {
+        Random random = new Random(seed);
+        long[] latencies = new long[1 << 16];
+        int count = 0;
+        try (CoachingCenterClient client = new CoachingCenterClient(host, port)) {
+            while (System.nanoTime() < deadline) {
+                int roll = random.nextInt(100);
+                long start = System.nanoTime();
+                try {
+                    if (roll < 50) {
+                        client.getStudent(1 + random.nextInt(maxId));
+                    } else if (roll < 75) {
+                        client.searchStudents(QUERIES[random.nextInt(QUERIES.length)], 50);
+                    } else if (roll < 80) {
+                        client.changeCount();
+                    } else if (roll < 90) {
+                        Student1 s = client.getStudent(1 + random.nextInt(maxId));
+                        if (s != null) client.updateStudent(s.getId(), s.getVersion(), name(random), s.getAge(),
+                                s.getContactNumber(), s.getEmail());
+                    } else if (roll < 95) {
+                        client.addStudent(name(random), 20, "01700000000", "load@example.com");
+                    } else if (!courses.isEmpty()) {
+                        client.enroll(1 + random.nextInt(maxId), courses.get(random.nextInt(courses.size())).getCourseName());
+                    }
+                } catch (IllegalArgumentException | ConcurrentModificationException e) {
+                    // Duplicate enrollments and lost update races are expected refusals
+                }
+                if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+                latencies[count++] = System.nanoTime() - start;
+            }
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * quantile))] / 1e6;
+    }
+
+    private static String name(Random random) {
+        String[] first = {"Riya", "Maya", "Anan", "Henri", "Sara", "Tom", "Nila", "Omar"};
+        String[] last = {"Sen", "Roy", "Das", "Khan", "Hudson", "Mai", "Ali", "Ray"};
+        return first[random.nextInt(first.length)] + " " + last[random.nextInt(last.length)];
+    }
+}
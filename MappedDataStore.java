@@ -0,0 +1,142 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// -------------- MEMORY-MAPPED DATA FILE --------------
+// Read-only view over a version 2, 3 or 4 data file. Opening it maps the file,
+// checks a version 3 or 4 file's checksums in one sequential pass over the mapped
+// bytes, and reads the enrollment pairs, which are plain ints; each student or
+// course row is decoded the first time something asks for it. Snapshots are
+// always written to a new file and moved into place, so a mapping stays valid
+// after later compactions.
+class MappedDataStore {
+
+    private static final String[] SECTIONS = {"students", "courses", "enrollments", "string heap"};
+
+    private final MappedByteBuffer buffer;
+    private final int nextStudentId;
+    private final long journalSequence;
+    private final int studentCount;
+    private final int courseCount;
+    private final int enrollmentCount;
+    private final int courseRecordSize; // versions before 4 have no sessions
+    private final int studentsOffset;
+    private final int coursesOffset;
+    private final int enrollmentsOffset;
+    private final int heapOffset;
+
+    // One shared instance per row, so every reader sees the same objects
+    private final Student1[] studentRows;
+    private final Course[] courseRows;
+
+    private MappedDataStore(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < DataCodec.HEADER_SIZE_2 || buffer.getInt(0) != DataCodec.MAGIC) {
+            throw new IOException("Not a coaching center data file");
+        }
+        short version = buffer.getShort(4);
+        boolean checksummed = version >= DataCodec.VERSION_3;
+        courseRecordSize = version >= DataCodec.VERSION ? DataCodec.COURSE_RECORD_SIZE : DataCodec.COURSE_RECORD_SIZE_3;
+        studentsOffset = checksummed ? DataCodec.HEADER_SIZE : DataCodec.HEADER_SIZE_2;
+        if (checksummed) {
+            if (buffer.capacity() < DataCodec.HEADER_SIZE
+                    || crc(0, DataCodec.HEADER_CRC_OFFSET) != buffer.getInt(DataCodec.HEADER_CRC_OFFSET)) {
+                throw new IOException("Data file header is damaged");
+            }
+        }
+        nextStudentId = buffer.getInt(8);
+        journalSequence = buffer.getLong(12);
+        studentCount = buffer.getInt(20);
+        courseCount = buffer.getInt(24);
+        enrollmentCount = buffer.getInt(28);
+
+        long courses = studentsOffset + (long) studentCount * DataCodec.STUDENT_RECORD_SIZE;
+        long enrollments = courses + (long) courseCount * courseRecordSize;
+        long heap = enrollments + (long) enrollmentCount * DataCodec.ENROLLMENT_RECORD_SIZE;
+        if (studentCount < 0 || courseCount < 0 || enrollmentCount < 0 || heap > buffer.capacity()) {
+            throw new IOException("Data file is truncated");
+        }
+        coursesOffset = (int) courses;
+        enrollmentsOffset = (int) enrollments;
+        heapOffset = (int) heap;
+        if (checksummed) verify();
+
+        studentRows = new Student1[studentCount];
+        courseRows = new Course[courseCount];
+    }
+
+    // The sections lie back to back, so this reads the file once from start to end
+    private void verify() throws IOException {
+        int[] bounds = {studentsOffset, coursesOffset, enrollmentsOffset, heapOffset, buffer.capacity()};
+        for (int section = 0; section < SECTIONS.length; section++) {
+            int expected = buffer.getInt(DataCodec.SECTION_CRCS_OFFSET + 4 * section);
+            if (crc(bounds[section], bounds[section + 1]) != expected) {
+                throw new IOException("Data file is damaged: " + SECTIONS[section] + " checksum mismatch");
+            }
+        }
+    }
+
+    private int crc(int from, int to) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(from, to - from));
+        return (int) crc.getValue();
+    }
+
+    static MappedDataStore open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Data file too large to map");
+            return new MappedDataStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Lists over the mapped rows; no student or course is decoded until it is read.
+    // An enrollment's student id is read from the student record without decoding it.
+    DataCodec.Snapshot snapshot() {
+        List<Student1> students = new LazyList<>(studentCount, this::student);
+        List<Course> courses = new LazyList<>(courseCount, this::course);
+        DataCodec.Enrollments enrollments = new DataCodec.Enrollments(students, courses, enrollmentCount);
+        for (int row = 0; row < enrollmentCount; row++) {
+            int at = enrollmentsOffset + row * DataCodec.ENROLLMENT_RECORD_SIZE;
+            int studentRow = buffer.getInt(at);
+            enrollments.addPair(buffer.getInt(studentsOffset + studentRow * DataCodec.STUDENT_RECORD_SIZE),
+                    buffer.getInt(at + 4));
+        }
+        return new DataCodec.Snapshot(students, courses, enrollments, nextStudentId, journalSequence);
+    }
+
+    // Synchronized so concurrent readers share one instance per row
+    synchronized Student1 student(int row) {
+        Student1 s = studentRows[row];
+        if (s == null) {
+            int at = studentsOffset + row * DataCodec.STUDENT_RECORD_SIZE;
+            s = new Student1(buffer.getInt(at), string(buffer.getInt(at + 8)), buffer.getInt(at + 4),
+                    string(buffer.getInt(at + 12)), string(buffer.getInt(at + 16)));
+            studentRows[row] = s;
+        }
+        return s;
+    }
+
+    synchronized Course course(int row) {
+        Course c = courseRows[row];
+        if (c == null) {
+            int at = coursesOffset + row * courseRecordSize;
+            c = new Course(string(buffer.getInt(at)));
+            c.setInstructorName(string(buffer.getInt(at + 4)));
+            if (courseRecordSize > DataCodec.COURSE_RECORD_SIZE_3) c.setSessions(Timetable.parseAll(string(buffer.getInt(at + 8))));
+            courseRows[row] = c;
+        }
+        return c;
+    }
+
+    private String string(int offset) {
+        if (offset == DataCodec.NO_STRING) return null;
+        int at = heapOffset + offset;
+        byte[] bytes = new byte[buffer.getInt(at)];
+        buffer.get(at + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
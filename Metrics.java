@@ -0,0 +1,331 @@
+import javax.management.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// -------------- METRICS --------------
+// Latency histograms and counters for the slow paths: loads, saves, journal
+// writes, view refreshes, EDT events. Each class keeps its own timers and
+// counters as constants, registered here by name:
+//
+//     long start = Metrics.start();
+//     ...
+//     SAVE_TIMER.stop(start);
+//
+// Switched off (the default) every call costs one volatile read. Switched on, a
+// timing costs two nanoTime calls and a few uncontended adds; histograms have
+// power-of-two buckets, so percentiles are upper bounds within a factor of two.
+//
+// -Dcoachingcenter.metrics=true switches them on at startup, also registering the
+// MBean and starting the periodic dump: CSV rows appended to the file named by
+// -Dcoachingcenter.metrics.csv, or a summary on stderr, every
+// -Dcoachingcenter.metrics.interval seconds (60).
+final class Metrics {
+
+    static final String OBJECT_NAME = "CoachingCenter:type=Metrics";
+    private static final String CSV_HEADER = "time,metric,count,total_ms,mean_ms,p50_ms,p90_ms,p99_ms,max_ms";
+    private static final int BUCKETS = 64; // bucket b counts durations below 2^b ns
+
+    private static volatile boolean enabled;
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    static boolean isEnabled() { return enabled; }
+
+    static void setEnabled(boolean on) { enabled = on; }
+
+    // A start time for Timer.stop, or 0 when metrics are off
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    static Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    static void reset() {
+        timers.values().forEach(Timer::reset);
+        counters.values().forEach(Counter::reset);
+    }
+
+    // ----------------- TIMERS -----------------
+    static final class Timer {
+        final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        // Records the time since start; does nothing for a start taken while metrics were off
+        void stop(long start) {
+            if (start != 0) record(System.nanoTime() - start);
+        }
+
+        void record(long nanos) {
+            if (!enabled) return;
+            nanos = Math.max(nanos, 0);
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            buckets.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1));
+        }
+
+        long count() { return count.sum(); }
+
+        double totalMillis() { return totalNanos.sum() / 1e6; }
+
+        double meanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+        }
+
+        double maxMillis() { return maxNanos.get() / 1e6; }
+
+        // Upper bound of the bucket holding the p-th fraction of the samples, capped at the maximum
+        double percentileMillis(double p) {
+            long[] counts = new long[BUCKETS];
+            long n = 0;
+            for (int b = 0; b < BUCKETS; b++) n += counts[b] = buckets.get(b);
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p * n));
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts[b];
+                if (seen >= rank) return Math.min(Math.scalb(1.0, b), maxNanos.get()) / 1e6;
+            }
+            return maxMillis();
+        }
+
+        private void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            for (int b = 0; b < BUCKETS; b++) buckets.set(b, 0);
+        }
+    }
+
+    // ----------------- COUNTERS -----------------
+    static final class Counter {
+        final String name;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        void increment() {
+            if (enabled) value.increment();
+        }
+
+        void add(long amount) {
+            if (enabled) value.add(amount);
+        }
+
+        long get() { return value.sum(); }
+
+        private void reset() { value.reset(); }
+    }
+
+    // Counts committed changes per event type: mutations.StudentAdded and so on
+    private static final ClassValue<Counter> EVENT_COUNTERS = new ClassValue<Counter>() {
+        @Override
+        protected Counter computeValue(Class<?> type) {
+            return counter("mutations." + type.getSimpleName());
+        }
+    };
+
+    static void countEvents(List<DataEvent> batch) {
+        if (!enabled) return;
+        for (DataEvent event : batch) EVENT_COUNTERS.get(event.getClass()).increment();
+    }
+
+    // ----------------- DUMPS -----------------
+    // One CSV row per metric, in name order; counters fill in only the count
+    static void writeCsv(Writer out, boolean header) throws IOException {
+        String time = Instant.now().toString();
+        if (header) out.write(CSV_HEADER + "\n");
+        for (Timer t : new TreeMap<>(timers).values()) {
+            out.write(String.format(Locale.ROOT, "%s,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f\n", time, t.name, t.count(),
+                    t.totalMillis(), t.meanMillis(), t.percentileMillis(0.5), t.percentileMillis(0.9),
+                    t.percentileMillis(0.99), t.maxMillis()));
+        }
+        for (Counter c : new TreeMap<>(counters).values()) {
+            out.write(time + "," + c.name + "," + c.get() + ",,,,,,\n");
+        }
+    }
+
+    // Human-readable lines for the log; metrics that saw nothing are left out
+    static String summary() {
+        StringBuilder s = new StringBuilder("Metrics:");
+        for (Timer t : new TreeMap<>(timers).values()) {
+            if (t.count() == 0) continue;
+            s.append(String.format(Locale.ROOT, "%n  %-28s %8d x  mean %9.3f ms  p99 %9.3f ms  max %9.3f ms",
+                    t.name, t.count(), t.meanMillis(), t.percentileMillis(0.99), t.maxMillis()));
+        }
+        for (Counter c : new TreeMap<>(counters).values()) {
+            if (c.get() != 0) s.append(String.format(Locale.ROOT, "%n  %-28s %8d", c.name, c.get()));
+        }
+        return s.toString();
+    }
+
+    // Appends a dump to csv, or logs a summary to stderr when csv is null, every period
+    static synchronized void startDumps(File csv, long periodSeconds) {
+        if (dumper != null) dumper.shutdownNow();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            if (csv == null) {
+                System.err.println(summary());
+                return;
+            }
+            boolean header = !csv.exists() || csv.length() == 0;
+            try (Writer out = new BufferedWriter(new FileWriter(csv, true))) {
+                writeCsv(out, header);
+            } catch (IOException e) {
+                System.err.println("Could not write metrics to " + csv + ": " + e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    // Reads the coachingcenter.metrics.* properties; called once by each main()
+    static void configureFromSystemProperties() {
+        if (!Boolean.getBoolean("coachingcenter.metrics")) return;
+        setEnabled(true);
+        registerMBean();
+        String csv = System.getProperty("coachingcenter.metrics.csv");
+        startDumps(csv != null ? new File(csv) : null, Long.getLong("coachingcenter.metrics.interval", 60));
+    }
+
+    // ----------------- JMX -----------------
+    static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(new MBean(), name);
+        } catch (JMException e) {
+            System.err.println("Could not register the metrics MBean: " + e.getMessage());
+        }
+    }
+
+    // Dynamic, since metrics appear as the code first uses them: an attribute per counter
+    // and per timer statistic ("data.save.p99Millis"), plus Enabled and a few operations
+    static final class MBean implements DynamicMBean {
+        private static final String[] TIMER_STATS = {"count", "meanMillis", "p50Millis", "p99Millis", "maxMillis"};
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            if (attribute.equals("Enabled")) return enabled;
+            Counter c = counters.get(attribute);
+            if (c != null) return c.get();
+            int dot = attribute.lastIndexOf('.');
+            Timer t = dot < 0 ? null : timers.get(attribute.substring(0, dot));
+            if (t != null) {
+                switch (attribute.substring(dot + 1)) {
+                    case "count": return t.count();
+                    case "meanMillis": return t.meanMillis();
+                    case "p50Millis": return t.percentileMillis(0.5);
+                    case "p99Millis": return t.percentileMillis(0.99);
+                    case "maxMillis": return t.maxMillis();
+                    default: break;
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException {
+            if (!attribute.getName().equals("Enabled")) throw new AttributeNotFoundException(attribute.getName());
+            if (!(attribute.getValue() instanceof Boolean)) throw new InvalidAttributeValueException("Enabled is a boolean");
+            setEnabled((Boolean) attribute.getValue());
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String a : attributes) {
+                try {
+                    list.add(new Attribute(a, getAttribute(a)));
+                } catch (AttributeNotFoundException e) {
+                    // Left out, as the interface expects
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            AttributeList set = new AttributeList();
+            for (Attribute a : attributes.asList()) {
+                try {
+                    setAttribute(a);
+                    set.add(a);
+                } catch (JMException e) {
+                    // Left out, as the interface expects
+                }
+            }
+            return set;
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+            switch (action) {
+                case "reset":
+                    reset();
+                    return null;
+                case "summary":
+                    return summary();
+                case "recentStalls":
+                    return EdtStallDetector.recentStalls().stream().map(EdtStallDetector.Stall::toString).toArray(String[]::new);
+                default:
+                    throw new ReflectionException(new NoSuchMethodException(action));
+            }
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            attributes.add(new MBeanAttributeInfo("Enabled", "boolean", "Whether metrics are recorded", true, true, true));
+            for (String name : new TreeSet<>(timers.keySet())) {
+                for (String stat : TIMER_STATS) {
+                    String type = stat.equals("count") ? "long" : "double";
+                    attributes.add(new MBeanAttributeInfo(name + "." + stat, type, stat + " of " + name, true, false, false));
+                }
+            }
+            for (String name : new TreeSet<>(counters.keySet())) {
+                attributes.add(new MBeanAttributeInfo(name, "long", name, true, false, false));
+            }
+            MBeanOperationInfo[] operations = {
+                    new MBeanOperationInfo("reset", "Zeroes every metric", new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION),
+                    new MBeanOperationInfo("summary", "Every metric as text", new MBeanParameterInfo[0], "java.lang.String", MBeanOperationInfo.INFO),
+                    new MBeanOperationInfo("recentStalls", "The latest EDT stalls with their stacks", new MBeanParameterInfo[0],
+                            "[Ljava.lang.String;", MBeanOperationInfo.INFO),
+            };
+            return new MBeanInfo(getClass().getName(), "Coaching center metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, operations, null);
+        }
+    }
+}
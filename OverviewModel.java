@@ -0,0 +1,85 @@
+import javax.swing.*;
+import java.util.List;
+import java.util.function.Supplier;
+
+// -------------- OVERVIEW ROWS --------------
+// The Overview tab as a list of rows rendered on demand: a header and either
+// the entries or an "empty" line for each of students, courses and enrollments.
+// A JList with a fixed cell height only asks for the rows it paints, so the cost
+// of a repaint follows what is on screen rather than the size of the data.
+class OverviewModel extends AbstractListModel<String> {
+
+    private static final String[] HEADERS = {"=== STUDENTS ===", "=== COURSES ===", "=== ENROLLMENTS ==="};
+    private static final String[] EMPTY = {"No students registered.", "No courses added.", "No enrollments yet."};
+
+    private final Supplier<List<Student1>> students;
+    private final Supplier<List<Course>> courses;
+    private final Supplier<List<Enrollment>> enrollments;
+
+    // Section sizes listeners were last told about
+    private final int[] shownSizes = new int[3];
+
+    OverviewModel(Supplier<List<Student1>> students, Supplier<List<Course>> courses,
+                  Supplier<List<Enrollment>> enrollments) {
+        this.students = students;
+        this.courses = courses;
+        this.enrollments = enrollments;
+    }
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (int section = 0; section < 3; section++) size += sectionRows(section);
+        return size;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        for (int section = 0; section < 3; section++) {
+            int rows = sectionRows(section);
+            if (index < rows) return render(section, index);
+            index -= rows;
+        }
+        throw new IndexOutOfBoundsException();
+    }
+
+    // Rows in a section: optional blank separator, header, then entries or the "empty" line
+    private int sectionRows(int section) {
+        return (section > 0 ? 1 : 0) + 1 + Math.max(1, entryCount(section));
+    }
+
+    private int entryCount(int section) {
+        switch (section) {
+            case 0: return students.get().size();
+            case 1: return courses.get().size();
+            default: return enrollments.get().size();
+        }
+    }
+
+    private String render(int section, int row) {
+        if (section > 0 && row-- == 0) return "";
+        if (row-- == 0) return HEADERS[section];
+        if (entryCount(section) == 0) return EMPTY[section];
+        switch (section) {
+            case 0: return students.get().get(row).detailedString();
+            case 1: return courses.get().get(row).detailedString();
+            default: return enrollments.get().get(row).toString();
+        }
+    }
+
+    // Reports each section's growth or shrinkage at its end and marks its rows changed,
+    // so JList re-renders only the changed rows that are actually visible.
+    void refresh() {
+        int start = 0;
+        for (int section = 0; section < 3; section++) {
+            int rows = sectionRows(section);
+            int shown = shownSizes[section];
+            if (rows > shown) fireIntervalAdded(this, start + shown, start + rows - 1);
+            if (rows < shown) fireIntervalRemoved(this, start + rows, start + shown - 1);
+            int common = Math.min(rows, shown);
+            if (common > 0) fireContentsChanged(this, start, start + common - 1);
+            shownSizes[section] = rows;
+            start += rows;
+        }
+    }
+}
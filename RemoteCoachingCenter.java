@@ -0,0 +1,406 @@
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+// -------------- REMOTE DATA --------------
+// The frame's view of data served by a CoachingCenterServer. Reads and searches
+// are answered from a local copy (an in-memory CoachingCenterService); every
+// change goes to the server first and is applied to the copy once the server
+// has accepted it, with the ids and versions the server assigned. Edits carry
+// the version the user saw, so the server refuses to overwrite someone else's
+// newer change. Changes made by other users arrive through fetchIfChanged()
+// and install(), which apply the server's change records to the copy; only when
+// the server's log no longer reaches back to the copy is the copy replaced as a
+// whole, which publishes Reloaded. The copy's events are passed on through events().
+//
+// The copy's change count says which of the server's changes it has. An edit
+// made while the copy was current moves the count past the edit, so the copy
+// does not fetch its own changes back.
+//
+// Like the service's list views, the copy belongs to the thread making the
+// changes (the EDT); fetchIfChanged() may run on any thread.
+class RemoteCoachingCenter implements CoachingCenter {
+
+    // What changed on the server since the copy's change count: change records, or a fresh copy
+    static final class Update {
+        final long since;
+        final long changeCount;
+        final byte[] changes;
+        final CoachingCenterService data; // non-null for a fresh copy
+
+        Update(long since, long changeCount, byte[] changes, CoachingCenterService data) {
+            this.since = since;
+            this.changeCount = changeCount;
+            this.changes = changes;
+            this.data = data;
+        }
+    }
+
+    private final CoachingCenterClient client;
+    private final DataEventBus events = new DataEventBus();
+    private final DataEventBus.Listener forwarder = batch -> {
+        for (DataEvent e : batch) events.publish(e);
+        events.commit();
+    };
+    private volatile CoachingCenterService data;
+    private volatile long changeCount;
+
+    private RemoteCoachingCenter(CoachingCenterClient client, CoachingCenterClient.State state) {
+        this.client = client;
+        this.data = CoachingCenterService.fromSnapshot(state.snapshot);
+        this.changeCount = state.changeCount;
+        data.events().subscribe(forwarder);
+        client.onEdit((before, after) -> {
+            if (changeCount == before) changeCount = after;
+        });
+    }
+
+    static RemoteCoachingCenter connect(String host, int port) throws IOException {
+        CoachingCenterClient client = new CoachingCenterClient(host, port);
+        try {
+            return new RemoteCoachingCenter(client, client.snapshot());
+        } catch (IOException | RuntimeException e) {
+            client.close();
+            throw e;
+        }
+    }
+
+    // ----------------- SYNCHRONIZATION -----------------
+    // The server's changes since the copy's count, or null when there are none
+    Update fetchIfChanged() {
+        try {
+            long since = changeCount;
+            CoachingCenterClient.Changes changes = client.changesSince(since);
+            if (changes.changeCount == since) return null;
+            if (changes.records != null) return new Update(since, changes.changeCount, changes.records, null);
+            CoachingCenterClient.State state = client.snapshot();
+            return new Update(since, state.changeCount, null, CoachingCenterService.fromSnapshot(state.snapshot));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // False, and nothing changes, when an edit moved the copy's count since the update was
+    // fetched; the update may predate the edit then, and the next fetch starts after it
+    boolean install(Update update) {
+        if (update.since != changeCount) return false;
+        if (update.data != null) {
+            data.events().unsubscribe(forwarder);
+            data = update.data;
+            data.events().subscribe(forwarder);
+            events.publish(new DataEvent.Reloaded());
+            events.commit();
+        } else {
+            // One transaction, so the views get the changes as one batch
+            data.transaction(() -> {
+                try {
+                    WireProtocol.readChanges(new DataInputStream(new ByteArrayInputStream(update.changes)), applier);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        }
+        changeCount = update.changeCount;
+        return true;
+    }
+
+    // Records the copy already has, e.g. its own edits made while it was behind, change nothing
+    private final WireProtocol.ChangeHandler applier = new WireProtocol.ChangeHandler() {
+        @Override
+        public void studentPut(Student1 s) {
+            putStudent(s);
+        }
+
+        @Override
+        public void studentRemoved(int id) {
+            if (data.findStudent(id) != null) data.removeStudent(id);
+        }
+
+        @Override
+        public void coursePut(String currentName, Course c) {
+            if (currentName == null || data.findCourse(currentName) == null) currentName = c.getCourseName();
+            putCourse(currentName, c);
+        }
+
+        @Override
+        public void courseRemoved(String courseName) {
+            if (data.findCourse(courseName) != null) data.removeCourse(courseName);
+        }
+
+        @Override
+        public void enrolled(int studentId, String courseName) {
+            data.putEnrollment(studentId, courseName, true);
+        }
+
+        @Override
+        public void unenrolled(int studentId, String courseName) {
+            data.putEnrollment(studentId, courseName, false);
+        }
+    };
+
+    private CoachingCenterService data() {
+        return data;
+    }
+
+    @Override
+    public IOException getLoadError() { return null; }
+
+    @Override
+    public DataEventBus events() { return events; }
+
+    // ----------------- READS -----------------
+    @Override
+    public List<Student1> getStudents() { return data().getStudents(); }
+
+    @Override
+    public List<Course> getCourses() { return data().getCourses(); }
+
+    @Override
+    public List<Enrollment> getEnrollments() { return data().getEnrollments(); }
+
+    @Override
+    public int indexOfStudent(int id) { return data().indexOfStudent(id); }
+
+    @Override
+    public int indexOfCourse(String courseName) { return data().indexOfCourse(courseName); }
+
+    @Override
+    public List<Enrollment> enrollmentsOf(int studentId) { return data().enrollmentsOf(studentId); }
+
+    @Override
+    public List<Enrollment> rosterOf(String courseName) { return data().rosterOf(courseName); }
+
+    @Override
+    public List<Student1> searchStudents(String query, BooleanSupplier cancelled) {
+        return data().searchStudents(query, cancelled);
+    }
+
+    @Override
+    public List<Course> searchCourses(String query, BooleanSupplier cancelled) {
+        return data().searchCourses(query, cancelled);
+    }
+
+    @Override
+    public DataCodec.Snapshot copySnapshot() { return data().copySnapshot(); }
+
+    @Override
+    public ReportEngine.Report enrollmentCounts() { return data().enrollmentCounts(); }
+
+    // ----------------- STUDENTS -----------------
+    @Override
+    public Student1 addStudent(String name, int age, String contact, String email) {
+        try {
+            return putStudent(client.addStudent(name, age, contact, email));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Student1 updateStudent(int id, String name, int age, String contact, String email) {
+        Student1 seen = data().findStudent(id);
+        int version = seen != null ? seen.getVersion() : CoachingCenterService.ANY_VERSION;
+        try {
+            return putStudent(client.updateStudent(id, version, name, age, contact, email));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public CoachingCenterService.Removal removeStudent(int id) {
+        try {
+            client.removeStudent(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return data().removeStudent(id);
+    }
+
+    private Student1 putStudent(Student1 s) {
+        return data().putStudent(s.getId(), s.getVersion(), s.getName(), s.getAge(), s.getContactNumber(), s.getEmail());
+    }
+
+    // One request per row, so a rejected row does not hold up the others
+    @Override
+    public int importStudents(CsvBulkIO.Parsed<CsvBulkIO.StudentRow> parsed) {
+        int added = 0;
+        for (CsvBulkIO.StudentRow row : parsed.rows) {
+            try {
+                row.importedId = putStudent(client.addStudent(row.name, row.age, row.contact, row.email)).getId();
+                added++;
+            } catch (IllegalArgumentException e) {
+                parsed.errors.add(new CsvBulkIO.RowError(row.line, e.getMessage()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return added;
+    }
+
+    // ----------------- COURSES -----------------
+    @Override
+    public Course addCourse(String courseName) {
+        try {
+            return putCourse(courseName, client.addCourse(courseName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Course renameCourse(String currentName, String newName) {
+        try {
+            return putCourse(currentName, client.renameCourse(currentName, courseVersion(currentName), newName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Course assignInstructor(String courseName, String instructorName) {
+        try {
+            return putCourse(courseName, client.assignInstructor(courseName, courseVersion(courseName), instructorName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public CoachingCenterService.Removal removeCourse(String courseName) {
+        try {
+            client.removeCourse(courseName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return data().removeCourse(courseName);
+    }
+
+    private int courseVersion(String courseName) {
+        Course seen = data().findCourse(courseName);
+        return seen != null ? seen.getVersion() : CoachingCenterService.ANY_VERSION;
+    }
+
+    private Course putCourse(String currentName, Course c) {
+        return data().putCourse(currentName, c.getVersion(), c.getCourseName(), c.getInstructorName(), c.getSessions());
+    }
+
+    @Override
+    public int importCourses(CsvBulkIO.Parsed<CsvBulkIO.CourseRow> parsed) {
+        int added = 0;
+        for (CsvBulkIO.CourseRow row : parsed.rows) {
+            try {
+                Course course = client.addCourse(row.courseName);
+                if (row.instructorName != null) {
+                    course = client.assignInstructor(row.courseName, course.getVersion(), row.instructorName);
+                }
+                putCourse(row.courseName, course);
+                added++;
+                if (!row.sessions.isEmpty()) {
+                    try {
+                        putCourse(row.courseName, client.scheduleCourse(row.courseName, course.getVersion(), row.sessions));
+                    } catch (IllegalArgumentException e) {
+                        parsed.errors.add(new CsvBulkIO.RowError(row.line, "Added without its sessions: " + e.getMessage()));
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                parsed.errors.add(new CsvBulkIO.RowError(row.line, e.getMessage()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return added;
+    }
+
+    // ----------------- SCHEDULE -----------------
+    @Override
+    public Course scheduleCourse(String courseName, List<Timetable.Session> sessions) {
+        try {
+            return putCourse(courseName, client.scheduleCourse(courseName, courseVersion(courseName), sessions));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // One request per course, like the imports; the server checks each against its current data
+    @Override
+    public int applySchedule(AutoScheduler.Plan plan, List<String> rejected) {
+        int applied = 0;
+        for (Map.Entry<String, List<Timetable.Session>> entry : plan.sessions.entrySet()) {
+            try {
+                Course seen = data().findCourse(entry.getKey());
+                if (seen != null && !seen.getSessions().isEmpty()) {
+                    throw new IllegalArgumentException("It was scheduled meanwhile.");
+                }
+                putCourse(entry.getKey(), client.scheduleCourse(entry.getKey(), courseVersion(entry.getKey()), entry.getValue()));
+                applied++;
+            } catch (IllegalArgumentException | ConcurrentModificationException e) {
+                rejected.add(entry.getKey() + ": " + e.getMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return applied;
+    }
+
+    // ----------------- ENROLLMENTS -----------------
+    @Override
+    public Enrollment enroll(int studentId, String courseName) {
+        try {
+            client.enroll(studentId, courseName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // The server checked the rules; the copy may be behind, so it takes the result without checking again
+        data().putEnrollment(studentId, courseName, true);
+        return new Enrollment(data().findStudent(studentId), data().findCourse(courseName));
+    }
+
+    // Rows naming students or courses the copy does not have yet reach the copy with the next fetch;
+    // returns how many the server accepted
+    @Override
+    public int importEnrollments(CsvBulkIO.Parsed<CsvBulkIO.EnrollmentRow> parsed) {
+        int added = 0;
+        for (CsvBulkIO.EnrollmentRow row : parsed.rows) {
+            try {
+                client.enroll(row.studentId, row.courseName);
+                data().putEnrollment(row.studentId, row.courseName, true);
+                added++;
+            } catch (IllegalArgumentException e) {
+                parsed.errors.add(new CsvBulkIO.RowError(row.line, e.getMessage()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return added;
+    }
+
+    // ----------------- UNDO -----------------
+    // Other users' changes would be undone along with this user's, so there is no history
+    @Override
+    public boolean canUndo() { return false; }
+
+    @Override
+    public boolean canRedo() { return false; }
+
+    @Override
+    public boolean undo() { return false; }
+
+    @Override
+    public boolean redo() { return false; }
+
+    @Override
+    public void close() {
+        try {
+            client.close();
+        } catch (IOException e) {
+            // Nothing is lost; every change was already sent
+        }
+    }
+}
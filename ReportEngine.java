@@ -0,0 +1,269 @@
+import java.util.*;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// -------------- REPORTS --------------
+// Statistics over a consistent copy of the data (CoachingCenter.copySnapshot()),
+// as tables of strings the Reports menu shows and exports as CSV. The snapshot's
+// enrollment pairs are grouped by course and by student into flat int arrays
+// once; each report then works per course, instructor or student on the common
+// fork/join pool through parallel streams, which keep the rows in order.
+// Reports that can run to a row per student or per course pair keep their
+// rows as ints and format each one when it is displayed or exported.
+// Enrollment counts per course need no pass at all: the service keeps them
+// with every change, see CoachingCenter.enrollmentCounts().
+class ReportEngine {
+
+    static final String NO_INSTRUCTOR = "(no instructor)";
+    private static final int[] AGE_BUCKET_LIMITS = {18, 22, 26, 31}; // exclusive upper bounds
+    private static final String[] AGE_BUCKETS = {"under 18", "18-21", "22-25", "26-30", "over 30"};
+
+    static final class Report {
+        final String title;
+        final String[] columns;
+        final List<String[]> rows;
+
+        Report(String title, String[] columns, List<String[]> rows) {
+            this.title = title;
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        // "Students per Instructor" -> "students-per-instructor.csv"
+        String fileName() {
+            return title.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-") + ".csv";
+        }
+    }
+
+    // Every report, sharing one grouping pass
+    static List<Report> all(DataCodec.Snapshot snapshot) {
+        Groups g = new Groups(snapshot);
+        return List.of(enrollmentsPerCourse(g), studentsPerInstructor(g), agesPerCourse(g),
+                unenrolledStudents(g), courseOverlap(g));
+    }
+
+    // ----------------- GROUPING -----------------
+    // Enrollments grouped both ways, as runs in flat arrays: the students of course c
+    // are roster[courseStart[c] .. courseStart[c + 1]), likewise for a student's courses
+    private static final class Groups {
+        final List<Student1> students;
+        final List<Course> courses;
+        final int[] ages;         // by student row
+        final int maxAge;
+        final int[] courseStart;
+        final int[] roster;       // student rows
+        final int[] studentStart;
+        final int[] coursesTaken; // course rows
+
+        Groups(DataCodec.Snapshot snapshot) {
+            students = snapshot.students;
+            courses = snapshot.courses;
+            DataCodec.Enrollments pairs = snapshot.enrollments;
+            int size = pairs.size();
+            ages = students.parallelStream().mapToInt(Student1::getAge).toArray();
+            maxAge = Arrays.stream(ages).max().orElse(0);
+
+            int maxId = students.parallelStream().mapToInt(Student1::getId).max().orElse(0);
+            int[] rowOfId = new int[maxId + 1];
+            IntStream.range(0, students.size()).parallel().forEach(row -> rowOfId[students.get(row).getId()] = row);
+            int[] studentRows = new int[size];
+            IntStream.range(0, size).parallel().forEach(i -> studentRows[i] = rowOfId[pairs.studentId(i)]);
+
+            courseStart = new int[courses.size() + 1];
+            studentStart = new int[students.size() + 1];
+            for (int i = 0; i < size; i++) {
+                courseStart[pairs.courseRow(i) + 1]++;
+                studentStart[studentRows[i] + 1]++;
+            }
+            Arrays.parallelPrefix(courseStart, Integer::sum);
+            Arrays.parallelPrefix(studentStart, Integer::sum);
+
+            roster = new int[size];
+            coursesTaken = new int[size];
+            int[] nextInCourse = Arrays.copyOf(courseStart, courses.size());
+            int[] nextOfStudent = Arrays.copyOf(studentStart, students.size());
+            for (int i = 0; i < size; i++) {
+                int course = pairs.courseRow(i);
+                roster[nextInCourse[course]++] = studentRows[i];
+                coursesTaken[nextOfStudent[studentRows[i]]++] = course;
+            }
+        }
+
+        int enrollmentCount(int course) { return courseStart[course + 1] - courseStart[course]; }
+
+        int courseCount(int student) { return studentStart[student + 1] - studentStart[student]; }
+    }
+
+    // ----------------- REPORTS -----------------
+    static Report enrollmentsPerCourse(DataCodec.Snapshot snapshot) {
+        return enrollmentsPerCourse(new Groups(snapshot));
+    }
+
+    private static Report enrollmentsPerCourse(Groups g) {
+        return enrollmentsPerCourse(g.courses, g::enrollmentCount);
+    }
+
+    // Also used by the service with its live counts
+    static Report enrollmentsPerCourse(List<Course> courses, IntUnaryOperator countOfRow) {
+        List<String[]> rows = new ArrayList<>(courses.size());
+        for (int row = 0; row < courses.size(); row++) {
+            Course c = courses.get(row);
+            rows.add(new String[]{c.getCourseName(), instructorOf(c), String.valueOf(countOfRow.applyAsInt(row))});
+        }
+        return new Report("Enrollments per Course", new String[]{"course", "instructor", "enrollments"}, rows);
+    }
+
+    // Students are counted once per instructor, however many of their courses they take
+    static Report studentsPerInstructor(DataCodec.Snapshot snapshot) {
+        return studentsPerInstructor(new Groups(snapshot));
+    }
+
+    private static Report studentsPerInstructor(Groups g) {
+        Map<String, List<Integer>> coursesByInstructor = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int row = 0; row < g.courses.size(); row++) {
+            coursesByInstructor.computeIfAbsent(instructorOf(g.courses.get(row)), k -> new ArrayList<>()).add(row);
+        }
+        List<String[]> rows = coursesByInstructor.entrySet().parallelStream().map(entry -> {
+            BitSet students = new BitSet(g.students.size());
+            int enrollments = 0;
+            for (int course : entry.getValue()) {
+                for (int i = g.courseStart[course]; i < g.courseStart[course + 1]; i++) students.set(g.roster[i]);
+                enrollments += g.enrollmentCount(course);
+            }
+            return new String[]{entry.getKey(), String.valueOf(entry.getValue().size()),
+                    String.valueOf(enrollments), String.valueOf(students.cardinality())};
+        }).collect(Collectors.toList());
+        return new Report("Students per Instructor", new String[]{"instructor", "courses", "enrollments", "students"}, rows);
+    }
+
+    static Report agesPerCourse(DataCodec.Snapshot snapshot) {
+        return agesPerCourse(new Groups(snapshot));
+    }
+
+    // Ages are small, so a histogram per course gives the median and buckets without sorting
+    private static Report agesPerCourse(Groups g) {
+        List<String> columns = new ArrayList<>(List.of("course", "students", "min", "median", "mean", "max"));
+        columns.addAll(Arrays.asList(AGE_BUCKETS));
+        List<String[]> rows = IntStream.range(0, g.courses.size()).parallel().mapToObj(course -> {
+            int[] countOfAge = new int[g.maxAge + 1];
+            long sum = 0;
+            for (int i = g.courseStart[course]; i < g.courseStart[course + 1]; i++) {
+                int age = g.ages[g.roster[i]];
+                countOfAge[age]++;
+                sum += age;
+            }
+            int students = g.enrollmentCount(course);
+            String[] row = new String[columns.size()];
+            row[0] = g.courses.get(course).getCourseName();
+            row[1] = String.valueOf(students);
+            if (students > 0) {
+                row[2] = String.valueOf(nthAge(countOfAge, 0));
+                int middle = students / 2;
+                double median = students % 2 == 1 ? nthAge(countOfAge, middle)
+                        : (nthAge(countOfAge, middle - 1) + nthAge(countOfAge, middle)) / 2.0;
+                row[3] = decimal(median);
+                row[4] = decimal((double) sum / students);
+                row[5] = String.valueOf(nthAge(countOfAge, students - 1));
+            }
+            int age = 0;
+            for (int b = 0; b < AGE_BUCKETS.length; b++) {
+                int limit = b < AGE_BUCKET_LIMITS.length ? Math.min(AGE_BUCKET_LIMITS[b], countOfAge.length) : countOfAge.length;
+                int inBucket = 0;
+                for (; age < limit; age++) inBucket += countOfAge[age];
+                row[6 + b] = String.valueOf(inBucket);
+            }
+            return row;
+        }).collect(Collectors.toList());
+        return new Report("Age Distribution per Course", columns.toArray(new String[0]), rows);
+    }
+
+    // The age of the n-th youngest (from 0) in a histogram
+    private static int nthAge(int[] countOfAge, int n) {
+        int age = 0;
+        for (int seen = countOfAge[0]; seen <= n; seen += countOfAge[++age]) { }
+        return age;
+    }
+
+    static Report unenrolledStudents(DataCodec.Snapshot snapshot) {
+        return unenrolledStudents(new Groups(snapshot));
+    }
+
+    private static Report unenrolledStudents(Groups g) {
+        int[] unenrolled = IntStream.range(0, g.students.size()).parallel().filter(row -> g.courseCount(row) == 0).toArray();
+        return new Report("Unenrolled Students", new String[]{"id", "name", "age", "contact", "email"},
+                rowsOf(unenrolled.length, i -> {
+                    Student1 s = g.students.get(unenrolled[i]);
+                    return new String[]{String.valueOf(s.getId()), s.getName(), String.valueOf(s.getAge()),
+                            s.getContactNumber(), s.getEmail()};
+                }));
+    }
+
+    // Students shared by each pair of courses, one row per pair that shares any. A full
+    // matrix grows with the square of the course count, so only its non-zero upper
+    // half is listed.
+    static Report courseOverlap(DataCodec.Snapshot snapshot) {
+        return courseOverlap(new Groups(snapshot));
+    }
+
+    private static Report courseOverlap(Groups g) {
+        int courseCount = g.courses.size();
+        // Per course, the later courses it shares students with and how many, as (other, shared) pairs
+        int[][] sharing = IntStream.range(0, courseCount).parallel().mapToObj(course -> {
+            int[] shared = new int[courseCount];
+            for (int i = g.courseStart[course]; i < g.courseStart[course + 1]; i++) {
+                int student = g.roster[i];
+                for (int j = g.studentStart[student]; j < g.studentStart[student + 1]; j++) {
+                    if (g.coursesTaken[j] > course) shared[g.coursesTaken[j]]++;
+                }
+            }
+            int[] pairs = new int[16];
+            int used = 0;
+            for (int other = course + 1; other < courseCount; other++) {
+                if (shared[other] == 0) continue;
+                if (used == pairs.length) pairs = Arrays.copyOf(pairs, used * 2);
+                pairs[used++] = other;
+                pairs[used++] = shared[other];
+            }
+            return Arrays.copyOf(pairs, used);
+        }).toArray(int[][]::new);
+
+        int[] firstRow = new int[courseCount + 1];
+        for (int course = 0; course < courseCount; course++) firstRow[course + 1] = firstRow[course] + sharing[course].length / 2;
+        return new Report("Course Overlap", new String[]{"course", "other course", "shared students"},
+                rowsOf(firstRow[courseCount], i -> {
+                    int course = Arrays.binarySearch(firstRow, i);
+                    // Skip courses without rows, which repeat the same start
+                    if (course < 0) course = -course - 2;
+                    else while (firstRow[course + 1] == i) course++;
+                    int at = 2 * (i - firstRow[course]);
+                    return new String[]{g.courses.get(course).getCourseName(),
+                            g.courses.get(sharing[course][at]).getCourseName(), String.valueOf(sharing[course][at + 1])};
+                }));
+    }
+
+    // ----------------- HELPERS -----------------
+    // Rows made when they are read, for reports with many of them
+    private static List<String[]> rowsOf(int size, IntFunction<String[]> row) {
+        return new AbstractList<String[]>() {
+            @Override
+            public String[] get(int i) {
+                Objects.checkIndex(i, size);
+                return row.apply(i);
+            }
+
+            @Override
+            public int size() { return size; }
+        };
+    }
+
+    private static String instructorOf(Course c) {
+        return c.getInstructorName() != null ? c.getInstructorName() : NO_INSTRUCTOR;
+    }
+
+    private static String decimal(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -0,0 +1,239 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.List;
+
+// -------------- SAVED DATA VIEW --------------
+// FileStorageEngine's lookups, answered without loading the data. The saved
+// snapshot stays mapped (MappedDataStore) and a row is decoded only when a
+// lookup reaches it: students by binary search on their ids, which the file
+// keeps in order, enrollments through an index of (student id, row) pairs
+// built on the first coursesOf(...). The journal's records after the snapshot
+// sit on top as an overlay of the students and enrollment lists they changed.
+//
+// catchUp() reads only the records written since the last call. Once a
+// compaction has replaced the data file or started a new log, the view no
+// longer matches the files and the engine opens a new one.
+class SavedDataView implements DataJournal.Handler {
+
+    // A saved course; enrollment lists share it, so a rename or removal reaches all of them
+    private static final class CourseRef {
+        String name;
+        boolean removed;
+
+        CourseRef(String name) {
+            this.name = name;
+        }
+    }
+
+    private final DataCodec.Snapshot base; // students in id order
+    private final List<Object> files;
+    private final File journalFile;
+    private long journalLength; // where the next catchUp() starts reading
+
+    private CourseRef[] baseCourses; // by row; built with coursesByName when a record or lookup needs them
+    private Map<String, CourseRef> coursesByName; // case-folded
+    private long[] baseEnrollments; // student id << 32 | enrollment row, sorted
+
+    // Changed since the snapshot: students (null once removed) and whole enrollment lists
+    private final TreeMap<Integer, Student1> students = new TreeMap<>();
+    private final Map<Integer, List<CourseRef>> enrollments = new HashMap<>();
+
+    private SavedDataView(DataCodec.Snapshot base, List<Object> files, File journalFile) {
+        this.base = base;
+        this.files = files;
+        this.journalFile = journalFile;
+    }
+
+    // The snapshot (null when nothing is saved yet) with the journal's records after it
+    static SavedDataView open(DataCodec.Snapshot snapshot, List<Object> files, File journalFile) throws IOException {
+        if (snapshot == null) {
+            List<Student1> none = new ArrayList<>();
+            List<Course> noCourses = new ArrayList<>();
+            snapshot = new DataCodec.Snapshot(none, noCourses, new DataCodec.Enrollments(none, noCourses, 0), 1, 0);
+        }
+        SavedDataView view = new SavedDataView(snapshot, files, journalFile);
+        view.journalLength = DataJournal.read(journalFile, snapshot.journalSequence, view);
+        return view;
+    }
+
+    void catchUp() throws IOException {
+        journalLength = DataJournal.readFrom(journalFile, journalLength, this);
+    }
+
+    // What tells a generation of the files from the next: the data file, which a compaction
+    // replaces, and the log, which it starts anew. Growth of the log is not a change.
+    static List<Object> identify(File dataFile, File journalFile) throws IOException {
+        List<Object> identity = new ArrayList<>();
+        BasicFileAttributes data = attributes(dataFile);
+        if (data != null) identity.addAll(List.of(key(data), data.lastModifiedTime(), data.size()));
+        BasicFileAttributes log = attributes(journalFile);
+        identity.add(log != null ? key(log) : "no log");
+        return identity;
+    }
+
+    boolean matches(List<Object> identity) {
+        return files.equals(identity);
+    }
+
+    private static BasicFileAttributes attributes(File file) throws IOException {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // Not every file system has keys
+    private static Object key(BasicFileAttributes attributes) {
+        return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+    }
+
+    // ----------------- LOOKUPS -----------------
+    Student1 student(int id) {
+        if (students.containsKey(id)) return students.get(id);
+        int row = firstRowFrom(id);
+        return row < base.students.size() && base.students.get(row).getId() == id ? base.students.get(row) : null;
+    }
+
+    // Saved rows and changed students merged in id order
+    List<Student1> students(int fromId, int toId) {
+        List<Student1> found = new ArrayList<>();
+        if (fromId >= toId) return found;
+        int row = firstRowFrom(fromId);
+        Iterator<Map.Entry<Integer, Student1>> changes = students.subMap(fromId, toId).entrySet().iterator();
+        Map.Entry<Integer, Student1> change = changes.hasNext() ? changes.next() : null;
+        while (true) {
+            Student1 saved = row < base.students.size() ? base.students.get(row) : null;
+            if (saved != null && saved.getId() >= toId) saved = null;
+            if (saved == null && change == null) return found;
+            if (change == null || (saved != null && saved.getId() < change.getKey())) {
+                found.add(saved);
+                row++;
+            } else {
+                if (change.getValue() != null) found.add(change.getValue());
+                if (saved != null && saved.getId() == change.getKey()) row++;
+                change = changes.hasNext() ? changes.next() : null;
+            }
+        }
+    }
+
+    List<String> coursesOf(int studentId) {
+        List<String> names = new ArrayList<>();
+        for (CourseRef c : enrollmentsOf(studentId)) if (!c.removed) names.add(c.name);
+        return names;
+    }
+
+    // The first row whose id is at least id; only log(n) rows get decoded
+    private int firstRowFrom(int id) {
+        int low = 0;
+        int high = base.students.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (base.students.get(mid).getId() < id) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private List<CourseRef> enrollmentsOf(int studentId) {
+        List<CourseRef> changed = enrollments.get(studentId);
+        if (changed != null) return changed;
+        if (baseEnrollments == null) {
+            DataCodec.Enrollments pairs = base.enrollments;
+            baseEnrollments = new long[pairs.size()];
+            for (int i = 0; i < pairs.size(); i++) baseEnrollments[i] = (long) pairs.studentId(i) << 32 | i;
+            Arrays.sort(baseEnrollments);
+        }
+        courseRefs();
+        List<CourseRef> saved = new ArrayList<>();
+        int at = Arrays.binarySearch(baseEnrollments, (long) studentId << 32);
+        for (at = at < 0 ? -at - 1 : at; at < baseEnrollments.length && (int) (baseEnrollments[at] >>> 32) == studentId; at++) {
+            saved.add(baseCourses[base.enrollments.courseRow((int) baseEnrollments[at])]);
+        }
+        return saved;
+    }
+
+    private Map<String, CourseRef> courseRefs() {
+        if (coursesByName == null) {
+            coursesByName = new HashMap<>();
+            baseCourses = new CourseRef[base.courses.size()];
+            for (int row = 0; row < baseCourses.length; row++) {
+                baseCourses[row] = new CourseRef(base.courses.get(row).getCourseName());
+                coursesByName.put(DataIndex.foldCase(baseCourses[row].name), baseCourses[row]);
+            }
+        }
+        return coursesByName;
+    }
+
+    // ----------------- JOURNAL RECORDS -----------------
+    // The same effects as the service's replay, on what the lookups return
+
+    // A student's enrollment list, copied into the overlay before its first change
+    private List<CourseRef> changedEnrollmentsOf(int studentId) {
+        List<CourseRef> list = enrollments.get(studentId);
+        if (list == null) {
+            list = enrollmentsOf(studentId);
+            enrollments.put(studentId, list);
+        }
+        return list;
+    }
+
+    @Override
+    public void studentAdded(int id, String name, int age, String contact, String email) {
+        students.put(id, new Student1(id, name, age, contact, email));
+    }
+
+    @Override
+    public void studentUpdated(int id, String name, int age, String contact, String email) {
+        if (student(id) != null) students.put(id, new Student1(id, name, age, contact, email));
+    }
+
+    @Override
+    public void studentRemoved(int id) {
+        if (student(id) == null) return;
+        students.put(id, null);
+        enrollments.put(id, new ArrayList<>());
+    }
+
+    @Override
+    public void courseAdded(String courseName) {
+        courseRefs().put(DataIndex.foldCase(courseName), new CourseRef(courseName));
+    }
+
+    @Override
+    public void courseRenamed(String oldName, String newName) {
+        CourseRef c = courseRefs().remove(DataIndex.foldCase(oldName));
+        if (c == null) return;
+        c.name = newName;
+        coursesByName.put(DataIndex.foldCase(newName), c);
+    }
+
+    // Lookups do not return instructors or sessions
+    @Override
+    public void instructorAssigned(String courseName, String instructorName) { }
+
+    @Override
+    public void courseScheduled(String courseName, String sessions) { }
+
+    @Override
+    public void courseRemoved(String courseName) {
+        CourseRef c = courseRefs().remove(DataIndex.foldCase(courseName));
+        if (c != null) c.removed = true;
+    }
+
+    @Override
+    public void enrolled(int studentId, String courseName) {
+        CourseRef c = courseRefs().get(DataIndex.foldCase(courseName));
+        if (c != null && student(studentId) != null) changedEnrollmentsOf(studentId).add(c);
+    }
+
+    @Override
+    public void unenrolled(int studentId, String courseName) {
+        CourseRef c = courseRefs().get(DataIndex.foldCase(courseName));
+        if (c != null) changedEnrollmentsOf(studentId).remove(c);
+    }
+}
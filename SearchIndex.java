@@ -0,0 +1,286 @@
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+// -------------- TEXT SEARCH INDEX --------------
+// Case-insensitive search over a few text fields per item. Queries of three or
+// more characters match anywhere in a field and are answered from trigram
+// postings; shorter ones match the start of a word (so "ri" finds "Riya" but not
+// "Henri") and use postings of one- and two-character word prefixes.
+//
+// Every item keeps the document number it was added with, so postings are
+// sorted int arrays in list order. Updates only add postings; the stale ones
+// they leave behind, and those of removed items, are filtered out by checking
+// the candidates against their current text and dropped by the next rebuild.
+// The index is built on the first search, so a lazily mapped data file is not
+// decoded at startup. Callers serialize changes with searches (the service's
+// write lock); searches themselves may come from several threads.
+class SearchIndex<T> {
+
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+    private static final char FIELD_SEPARATOR = '\n';
+
+    private final Function<T, String[]> fields;
+
+    private boolean built;
+    private boolean rebuildNeeded;
+    private final Map<T, Integer> docs = new HashMap<>(); // domain classes keep identity equality
+    private Object[] items = new Object[16];
+    private String[] texts = new String[16];  // folded fields joined by FIELD_SEPARATOR
+    private BitSet stale = new BitSet();      // documents whose postings may not match their text
+    private int docCount;
+    private int garbage;                      // removed or updated documents since the last rebuild
+    private final GramTable postings = new GramTable();
+
+    // Sorted, duplicate-free document numbers
+    private static final class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) return; // gram repeated within one item
+            if (size > 0 && docs[size - 1] > doc) {
+                int at = Arrays.binarySearch(docs, 0, size, doc);
+                if (at >= 0) return;
+                insert(-at - 1, doc);
+                return;
+            }
+            insert(size, doc);
+        }
+
+        private void insert(int at, int doc) {
+            if (size == docs.length) docs = Arrays.copyOf(docs, size + (size >> 1) + 1);
+            System.arraycopy(docs, at, docs, at + 1, size - at);
+            docs[at] = doc;
+            size++;
+        }
+    }
+
+    // Open-addressing map from packed gram to postings; a build makes tens of millions of
+    // lookups, which boxed Long keys in a HashMap would turn into as many allocations
+    private static final class GramTable {
+        private long[] keys = new long[1024];
+        private Postings[] values = new Postings[1024];
+        private int size;
+
+        Postings get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return null;
+        }
+
+        Postings getOrCreate(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            Postings p = new Postings();
+            keys[i] = key;
+            values[i] = p;
+            if (++size * 2 > keys.length) grow();
+            return p;
+        }
+
+        void clear() {
+            keys = new long[1024];
+            values = new Postings[1024];
+            size = 0;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Postings[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] == null) continue;
+                int i = slot(oldKeys[j], mask);
+                while (values[i] != null) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & mask;
+        }
+    }
+
+    SearchIndex(Function<T, String[]> fields) {
+        this.fields = fields;
+    }
+
+    // ----------------- MAINTENANCE -----------------
+    // Changes before the first search are ignored; the build reads the list as it is then
+    synchronized void added(T item) {
+        if (!built) return;
+        int doc = docCount++;
+        docs.put(item, doc);
+        if (doc == items.length) {
+            items = Arrays.copyOf(items, doc * 2);
+            texts = Arrays.copyOf(texts, doc * 2);
+        }
+        items[doc] = item;
+        index(doc, item);
+    }
+
+    // An item put back in the middle of the list, e.g. by an undo. A new document number
+    // would be out of list order, so the next search rebuilds instead.
+    synchronized void inserted(T item) {
+        if (built) rebuildNeeded = true;
+    }
+
+    synchronized void updated(T item) {
+        if (!built) return;
+        Integer doc = docs.get(item);
+        if (doc == null) return;
+        index(doc, item);
+        stale.set(doc);
+        collect();
+    }
+
+    synchronized void removed(T item) {
+        if (!built) return;
+        Integer doc = docs.remove(item);
+        if (doc == null) return;
+        items[doc] = null;
+        texts[doc] = null;
+        collect();
+    }
+
+    // A rebuild is only scheduled here; it runs at the start of the next search, off the editing thread
+    private void collect() {
+        if (++garbage > Math.max(1024, docs.size())) rebuildNeeded = true;
+    }
+
+    private void build(List<T> all) {
+        docs.clear();
+        postings.clear();
+        stale = new BitSet();
+        docCount = 0;
+        garbage = 0;
+        items = new Object[Math.max(16, all.size())];
+        texts = new String[items.length];
+        for (T item : all) {
+            int doc = docCount++;
+            docs.put(item, doc);
+            items[doc] = item;
+            index(doc, item);
+        }
+        built = true;
+        rebuildNeeded = false;
+    }
+
+    private void index(int doc, T item) {
+        StringBuilder text = new StringBuilder();
+        for (String field : fields.apply(item)) {
+            if (field == null) continue;
+            String folded = DataIndex.foldCase(field);
+            if (text.length() > 0) text.append(FIELD_SEPARATOR);
+            text.append(folded);
+            for (int i = 0; i + 3 <= folded.length(); i++) posting(gram(folded, i, 3)).add(doc);
+            for (int i = 0; i < folded.length(); i++) {
+                if (!isWordStart(folded, i)) continue;
+                posting(gram(folded, i, 1)).add(doc);
+                if (i + 1 < folded.length()) posting(gram(folded, i, 2)).add(doc);
+            }
+        }
+        texts[doc] = text.toString();
+    }
+
+    private Postings posting(long gram) {
+        return postings.getOrCreate(gram);
+    }
+
+    // Up to three chars and the gram length packed into one key
+    private static long gram(String s, int from, int length) {
+        long key = length;
+        for (int i = 0; i < length; i++) key = (key << 16) | s.charAt(from + i);
+        return key;
+    }
+
+    private static boolean isWordStart(String s, int i) {
+        return Character.isLetterOrDigit(s.charAt(i)) && (i == 0 || !Character.isLetterOrDigit(s.charAt(i - 1)));
+    }
+
+    // ----------------- QUERIES -----------------
+    // Items whose fields match the query, in list order. all is the current list,
+    // used for the first build and for rebuilds. Throws CancellationException as
+    // soon as cancelled reports true.
+    @SuppressWarnings("unchecked")
+    synchronized List<T> search(String query, List<T> all, BooleanSupplier cancelled) {
+        if (!built || rebuildNeeded) build(all);
+        String q = DataIndex.foldCase(query.trim());
+        if (q.isEmpty()) return new ArrayList<>(all);
+
+        boolean prefix = q.length() < 3;
+        Postings[] lists = prefix ? new Postings[]{postings.get(gram(q, 0, q.length()))} : trigramPostings(q);
+        if (lists == null || lists[0] == null) return new ArrayList<>();
+        // Walk the shortest list and probe the others
+        Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+        Postings shortest = lists[0];
+        // A one- to three-character query is answered exactly by its single postings list
+        boolean verifyAll = q.length() > 3;
+
+        int[] cursors = new int[lists.length];
+        List<T> matches = new ArrayList<>();
+        for (int i = 0; i < shortest.size; i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) throw new CancellationException();
+            int doc = shortest.docs[i];
+            Object item = items[doc];
+            if (item == null || !inAll(lists, cursors, doc)) continue;
+            if ((verifyAll || stale.get(doc)) && !matches(texts[doc], q, prefix)) continue;
+            matches.add((T) item);
+        }
+        return matches;
+    }
+
+    private Postings[] trigramPostings(String q) {
+        Set<Long> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= q.length(); i++) grams.add(gram(q, i, 3));
+        Postings[] lists = new Postings[grams.size()];
+        int n = 0;
+        for (long g : grams) {
+            Postings p = postings.get(g);
+            if (p == null) return null;
+            lists[n++] = p;
+        }
+        return lists;
+    }
+
+    // Candidates arrive in ascending order, so each list is walked forward once, galloping over gaps
+    private static boolean inAll(Postings[] lists, int[] cursors, int doc) {
+        for (int i = 1; i < lists.length; i++) {
+            Postings p = lists[i];
+            int at = cursors[i];
+            int step = 1;
+            while (at + step < p.size && p.docs[at + step] < doc) {
+                at += step;
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(p.docs, at, Math.min(at + step + 1, p.size), doc);
+            if (found >= 0) {
+                cursors[i] = found;
+            } else {
+                cursors[i] = -found - 1;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String text, String q, boolean prefix) {
+        if (!prefix) return text.contains(q);
+        for (int at = text.indexOf(q); at >= 0; at = text.indexOf(q, at + 1)) {
+            if (isWordStart(text, at)) return true;
+        }
+        return false;
+    }
+}
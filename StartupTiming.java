@@ -0,0 +1,150 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import javax.swing.SwingUtilities;
+
+// -------------- STARTUP TIMING --------------
+// Milestones of a cold start, and a harness that measures them against the
+// size of the data. The application marks "main", "frame.visible",
+// "frame.firstPaint" and "data.loaded"; only the first mark of each name counts.
+// Times are reported in milliseconds since the JVM started, so they include
+// class loading before main.
+//
+//   java StartupTiming [--runs n] [students...]   (default 1000 10000 100000 students)
+//
+// writes a data file of each size into a temporary directory, starts the
+// application on it in a fresh JVM per run and prints one CSV row per run. JVM
+// options for the runs, e.g. -XX:SharedArchiveFile=..., go in
+// -Dstartup.jvmOptions="...". Needs a display.
+//
+//   java StartupTiming --train
+//
+// opens the application on the data in the working directory, builds every tab
+// and exits, so a JVM run with -XX:ArchiveClassesAtExit dumps the classes a
+// session uses (see the appcds profile in pom.xml).
+class StartupTiming {
+
+    static final String[] MILESTONES = {"main", "frame.visible", "frame.firstPaint", "data.loaded"};
+    private static final long TIMEOUT_MILLIS = 120_000;
+
+    private static final Map<String, Long> marks = new ConcurrentHashMap<>(); // name -> nanoTime
+    private static final Object lock = new Object();
+
+    static void mark(String name) {
+        if (marks.putIfAbsent(name, System.nanoTime()) == null) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    // Milliseconds since the JVM started, or -1 before the mark
+    static long millis(String name) {
+        Long at = marks.get(name);
+        if (at == null) return -1;
+        long sinceStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        return sinceStart - (System.nanoTime() - at) / 1_000_000;
+    }
+
+    static boolean awaitMark(String name, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (lock) {
+            while (!marks.containsKey(name)) {
+                long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (left <= 0) return false;
+                lock.wait(left);
+            }
+        }
+        return true;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            child();
+        } else if (args.length > 0 && args[0].equals("--train")) {
+            train();
+        } else {
+            harness(args);
+        }
+    }
+
+    // ----------------- HARNESS -----------------
+    private static void harness(String[] args) throws Exception {
+        int runs = 3;
+        List<Integer> sizes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--runs") && i + 1 < args.length) runs = Integer.parseInt(args[++i]);
+            else sizes.add(Integer.parseInt(args[i]));
+        }
+        if (sizes.isEmpty()) sizes = List.of(1_000, 10_000, 100_000);
+
+        StringBuilder header = new StringBuilder("students,courses,enrollments,run");
+        for (String name : MILESTONES) header.append(',').append(name.replace('.', '_')).append("_ms");
+        System.out.println(header);
+        for (int students : sizes) {
+            File dir = Files.createTempDirectory("ccms-startup").toFile();
+            try {
+                DataCodec.Snapshot snapshot = dataset(students);
+                DataCodec.write(new File(dir, CoachingCenterManagementSystem.DATA_FILE), snapshot);
+                String size = snapshot.students.size() + "," + snapshot.courses.size() + "," + snapshot.enrollments.size();
+                for (int run = 1; run <= runs; run++) {
+                    System.out.println(size + "," + run + "," + String.join(",", runChild(dir)));
+                }
+            } finally {
+                for (File f : Objects.requireNonNull(dir.listFiles())) f.delete();
+                dir.delete();
+            }
+        }
+    }
+
+    // One course per ten students, three sign-ups per student
+    static DataCodec.Snapshot dataset(int students) {
+        return new WorkloadGenerator(students).populate(students, Math.max(1, students / 10), 3).copySnapshot();
+    }
+
+    private static String[] runChild(File dir) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        String options = System.getProperty("startup.jvmOptions", "").trim();
+        if (!options.isEmpty()) command.addAll(Arrays.asList(options.split("\\s+")));
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), "StartupTiming", "--child"));
+
+        Process process = new ProcessBuilder(command).directory(dir).redirectErrorStream(true).start();
+        String result = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            for (String line; (line = in.readLine()) != null; ) {
+                if (line.startsWith("STARTUP ")) result = line.substring("STARTUP ".length());
+                else System.err.println(line);
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IOException("Startup run in " + dir + " failed with exit code " + process.exitValue());
+        }
+        return result.split(",");
+    }
+
+    // ----------------- CHILD RUNS -----------------
+    private static void child() throws Exception {
+        CoachingCenterManagementSystem.main(new String[0]);
+        for (String name : MILESTONES) {
+            if (!awaitMark(name, TIMEOUT_MILLIS)) {
+                throw new IllegalStateException("No " + name + " mark after " + TIMEOUT_MILLIS + " ms");
+            }
+        }
+        StringBuilder s = new StringBuilder("STARTUP ");
+        for (int i = 0; i < MILESTONES.length; i++) s.append(i > 0 ? "," : "").append(millis(MILESTONES[i]));
+        System.out.println(s);
+        System.exit(0);
+    }
+
+    private static void train() throws Exception {
+        CoachingCenterManagementSystem[] app = new CoachingCenterManagementSystem[1];
+        SwingUtilities.invokeAndWait(() -> app[0] = CoachingCenterManagementSystem.open(new String[0]));
+        if (!awaitMark("data.loaded", TIMEOUT_MILLIS)) throw new IllegalStateException("The data did not load");
+        SwingUtilities.invokeAndWait(() -> app[0].buildAllTabs());
+        System.exit(0);
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.List;
+
+// -------------- STORAGE BENCHMARK --------------
+// Compares FileStorageEngine and JdbcStorageEngine on generated data of several
+// sizes and prints one CSV row per engine and size:
+//   bulk_save_ms    saveAll of the whole data set
+//   load_ms         opening a service on it
+//   delta_ms        1000 single edits, each its own batch, until they are durable
+//   lookup_us       student(id) for a random id
+//   range_us        students(from, from + 100)
+//   courses_of_us   coursesOf(id) for a random id
+// Each lookup runs MAX_LOOKUPS times or for LOOKUP_MILLIS, whichever ends first.
+//
+//   java StorageBenchmark [students...]   (default 10000 100000 1000000)
+//
+// The SQL engine uses -Dstorage.jdbcUrl (default jdbc:h2:file:) with a file
+// in a temporary directory appended, so its driver has to be on the class path.
+class StorageBenchmark {
+
+    private static final int DELTA_EDITS = 1000;
+    private static final int MAX_LOOKUPS = 1000;
+    private static final long LOOKUP_MILLIS = 5000;
+
+    interface EngineFactory {
+        StorageEngine open(File dir) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> sizes = new ArrayList<>();
+        for (String arg : args) sizes.add(Integer.parseInt(arg));
+        if (sizes.isEmpty()) sizes = List.of(10_000, 100_000, 1_000_000);
+        String jdbcUrl = System.getProperty("storage.jdbcUrl", "jdbc:h2:file:");
+
+        Map<String, EngineFactory> engines = new LinkedHashMap<>();
+        engines.put("file", dir -> new FileStorageEngine(new File(dir, CoachingCenterManagementSystem.DATA_FILE),
+                new File(dir, CoachingCenterManagementSystem.LEGACY_DATA_FILE),
+                new File(dir, CoachingCenterManagementSystem.JOURNAL_FILE), StorageBenchmark::fail));
+        engines.put("sql", dir -> new JdbcStorageEngine(jdbcUrl + new File(dir, "coaching_center").getAbsolutePath(),
+                StorageBenchmark::fail));
+
+        System.out.println("engine,students,courses,enrollments,bulk_save_ms,load_ms,delta_ms,lookup_us,range_us,courses_of_us");
+        for (int students : sizes) {
+            DataCodec.Snapshot snapshot = StartupTiming.dataset(students);
+            for (Map.Entry<String, EngineFactory> engine : engines.entrySet()) {
+                File dir = Files.createTempDirectory("ccms-storage").toFile();
+                try {
+                    System.out.println(engine.getKey() + "," + snapshot.students.size() + "," + snapshot.courses.size() + ","
+                            + snapshot.enrollments.size() + "," + run(engine.getValue(), dir, snapshot));
+                } finally {
+                    delete(dir);
+                }
+            }
+        }
+    }
+
+    private static String run(EngineFactory engines, File dir, DataCodec.Snapshot snapshot) throws Exception {
+        long start = System.nanoTime();
+        try (StorageEngine storage = engines.open(dir)) {
+            storage.saveAll(snapshot);
+        }
+        long bulkSave = millisSince(start);
+
+        start = System.nanoTime();
+        CoachingCenterService service = CoachingCenterService.open(engines.open(dir));
+        long load = millisSince(start);
+        start = System.nanoTime();
+        for (int i = 0; i < DELTA_EDITS; i++) service.addStudent("Delta " + i, 30, "018", "delta" + i + "@example.com");
+        service.flush();
+        long delta = millisSince(start);
+        service.close();
+
+        int maxId = snapshot.nextStudentId - 1;
+        Random random = new Random(42);
+        try (StorageEngine storage = engines.open(dir)) {
+            double lookup = microsPerCall(() -> storage.student(1 + random.nextInt(maxId)));
+            double range = microsPerCall(() -> {
+                int from = 1 + random.nextInt(maxId);
+                storage.students(from, from + 100);
+            });
+            double coursesOf = microsPerCall(() -> storage.coursesOf(1 + random.nextInt(maxId)));
+            return bulkSave + "," + load + "," + delta + "," + Math.round(lookup) + "," + Math.round(range) + ","
+                    + Math.round(coursesOf);
+        }
+    }
+
+    interface Call {
+        void run() throws IOException;
+    }
+
+    private static double microsPerCall(Call call) throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + LOOKUP_MILLIS * 1_000_000;
+        int calls = 0;
+        while (calls < MAX_LOOKUPS && (calls == 0 || System.nanoTime() < deadline)) {
+            call.run();
+            calls++;
+        }
+        return (System.nanoTime() - start) / 1000.0 / calls;
+    }
+
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static void fail(IOException e) {
+        throw new IllegalStateException(e);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) delete(child);
+        file.delete();
+    }
+}
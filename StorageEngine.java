@@ -0,0 +1,49 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+// -------------- STORAGE ENGINE --------------
+// Where a CoachingCenterService keeps its data between runs. The service loads
+// a snapshot and replays whatever the engine saved after it, then hands every
+// committed batch of events to saveDelta(...). FileStorageEngine is the data
+// file and its journal; JdbcStorageEngine keeps the data in an embedded SQL
+// database. StorageBenchmark compares the two.
+//
+// The lookups read what has been saved, not what a service holds in memory;
+// they let tools and reports work on data too large to load in full.
+interface StorageEngine extends Closeable {
+
+    // The saved data, or null when nothing was saved yet. Problems the engine
+    // recovered from are added to skipped; when nothing can be read it throws.
+    DataCodec.Snapshot load(List<IOException> skipped) throws IOException;
+
+    // Edits saved after the snapshot load() returned, oldest first; after this
+    // the engine takes saveDelta(...) calls
+    void replay(DataJournal.Handler handler) throws IOException;
+
+    // Saves one committed batch. Called with the service's write lock held, in
+    // commit order, so it must not cost more than the batch; an engine that
+    // rewrites everything now and then does so on its own thread, from what it
+    // saved. Failures go to the engine's error handler.
+    void saveDelta(List<DataEvent> batch);
+
+    // Replaces everything saved with the snapshot, e.g. to move data between engines
+    void saveAll(DataCodec.Snapshot snapshot) throws IOException;
+
+    // Blocks until every batch handed over so far is durable; throws when some
+    // of them could not be saved
+    void flush() throws InterruptedException, IOException;
+
+    // ----------------- LOOKUPS -----------------
+    // The saved student with this id, or null
+    Student1 student(int id) throws IOException;
+
+    // Saved students with fromId <= id < toId, in id order
+    List<Student1> students(int fromId, int toId) throws IOException;
+
+    // Names of the saved courses the student is enrolled in, in enrollment order
+    List<String> coursesOf(int studentId) throws IOException;
+
+    @Override
+    void close();
+}
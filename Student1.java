@@ -7,6 +7,7 @@ public class Student1 implements Serializable {
     private int age;
     private String contactNumber;
     private String email;
+    private int version; // bumped by every update, for optimistic concurrency between clients
 
     public Student1(int id, String name, int age, String contactNumber, String email) {
         this.id = id;
@@ -26,6 +27,8 @@ public class Student1 implements Serializable {
     public String getContactNumber() { return contactNumber; }
     public void setEmail(String email) { this.email = email; }
     public String getEmail() { return email; }
+    public int getVersion() { return version; }
+    void setVersion(int version) { this.version = version; }
 
     @Override
     public String toString() {
@@ -0,0 +1,243 @@
+import java.time.DayOfWeek;
+import java.time.format.TextStyle;
+import java.util.*;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// -------------- TIMETABLE --------------
+// The weekly sessions of the courses and the indexes that find clashes between
+// them. A session is a day, a time range and a room; courses clash when two of
+// their sessions overlap and they share the room, the instructor or a student.
+//
+// Every room and every instructor (by case-folded name) has an IntervalTree of
+// the sessions held there or taught by them, over minutes since Monday 00:00,
+// so a check costs a few tree lookups however many courses there are. A student
+// takes only a handful of courses, so their sessions are compared directly, see
+// clash(...). Built on the first check, like DataIndex; after that every change
+// to a course's instructor or sessions goes through remove(...) and add(...).
+// Used under the service's write lock only.
+class Timetable {
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+
+    // "Mon 09:00-10:30 @ R101"
+    private static final Pattern SESSION =
+            Pattern.compile("\\s*(\\p{Alpha}+)\\s+(\\d{1,2}):(\\d{2})\\s*-\\s*(\\d{1,2}):(\\d{2})\\s*@\\s*(.*?)\\s*");
+    static final String SESSION_FORMAT = "Mon 09:00-10:30 @ R101";
+    private static final String SEPARATOR = "; ";
+
+    static final class Session {
+        final DayOfWeek day;
+        final int start; // minutes since midnight
+        final int end;   // exclusive
+        final String room;
+
+        Session(DayOfWeek day, int start, int end, String room) {
+            if (start < 0 || end > MINUTES_PER_DAY || start >= end) {
+                throw new IllegalArgumentException("A session has to start before it ends, within one day.");
+            }
+            if (room == null || room.trim().isEmpty()) throw new IllegalArgumentException("A session needs a room.");
+            this.day = day;
+            this.start = start;
+            this.end = end;
+            this.room = room.trim();
+        }
+
+        // Minutes since Monday 00:00
+        int weekStart() { return (day.getValue() - 1) * MINUTES_PER_DAY + start; }
+        int weekEnd() { return (day.getValue() - 1) * MINUTES_PER_DAY + end; }
+
+        boolean overlaps(Session other) {
+            return weekStart() < other.weekEnd() && other.weekStart() < weekEnd();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Session)) return false;
+            Session other = (Session) o;
+            return day == other.day && start == other.start && end == other.end && room.equals(other.room);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(day, start, end, room);
+        }
+
+        @Override
+        public String toString() {
+            return day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH) + " " + time(start) + "-" + time(end) + " @ " + room;
+        }
+
+        private static String time(int minutes) {
+            return String.format(Locale.ROOT, "%02d:%02d", minutes / 60, minutes % 60);
+        }
+    }
+
+    // ----------------- TEXT -----------------
+    // The form field, the journal, the data file and the wire all use this text:
+    // sessions as in SESSION_FORMAT, separated by semicolons; blank means none
+    static List<Session> parseAll(String text) {
+        if (text == null || text.trim().isEmpty()) return Collections.emptyList();
+        List<Session> sessions = new ArrayList<>();
+        for (String part : text.split(";")) {
+            if (!part.trim().isEmpty()) sessions.add(parse(part));
+        }
+        return Collections.unmodifiableList(sessions);
+    }
+
+    static Session parse(String text) {
+        Matcher m = SESSION.matcher(text);
+        if (!m.matches()) throw new IllegalArgumentException("Write a session as " + SESSION_FORMAT + ": " + text.trim());
+        DayOfWeek day = parseDay(m.group(1));
+        int start = minutes(m.group(2), m.group(3));
+        int end = minutes(m.group(4), m.group(5));
+        return new Session(day, start, end, m.group(6));
+    }
+
+    static DayOfWeek parseDay(String text) {
+        String prefix = text.trim().toUpperCase(Locale.ROOT);
+        if (prefix.length() >= 2) {
+            for (DayOfWeek day : DayOfWeek.values()) {
+                if (day.name().startsWith(prefix)) return day;
+            }
+        }
+        throw new IllegalArgumentException("Unknown day: " + text.trim());
+    }
+
+    // "09:30" -> minutes since midnight; "24:00" is the end of the day
+    static int parseTime(String text) {
+        String[] parts = text.trim().split(":");
+        try {
+            if (parts.length == 2 && parts[1].length() == 2) return minutes(parts[0], parts[1]);
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid time: " + text.trim());
+    }
+
+    private static int minutes(String hours, String minutes) {
+        int h = Integer.parseInt(hours);
+        int m = Integer.parseInt(minutes);
+        if (h < 0 || m < 0 || m >= 60 || h * 60 + m > MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("Invalid time: " + hours + ":" + minutes);
+        }
+        return h * 60 + m;
+    }
+
+    static String format(List<Session> sessions) {
+        StringBuilder s = new StringBuilder();
+        for (Session session : sessions) {
+            if (s.length() > 0) s.append(SEPARATOR);
+            s.append(session);
+        }
+        return s.toString();
+    }
+
+    // ----------------- CLASHES -----------------
+    // A session of a course, as the trees hold it
+    static final class Booking {
+        final Course course;
+        final Session session;
+
+        Booking(Course course, Session session) {
+            this.course = course;
+            this.session = session;
+        }
+    }
+
+    // The first pair of overlapping sessions, mine first; null when there is none
+    static Session[] clash(List<Session> mine, List<Session> theirs) {
+        for (Session a : mine) {
+            for (Session b : theirs) {
+                if (a.overlaps(b)) return new Session[]{a, b};
+            }
+        }
+        return null;
+    }
+
+    // A course may not be in two places at once
+    static void checkOwnSessions(List<Session> sessions) {
+        for (int i = 0; i < sessions.size(); i++) {
+            for (int j = i + 1; j < sessions.size(); j++) {
+                if (sessions.get(i).overlaps(sessions.get(j))) {
+                    throw new IllegalArgumentException("Sessions " + sessions.get(i) + " and " + sessions.get(j) + " overlap.");
+                }
+            }
+        }
+    }
+
+    private final List<Course> courses;
+    private boolean built;
+    private final Map<String, IntervalTree<Booking>> rooms = new HashMap<>();
+    private final Map<String, IntervalTree<Booking>> instructors = new HashMap<>();
+
+    Timetable(List<Course> courses) {
+        this.courses = courses;
+    }
+
+    // Another course's session in one of the rooms at the same time, or null
+    Booking roomClash(Course course, List<Session> sessions) {
+        ensureBuilt();
+        for (Session s : sessions) {
+            Booking b = overlap(rooms, s.room, s, course);
+            if (b != null) return b;
+        }
+        return null;
+    }
+
+    // Another course the instructor teaches at the same time, or null
+    Booking instructorClash(Course course, String instructorName, List<Session> sessions) {
+        if (instructorName == null) return null;
+        ensureBuilt();
+        for (Session s : sessions) {
+            Booking b = overlap(instructors, instructorName, s, course);
+            if (b != null) return b;
+        }
+        return null;
+    }
+
+    private static Booking overlap(Map<String, IntervalTree<Booking>> trees, String name, Session s, Course course) {
+        IntervalTree<Booking> tree = trees.get(DataIndex.foldCase(name));
+        return tree == null ? null : tree.firstOverlap(s.weekStart(), s.weekEnd(), b -> b.course != course);
+    }
+
+    // ----------------- MAINTENANCE -----------------
+    // Changes before the first check are ignored; the build reads the courses as they are then
+    void add(Course course) {
+        if (!built) return;
+        for (Session s : course.getSessions()) {
+            Booking b = new Booking(course, s);
+            tree(rooms, s.room).add(s.weekStart(), s.weekEnd(), b);
+            if (course.getInstructorName() != null) tree(instructors, course.getInstructorName()).add(s.weekStart(), s.weekEnd(), b);
+        }
+    }
+
+    // Call before the course's instructor or sessions change, with the values it is booked under
+    void remove(Course course) {
+        if (!built) return;
+        for (Session s : course.getSessions()) {
+            unbook(rooms, s.room, s, course);
+            if (course.getInstructorName() != null) unbook(instructors, course.getInstructorName(), s, course);
+        }
+    }
+
+    private void ensureBuilt() {
+        if (built) return;
+        built = true;
+        for (Course c : courses) add(c);
+    }
+
+    private static IntervalTree<Booking> tree(Map<String, IntervalTree<Booking>> trees, String name) {
+        return trees.computeIfAbsent(DataIndex.foldCase(name), k -> new IntervalTree<>());
+    }
+
+    private static void unbook(Map<String, IntervalTree<Booking>> trees, String name, Session s, Course course) {
+        String key = DataIndex.foldCase(name);
+        IntervalTree<Booking> tree = trees.get(key);
+        if (tree == null) return;
+        Booking b = tree.firstOverlap(s.weekStart(), s.weekEnd(), x -> x.course == course && x.session.equals(s));
+        if (b != null) tree.remove(s.weekStart(), s.weekEnd(), b);
+        if (tree.size() == 0) trees.remove(key);
+    }
+}
@@ -0,0 +1,207 @@
+import java.io.*;
+import java.util.*;
+import java.util.List;
+
+// -------------- WIRE PROTOCOL --------------
+// Messages between CoachingCenterServer and CoachingCenterClient. Every message
+// is framed as [payload length][payload]. A request payload is
+// [request id][op][arguments]; the response echoes the request id, then a status
+// byte and either the result or an error message. Strings use the modified UTF-8
+// of DataOutput.writeUTF, as the journal does. An edit's result is followed by
+// the server's change count before and after it.
+final class WireProtocol {
+
+    private WireProtocol() {
+    }
+
+    static final int DEFAULT_PORT = 7345;
+    static final int MAX_FRAME = 256 << 20;
+
+    // ----------------- OPERATIONS -----------------
+    static final byte SNAPSHOT = 1;           // -> change count, students, courses, enrollments
+    static final byte CHANGE_COUNT = 2;       // -> change count
+    static final byte GET_STUDENT = 3;        // id -> found, student
+    static final byte ADD_STUDENT = 4;        // name, age, contact, email -> student
+    static final byte UPDATE_STUDENT = 5;     // id, version, name, age, contact, email -> student
+    static final byte REMOVE_STUDENT = 6;     // id
+    static final byte ADD_COURSE = 7;         // name -> course
+    static final byte RENAME_COURSE = 8;      // name, version, new name -> course
+    static final byte ASSIGN_INSTRUCTOR = 9;  // name, version, instructor -> course
+    static final byte REMOVE_COURSE = 10;     // name
+    static final byte ENROLL = 11;            // student id, course name
+    static final byte SEARCH_STUDENTS = 12;   // query, limit -> students
+    static final byte SCHEDULE_COURSE = 13;   // name, version, sessions -> course
+    static final byte CHANGES = 14;           // change count -> change count, covered, changes
+
+    // Whether the op edits the data, so its answer ends with the change counts around the edit
+    static boolean isEdit(byte op) {
+        return op != SNAPSHOT && op != CHANGE_COUNT && op != GET_STUDENT && op != SEARCH_STUDENTS && op != CHANGES;
+    }
+
+    // ----------------- STATUS -----------------
+    static final byte OK = 0;
+    static final byte INVALID = 1;   // a rule was broken (IllegalArgumentException)
+    static final byte CONFLICT = 2;  // stale version (ConcurrentModificationException)
+    static final byte FAILED = 3;    // anything else
+
+    // ----------------- RECORDS -----------------
+    static void writeStudent(DataOutput out, Student1 s) throws IOException {
+        out.writeInt(s.getId());
+        out.writeInt(s.getVersion());
+        out.writeUTF(s.getName());
+        out.writeInt(s.getAge());
+        out.writeUTF(s.getContactNumber());
+        out.writeUTF(s.getEmail());
+    }
+
+    static Student1 readStudent(DataInput in) throws IOException {
+        int id = in.readInt();
+        int version = in.readInt();
+        Student1 s = new Student1(id, in.readUTF(), in.readInt(), in.readUTF(), in.readUTF());
+        s.setVersion(version);
+        return s;
+    }
+
+    static void writeCourse(DataOutput out, Course c) throws IOException {
+        out.writeUTF(c.getCourseName());
+        out.writeInt(c.getVersion());
+        writeNullableUTF(out, c.getInstructorName());
+        out.writeUTF(Timetable.format(c.getSessions()));
+    }
+
+    static Course readCourse(DataInput in) throws IOException {
+        Course c = new Course(in.readUTF());
+        c.setVersion(in.readInt());
+        c.setInstructorName(readNullableUTF(in));
+        c.setSessions(Timetable.parseAll(in.readUTF()));
+        return c;
+    }
+
+    static void writeNullableUTF(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    static String readNullableUTF(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // Students, courses, then enrollments as (student id, course row) pairs
+    static void writeSnapshot(DataOutput out, DataCodec.Snapshot snapshot) throws IOException {
+        out.writeInt(snapshot.students.size());
+        for (Student1 s : snapshot.students) writeStudent(out, s);
+        out.writeInt(snapshot.courses.size());
+        for (Course c : snapshot.courses) writeCourse(out, c);
+        DataCodec.Enrollments enrollments = snapshot.enrollments;
+        out.writeInt(enrollments.size());
+        for (int i = 0; i < enrollments.size(); i++) {
+            out.writeInt(enrollments.studentId(i));
+            out.writeInt(enrollments.courseRow(i));
+        }
+    }
+
+    static DataCodec.Snapshot readSnapshot(DataInput in) throws IOException {
+        int studentCount = in.readInt();
+        List<Student1> students = new ArrayList<>(studentCount);
+        for (int i = 0; i < studentCount; i++) students.add(readStudent(in));
+        int courseCount = in.readInt();
+        List<Course> courses = new ArrayList<>(courseCount);
+        for (int i = 0; i < courseCount; i++) courses.add(readCourse(in));
+        int enrollmentCount = in.readInt();
+        DataCodec.Enrollments enrollments = new DataCodec.Enrollments(students, courses, enrollmentCount);
+        for (int i = 0; i < enrollmentCount; i++) enrollments.addPair(in.readInt(), in.readInt());
+        int nextStudentId = students.isEmpty() ? 1 : students.get(students.size() - 1).getId() + 1;
+        return new DataCodec.Snapshot(students, courses, enrollments, nextStudentId, 0);
+    }
+
+    // ----------------- CHANGES -----------------
+    // Committed batches as records a copy of the data can apply: students and courses
+    // are sent whole, with their versions, as they were when the batch committed.
+    // Applying a record twice leaves the copy as applying it once did.
+    private static final byte PUT_STUDENT = 1;    // student
+    private static final byte DROP_STUDENT = 2;   // id
+    private static final byte PUT_COURSE = 3;     // current name or none, course
+    private static final byte DROP_COURSE = 4;    // name
+    private static final byte ENROLLED = 5;       // student id, course name
+    private static final byte UNENROLLED = 6;     // student id, course name
+
+    interface ChangeHandler {
+        void studentPut(Student1 s);
+        void studentRemoved(int id);
+        void coursePut(String currentName, Course c); // currentName is null for a new course
+        void courseRemoved(String courseName);
+        void enrolled(int studentId, String courseName);
+        void unenrolled(int studentId, String courseName);
+    }
+
+    // Run with the write lock held, while the events' objects are as the batch left them.
+    // False when the batch cannot be sent as changes (a reload), so copies need the whole data.
+    static boolean writeChanges(DataOutput out, List<DataEvent> batch) throws IOException {
+        for (DataEvent event : batch) {
+            if (event instanceof DataEvent.StudentAdded || event instanceof DataEvent.StudentUpdated) {
+                out.writeByte(PUT_STUDENT);
+                writeStudent(out, ((DataEvent.StudentEvent) event).student);
+            } else if (event instanceof DataEvent.StudentRemoved) {
+                out.writeByte(DROP_STUDENT);
+                out.writeInt(((DataEvent.StudentRemoved) event).student.getId());
+            } else if (event instanceof DataEvent.CourseRemoved) {
+                out.writeByte(DROP_COURSE);
+                out.writeUTF(((DataEvent.CourseRemoved) event).course.getCourseName());
+            } else if (event instanceof DataEvent.CourseEvent) {
+                Course course = ((DataEvent.CourseEvent) event).course;
+                String currentName = event instanceof DataEvent.CourseAdded ? null
+                        : event instanceof DataEvent.CourseRenamed ? ((DataEvent.CourseRenamed) event).oldName
+                        : course.getCourseName();
+                out.writeByte(PUT_COURSE);
+                writeNullableUTF(out, currentName);
+                writeCourse(out, course);
+            } else if (event instanceof DataEvent.EnrollmentAdded) {
+                DataEvent.EnrollmentAdded added = (DataEvent.EnrollmentAdded) event;
+                out.writeByte(ENROLLED);
+                out.writeInt(added.student.getId());
+                out.writeUTF(added.course.getCourseName());
+            } else if (event instanceof DataEvent.EnrollmentRemoved) {
+                // Cascaded removals follow from the student's or course's removal
+                DataEvent.EnrollmentRemoved removed = (DataEvent.EnrollmentRemoved) event;
+                if (removed.cause != null) continue;
+                out.writeByte(UNENROLLED);
+                out.writeInt(removed.student.getId());
+                out.writeUTF(removed.course.getCourseName());
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Reads records until the input ends
+    static void readChanges(DataInputStream in, ChangeHandler handler) throws IOException {
+        while (in.available() > 0) {
+            byte type = in.readByte();
+            switch (type) {
+                case PUT_STUDENT:
+                    handler.studentPut(readStudent(in));
+                    break;
+                case DROP_STUDENT:
+                    handler.studentRemoved(in.readInt());
+                    break;
+                case PUT_COURSE: {
+                    String currentName = readNullableUTF(in);
+                    handler.coursePut(currentName, readCourse(in));
+                    break;
+                }
+                case DROP_COURSE:
+                    handler.courseRemoved(in.readUTF());
+                    break;
+                case ENROLLED:
+                    handler.enrolled(in.readInt(), in.readUTF());
+                    break;
+                case UNENROLLED:
+                    handler.unenrolled(in.readInt(), in.readUTF());
+                    break;
+                default:
+                    throw new IOException("Unknown change record type " + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+
+// -------------- WORKLOAD GENERATOR --------------
+// Deterministic data and operation mixes for scale tests and benchmarks: the
+// same seed gives the same students, courses and enrollments, and the same
+// operations in the same order, so two runs can be compared row for row.
+//
+// Course popularity is skewed like real sign-ups: a student picks the course at
+// rank r (its position in the course list) with probability proportional to
+// 1 / (r + 1)^skew, so a few courses have large rosters and most have small ones.
+// Operations a rule refuses (enrolling twice, say) are counted as rejected.
+class WorkloadGenerator {
+
+    static final double DEFAULT_SKEW = 1.0;
+
+    private static final String[] FIRST_NAMES = {"Ayesha", "Rahim", "Nadia", "Tanvir", "Farhana", "Imran", "Sadia",
+            "Karim", "Nusrat", "Arif", "Maya", "Rohan", "Priya", "Omar", "Lina", "Sami", "Zara", "Hasan", "Mita", "Jamal"};
+    private static final String[] LAST_NAMES = {"Rahman", "Hossain", "Chowdhury", "Ahmed", "Islam", "Khan", "Das",
+            "Sarkar", "Akter", "Begum", "Roy", "Sen", "Haque", "Uddin", "Saha", "Ali", "Karim", "Mia", "Bose", "Paul"};
+    private static final String[] SUBJECTS = {"Mathematics", "Physics", "Chemistry", "Biology", "English", "Bangla",
+            "Accounting", "Economics", "ICT", "Higher Math", "Statistics", "Geography"};
+    private static final String[] INSTRUCTORS = {"Mr. Alam", "Ms. Sultana", "Dr. Kabir", "Mrs. Nahar", "Mr. Biswas",
+            "Ms. Jahan", "Dr. Mahmud", "Mr. Talukder"};
+
+    enum Op { ADD_STUDENT, UPDATE_STUDENT, ENROLL, REMOVE_STUDENT, ADD_COURSE, REMOVE_COURSE, LOOKUP, SEARCH, SAVE_LOAD }
+
+    // Relative weights of the operations
+    static final class Mix {
+        private final int[] weights = new int[Op.values().length];
+
+        Mix with(Op op, int weight) {
+            if (weight < 0) throw new IllegalArgumentException("Negative weight for " + op);
+            weights[op.ordinal()] = weight;
+            return this;
+        }
+
+        // Per million operations: mostly edits, sign-ups and lookups, with as many cascading
+        // removals as additions so the data keeps its size, and a full save and load now and then
+        static Mix typical() {
+            return new Mix().with(Op.ADD_STUDENT, 150_000).with(Op.UPDATE_STUDENT, 200_000).with(Op.ENROLL, 300_000)
+                    .with(Op.REMOVE_STUDENT, 150_000).with(Op.ADD_COURSE, 1_000).with(Op.REMOVE_COURSE, 1_000)
+                    .with(Op.LOOKUP, 196_980).with(Op.SEARCH, 1_000).with(Op.SAVE_LOAD, 20);
+        }
+
+        private Op pick(SplittableRandom random) {
+            int total = 0;
+            for (int w : weights) total += w;
+            if (total == 0) throw new IllegalStateException("Empty mix");
+            int r = random.nextInt(total);
+            for (Op op : Op.values()) {
+                r -= weights[op.ordinal()];
+                if (r < 0) return op;
+            }
+            throw new AssertionError();
+        }
+    }
+
+    static final class Result {
+        final long[] counts = new long[Op.values().length];
+        long rejected;
+        long nanos;
+
+        long operations() {
+            long n = 0;
+            for (long c : counts) n += c;
+            return n;
+        }
+
+        long count(Op op) { return counts[op.ordinal()]; }
+
+        double perSecond() { return operations() * 1e9 / Math.max(1, nanos); }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder(String.format("%,d operations in %,d ms (%,.0f/s), %,d rejected:",
+                    operations(), nanos / 1_000_000, perSecond(), rejected));
+            for (Op op : Op.values()) s.append(' ').append(op).append('=').append(count(op));
+            return s.toString();
+        }
+    }
+
+    private final SplittableRandom random;
+    private final double skew;
+    private double[] cumulative = new double[0]; // Zipf weights of ranks 0..n-1, summed
+    private int courseSerial;
+
+    WorkloadGenerator(long seed) {
+        this(seed, DEFAULT_SKEW);
+    }
+
+    WorkloadGenerator(long seed, double skew) {
+        this.random = new SplittableRandom(seed);
+        this.skew = skew;
+    }
+
+    // ----------------- DATA -----------------
+    // A service with the given data; students try enrollmentsPerStudent courses each
+    CoachingCenterService populate(int students, int courses, int enrollmentsPerStudent) {
+        CoachingCenterService service = new CoachingCenterService();
+        for (int c = 0; c < courses; c++) addCourse(service);
+        for (int s = 0; s < students; s++) {
+            Student1 student = addStudent(service);
+            for (int k = 0; k < enrollmentsPerStudent; k++) {
+                try {
+                    enroll(service, student.getId());
+                } catch (IllegalArgumentException e) {
+                    // Drew a course twice
+                }
+            }
+        }
+        return service;
+    }
+
+    private Student1 addStudent(CoachingCenterService service) {
+        String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        String email = name.toLowerCase(Locale.ROOT).replace(' ', '.') + random.nextInt(10_000) + "@example.com";
+        return service.addStudent(name, 16 + random.nextInt(30), contact(), email);
+    }
+
+    private String contact() {
+        return "01" + (3 + random.nextInt(7)) + (10_000_000 + random.nextInt(90_000_000));
+    }
+
+    private void addCourse(CoachingCenterService service) {
+        int serial = courseSerial++;
+        String name = SUBJECTS[serial % SUBJECTS.length] + " " + (101 + serial / SUBJECTS.length);
+        service.addCourse(name);
+        if (random.nextInt(4) != 0) service.assignInstructor(name, INSTRUCTORS[random.nextInt(INSTRUCTORS.length)]);
+    }
+
+    private void enroll(CoachingCenterService service, int studentId) {
+        List<Course> courses = service.getCourses();
+        if (courses.isEmpty()) throw new IllegalArgumentException("No courses");
+        service.enroll(studentId, courses.get(popularRank(courses.size())).getCourseName());
+    }
+
+    // A Zipf-distributed rank in [0, n)
+    int popularRank(int n) {
+        if (cumulative.length != n) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int r = 0; r < n; r++) cumulative[r] = sum += 1 / Math.pow(r + 1, skew);
+        }
+        double x = random.nextDouble() * cumulative[n - 1];
+        int i = Arrays.binarySearch(cumulative, x);
+        return Math.min(n - 1, i >= 0 ? i : -i - 1);
+    }
+
+    // ----------------- OPERATIONS -----------------
+    // Runs the mix on the service headless. SAVE_LOAD writes the service to saveFile and
+    // reads it back; without a file it is skipped.
+    Result run(CoachingCenterService service, Mix mix, long operations, File saveFile) throws IOException {
+        Result result = new Result();
+        long start = System.nanoTime();
+        for (long i = 0; i < operations; i++) {
+            Op op = mix.pick(random);
+            if (op == Op.SAVE_LOAD && saveFile == null) continue;
+            result.counts[op.ordinal()]++;
+            try {
+                apply(service, op, saveFile);
+            } catch (IllegalArgumentException e) {
+                result.rejected++;
+            }
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private void apply(CoachingCenterService service, Op op, File saveFile) throws IOException {
+        List<Student1> students = service.getStudents();
+        switch (op) {
+            case ADD_STUDENT:
+                addStudent(service);
+                break;
+            case UPDATE_STUDENT: {
+                Student1 s = anyOf(students);
+                service.updateStudent(s.getId(), s.getName(), s.getAge() % 45 + 1, contact(), s.getEmail());
+                break;
+            }
+            case ENROLL:
+                enroll(service, anyOf(students).getId());
+                break;
+            case REMOVE_STUDENT:
+                service.removeStudent(anyOf(students).getId());
+                break;
+            case ADD_COURSE:
+                addCourse(service);
+                break;
+            case REMOVE_COURSE:
+                service.removeCourse(anyOf(service.getCourses()).getCourseName());
+                break;
+            case LOOKUP: {
+                int id = anyOf(students).getId();
+                if (service.findStudent(id) == null) throw new IllegalStateException("Lost student " + id);
+                service.enrollmentsOf(id);
+                break;
+            }
+            case SEARCH:
+                service.searchStudents(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)].substring(0, 3), () -> false);
+                break;
+            case SAVE_LOAD:
+                saveAndLoad(service, saveFile);
+                break;
+        }
+    }
+
+    private <T> T anyOf(List<T> list) {
+        if (list.isEmpty()) throw new IllegalArgumentException("Nothing to pick from");
+        return list.get(random.nextInt(list.size()));
+    }
+
+    private static void saveAndLoad(CoachingCenterService service, File file) throws IOException {
+        DataCodec.Snapshot saved = service.copySnapshot();
+        DataCodec.write(file, saved);
+        CoachingCenterService loaded = CoachingCenterService.fromSnapshot(DataCodec.read(file));
+        if (loaded.getStudents().size() != saved.students.size() || loaded.getEnrollments().size() != saved.enrollments.size()) {
+            throw new IllegalStateException("Loaded " + loaded.getStudents().size() + " students and "
+                    + loaded.getEnrollments().size() + " enrollments, saved " + saved.students.size() + " and "
+                    + saved.enrollments.size());
+        }
+    }
+}
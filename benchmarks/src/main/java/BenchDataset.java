@@ -0,0 +1,99 @@
+import ccms.bench.BenchTarget;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+
+// Drives the application's CoachingCenterService without Swing, for the JMH
+// benchmarks in ccms.bench.
+public class BenchDataset implements BenchTarget {
+
+    private CoachingCenterService service;
+    private OverviewModel overview;
+    private Random random;
+
+    @Override
+    public void generate(int studentCount, long seed) {
+        random = new Random(seed);
+        service = new CoachingCenterService();
+        overview = new OverviewModel(service::getStudents, service::getCourses, service::getEnrollments);
+
+        int courseCount = Math.max(10, studentCount / 100);
+        for (int i = 0; i < courseCount; i++) {
+            service.addCourse("Course " + i);
+            if (i % 3 != 0) service.assignInstructor("Course " + i, "Instructor " + (i % 50));
+        }
+        for (int i = 1; i <= studentCount; i++) {
+            Student1 s = service.addStudent("Student " + i, 16 + random.nextInt(10),
+                    "017" + (10000000 + i), "student" + i + "@example.com");
+            for (int k = 0; k < ENROLLMENTS_PER_STUDENT; k++) enroll(s, randomCourse());
+        }
+    }
+
+    private Course randomCourse() {
+        List<Course> courses = service.getCourses();
+        return courses.get(random.nextInt(courses.size()));
+    }
+
+    private void enroll(Student1 s, Course c) {
+        if (!service.isEnrolled(s.getId(), c.getCourseName())) service.enroll(s.getId(), c.getCourseName());
+    }
+
+    @Override
+    public int addUpdateRemoveStudent() {
+        Student1 s = service.addStudent("Bench Student", 20, "01700000000", "bench@example.com");
+        for (int k = 0; k < 3; k++) enroll(s, randomCourse());
+        service.updateStudent(s.getId(), "Bench Student Updated", 21, "01700000000", "bench@example.com");
+        return service.removeStudent(s.getId()).enrollmentRows.length;
+    }
+
+    @Override
+    public boolean duplicateEnrollmentCheck() {
+        List<Student1> students = service.getStudents();
+        Student1 s = students.get(random.nextInt(students.size()));
+        return service.isEnrolled(s.getId(), randomCourse().getCourseName());
+    }
+
+    @Override
+    public boolean courseNameConflictCheck() {
+        Course c = randomCourse();
+        Course found = service.findCourse(c.getCourseName().toUpperCase(Locale.ROOT));
+        return found != null && found != c;
+    }
+
+    @Override
+    public int renderOverviewWindow(int rows) {
+        int first = random.nextInt(Math.max(1, overview.getSize() - rows));
+        int chars = 0;
+        for (int i = first; i < Math.min(first + rows, overview.getSize()); i++) chars += overview.getElementAt(i).length();
+        return chars;
+    }
+
+    @Override
+    public int renderOverviewFully() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < overview.getSize(); i++) sb.append(overview.getElementAt(i)).append('\n');
+        return sb.length();
+    }
+
+    // Same path as a journal compaction: a consistent copy, then the codec
+    @Override
+    public void save(File file) throws IOException {
+        DataCodec.write(file, service.copySnapshot());
+    }
+
+    @Override
+    public int open(File file) throws IOException {
+        return DataCodec.read(file).students.size();
+    }
+
+    @Override
+    public int loadFully(File file) throws IOException {
+        DataCodec.Snapshot snapshot = DataCodec.read(file);
+        int ages = 0;
+        for (Student1 s : snapshot.students) ages += s.getAge();
+        for (Enrollment e : snapshot.enrollments) ages += e.getStudent().getAge();
+        return ages;
+    }
+}
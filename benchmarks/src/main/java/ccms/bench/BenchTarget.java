@@ -0,0 +1,45 @@
+package ccms.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+// The application classes sit in the default package, which named packages cannot
+// import, so benchmarks reach them through this interface. BenchDataset implements
+// it next to the application classes and is loaded by name.
+public interface BenchTarget {
+
+    // Builds a deterministic dataset: the given number of students, one course per
+    // hundred students (at least ten) and ENROLLMENTS_PER_STUDENT enrollments each.
+    void generate(int studentCount, long seed);
+
+    // Adds a student with a few enrollments, updates it, then removes it with its enrollments
+    int addUpdateRemoveStudent();
+
+    boolean duplicateEnrollmentCheck();
+
+    boolean courseNameConflictCheck();
+
+    // Renders the Overview rows a window of the given height would show at a random scroll position
+    int renderOverviewWindow(int rows);
+
+    // Renders every Overview row, which is what the old full-text Overview did on each change
+    int renderOverviewFully();
+
+    void save(File file) throws IOException;
+
+    // Opens a saved file without touching any rows
+    int open(File file) throws IOException;
+
+    // Opens a saved file and decodes every student and enrollment
+    int loadFully(File file) throws IOException;
+
+    int ENROLLMENTS_PER_STUDENT = 2;
+
+    static BenchTarget create() {
+        try {
+            return (BenchTarget) Class.forName("BenchDataset").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchDataset is missing from the benchmark build", e);
+        }
+    }
+}
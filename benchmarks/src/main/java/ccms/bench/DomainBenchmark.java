@@ -0,0 +1,55 @@
+package ccms.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-operation cost of the edits and checks the frame performs on every click.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class DomainBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int students;
+
+    private BenchTarget target;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        target = BenchTarget.create();
+        target.generate(students, 42);
+    }
+
+    @Benchmark
+    public int addUpdateRemoveStudentWithCascade() {
+        return target.addUpdateRemoveStudent();
+    }
+
+    @Benchmark
+    public boolean duplicateEnrollmentCheck() {
+        return target.duplicateEnrollmentCheck();
+    }
+
+    @Benchmark
+    public boolean courseNameConflictCheck() {
+        return target.courseNameConflictCheck();
+    }
+
+    @Benchmark
+    public int renderOverviewVisibleWindow() {
+        return target.renderOverviewWindow(40);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public int renderOverviewFully() {
+        return target.renderOverviewFully();
+    }
+}
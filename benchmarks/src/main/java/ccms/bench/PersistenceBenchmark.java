@@ -0,0 +1,62 @@
+package ccms.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+// Snapshot save and load round-trip through the application's data file format.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PersistenceBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int students;
+
+    private BenchTarget target;
+    private File saveFile;
+    private File loadFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        target = BenchTarget.create();
+        target.generate(students, 42);
+        File dir = Files.createTempDirectory("ccms-bench").toFile();
+        saveFile = new File(dir, "save.ccd");
+        loadFile = new File(dir, "load.ccd");
+        target.save(loadFile);
+    }
+
+    // Saves keep the file they replace as save.ccd.prev, so the whole directory goes
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        delete(saveFile.getParentFile());
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) delete(child);
+        file.delete();
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        target.save(saveFile);
+    }
+
+    @Benchmark
+    public int open() throws IOException {
+        return target.open(loadFile);
+    }
+
+    @Benchmark
+    public int loadFully() throws IOException {
+        return target.loadFully(loadFile);
+    }
+}